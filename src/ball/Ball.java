@@ -6,9 +6,8 @@ import collision.Collidable;
 import collision.CollisionInfo;
 import game.GameEnvironment;
 import game.GameLevel;
-import geometry.Line;
+import geometry.Fixed;
 import geometry.Point;
-import geometry.Rectangle;
 import sprites.Sprite;
 import java.awt.Color;
 
@@ -17,6 +16,9 @@ import java.awt.Color;
  * has a center point, a radius, a color and velocity.
  * with this properties, the ball can be drawn on a
  * draw surface and appear to be moving around.
+ * in the fixed point mode (see Fixed), the center
+ * is always on the 32.32 grid, and the ball moves
+ * with fixed point numbers.
  * @author Uri Knoll
  * @version  %I%, %G%
  * @since 17.0.2
@@ -49,7 +51,8 @@ public class Ball implements Sprite {
        } else {
            this.r = r;
        }
-       this.center = center;
+       this.center = new Point(Fixed.snap(center.getX()),
+                               Fixed.snap(center.getY()));
        this.color = color;
        setVelocity(0, 0);
        this.game = game;
@@ -77,6 +80,9 @@ public class Ball implements Sprite {
     */
    public void setVelocity(Velocity v) {
        this.v = v;
+       if (game != null) {
+           game.cancelImpact(this);
+       }
    }
 
    /**
@@ -86,7 +92,7 @@ public class Ball implements Sprite {
     * @param dy the ball's vertical speed.
     */
    public void setVelocity(double dx, double dy) {
-       this.v = new Velocity(dx, dy);
+       setVelocity(new Velocity(dx, dy));
    }
 
    /**
@@ -96,20 +102,10 @@ public class Ball implements Sprite {
     * @param y the vertical location.
     */
    public void setCenter(double x, double y) {
-       this.center = new Point(x, y);
-   }
-
-   /**
-    * Returns the trajectory of the ball, as a line
-    * while the starting point is where the ball is now
-    * and the end point is where it will be after it
-    * moves.
-    * @return a Line for the ball trajectory.
-    */
-   private Line getTrajectory() {
-       Point endPoint = new Point(getX() + v.getDx(),
-                                  getY() + v.getDy());
-       return new Line(center, endPoint);
+       this.center = new Point(Fixed.snap(x), Fixed.snap(y));
+       if (game != null) {
+           game.cancelImpact(this);
+       }
    }
 
    /**
@@ -158,6 +154,7 @@ public class Ball implements Sprite {
     */
    public void addToGame(GameLevel game) {
        game.addSprite(this);
+       this.game.addBall(this);
    }
 
    /**
@@ -166,6 +163,7 @@ public class Ball implements Sprite {
     */
    public void removeFromGame(GameLevel game) {
        game.removeSprite(this);
+       this.game.removeBall(this);
    }
 
 
@@ -188,28 +186,50 @@ public class Ball implements Sprite {
     * Moves the ball in the game 1 step. the step
     * size is determined by the ball's velocity.
     * if the ball would hit a collidable when moving,
-    * changes it's velocity and moves it in a way it
-    * would seem like it bounced off the collidable.
+    * changes it's velocity and keeps moving with the
+    * rest of the step, so it would seem like it
+    * bounced off the collidable. if the ball hits more
+    * collidables in one step than the environment
+    * allows, the rest of the step is dropped. balls
+    * that are kept in arrays (see BallSystem) move
+    * with this too, through a ball that stands for
+    * them and overrides moveBy, keepVelocity and
+    * isInGame.
+    * @param environment the environment the ball
+    * moves in.
+    * @param first the first collision of the ball in
+    * the step, looked up already, or null.
     */
-   private void moveOneStep() {
+   protected void moveOneStep(GameEnvironment environment,
+                              CollisionInfo first) {
 
-       // recursion base case
-       if (v.angledSpeed() == 0) {
-           return;
-       }
+       // the part of the step that is left to move.
+       double left = 1;
+       Velocity current = getVelocity();
+       double vx = current.getDx();
+       double vy = current.getDy();
+       int contacts = 0;
+       CollisionInfo nextCollision = first;
+       while (left * Math.sqrt(vx * vx + vy * vy) > TINY_CONSTANT) {
+           if (contacts == environment.getMaxContacts()) {
+               environment.addTruncatedStep();
+               return;
+           }
+           double dx = scale(vx, left);
+           double dy = scale(vy, left);
+           if (contacts > 0) {
+               nextCollision = environment.getClosestCollision(getX(), getY(),
+                                                               dx, dy,
+                                                               getSize(),
+                                                               left);
+           }
 
-       /*
-        * Since the paddle could have moved into the
-        * ball, move the ball out of it.
-        */
-       game.moveBallOutOfPaddle(this);
-       Line trajectory = getTrajectory();
-       CollisionInfo nextCollision = game.getClosestCollision(trajectory);
-
-       // Checks if the ball will collide
-       if (nextCollision == null) {
-           center = trajectory.end();
-       } else {
+           // Checks if the ball will collide
+           if (nextCollision == null) {
+               moveBy(dx, dy);
+               return;
+           }
+           contacts++;
 
            /* if the ball will collide with a corner,
             * meaning with more then 1 collidable, it
@@ -218,55 +238,101 @@ public class Ball implements Sprite {
             * checks that.
             */
            Collidable cObject = nextCollision.collisionObject();
-           Velocity tempV = cObject.multipleObjectsHit(this, game,
-                                                       nextCollision, v);
-           Point collision = nextCollision.collisionPoint();
-           if (Point.cmpDoubles(v.getDx(), tempV.getDx())
-               && Point.cmpDoubles(v.getDy(), tempV.getDy())) {
+           Velocity tempV = cObject.multipleObjectsHit(this, environment,
+                                                       nextCollision,
+                                                       current);
+
+           /*
+            * the ball touches the collidable where it
+            * stops, so it doesn't need to be pushed
+            * out of it.
+            */
+           double time = nextCollision.time();
+           moveBy(scale(dx, time), scale(dy, time));
+           Velocity after;
+           if (Point.cmpDoubles(vx, tempV.getDx())
+               && Point.cmpDoubles(vy, tempV.getDy())) {
 
                // The ball didn't hit a corner
-               v = cObject.hit(this, nextCollision.collisionPoint(), v);
-               center = collision;
-
-               /*
-                * Since we work with doubles, the coliision
-                * point might be slightly in the collidable,
-                * and it may want to collide with it again
-                * moving from it, so pushes it away enough
-                * so it won't detect the same collidable again.
-                */
-               Rectangle rect = cObject.getCollisionRectangle();
-               rect.pushBallOut(this);
+               after = cObject.hit(this, nextCollision, current);
            } else {
 
                //the ball hit a corner
-               double angleSpeed = v.angledSpeed() - 2 * TINY_CONSTANT;
-               v = Velocity.fromAngleAndSpeed(v.angle() + 180, angleSpeed);
-               v.applyToPoint(center);
-               v = tempV;
+               after = tempV;
            }
-           double distanceLeft = collision.distance(trajectory.end());
-           if (distanceLeft > TINY_CONSTANT) {
-
-               /*
-                *  Moves using the rest of the ball Velocity
-                *  after the collision.
-                */
-               Velocity saveV = v.copyV();
-               this.setVelocity(Velocity.fromAngleAndSpeed(v.angle(),
-                                                           distanceLeft));
-               this.moveOneStep();
-               this.setVelocity(saveV);
+           if (!isInGame()) {
+               return;
            }
+           keepVelocity(after);
+           current = getVelocity();
+           left = scale(left, 1 - time);
+           vx = current.getDx();
+           vy = current.getDy();
        }
    }
 
+   /**
+    * Moves the center of the ball, as a part of a
+    * step.
+    * @param dx the horizontal move.
+    * @param dy the vertical move.
+    */
+   protected void moveBy(double dx, double dy) {
+       center = new Point(getX() + dx, getY() + dy);
+   }
+
+   /**
+    * Keeps the velocity the ball bounced with, in the
+    * middle of a step.
+    * @param after the velocity.
+    */
+   protected void keepVelocity(Velocity after) {
+       v = after;
+   }
+
+   /**
+    * Checks if the ball is still in the game, so the
+    * step goes on after a hit. a ball object goes on
+    * anyway, it's only taken out of the lists.
+    * @return true.
+    */
+   protected boolean isInGame() {
+       return true;
+   }
+
+   /**
+    * Multiplies two numbers, in fixed point if the mode
+    * is on. the numbers are on the 32.32 grid then, and
+    * so is the result.
+    * @param a the first number.
+    * @param b the second number.
+    * @return a * b.
+    */
+   public static double scale(double a, double b) {
+       if (Fixed.isEnabled()) {
+           return Fixed.toDouble(Fixed.mul(Fixed.of(a), Fixed.of(b)));
+       }
+       return a * b;
+   }
+
    /**
     * Simulate change to the ball after time
     * passes, for the ball it means it should
-    * move.
+    * move. if the environment knows the ball
+    * won't hit anything in this frame, it
+    * just moves by its velocity.
     */
    public void timePassed() {
-       moveOneStep();
+       if (game.isImpactDue(this)) {
+           CollisionInfo first = null;
+           if (Math.sqrt(v.getDx() * v.getDx() + v.getDy() * v.getDy())
+               > TINY_CONSTANT) {
+               first = game.getFirstCollision(this);
+           }
+           moveOneStep(game, first);
+           game.scheduleImpact(this);
+       } else {
+           center = new Point(getX() + v.getDx(), getY() + v.getDy());
+       }
    }
 }
\ No newline at end of file
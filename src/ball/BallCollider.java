@@ -0,0 +1,208 @@
+package ball;
+
+import java.util.Arrays;
+
+/**
+ * Makes balls bounce off each other. the balls are
+ * kept sorted by the left end of the x range they
+ * cover in the next frame (sort and sweep): every
+ * frame the ranges are updated and the balls are
+ * sorted again with insertion sort, which is quick
+ * since they barely move between frames. then only
+ * balls whose x ranges overlap, and whose y ranges
+ * overlap too, are checked against each other. two
+ * balls that would touch during the frame bounce
+ * like two discs, with a mass by their area.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class BallCollider {
+
+    private Ball[] balls;
+    private double[] minX;
+    private double[] maxX;
+    private double[] minY;
+    private double[] maxY;
+    private int count;
+    private int pairsChecked;
+
+    /**
+     * A constructor for a collider with no balls.
+     */
+    public BallCollider() {
+        balls = new Ball[16];
+        minX = new double[16];
+        maxX = new double[16];
+        minY = new double[16];
+        maxY = new double[16];
+    }
+
+    /**
+     * Adds a ball. it's moved to its place in the
+     * order on the next frame.
+     * @param ball the ball.
+     */
+    public void add(Ball ball) {
+        if (count == balls.length) {
+            balls = Arrays.copyOf(balls, count * 2);
+            minX = Arrays.copyOf(minX, count * 2);
+            maxX = Arrays.copyOf(maxX, count * 2);
+            minY = Arrays.copyOf(minY, count * 2);
+            maxY = Arrays.copyOf(maxY, count * 2);
+        }
+        balls[count] = ball;
+        count++;
+    }
+
+    /**
+     * Removes a ball.
+     * @param ball the ball.
+     */
+    public void remove(Ball ball) {
+        for (int i = 0; i < count; i++) {
+            if (balls[i] == ball) {
+                System.arraycopy(balls, i + 1, balls, i, count - i - 1);
+                System.arraycopy(minX, i + 1, minX, i, count - i - 1);
+                System.arraycopy(maxX, i + 1, maxX, i, count - i - 1);
+                System.arraycopy(minY, i + 1, minY, i, count - i - 1);
+                System.arraycopy(maxY, i + 1, maxY, i, count - i - 1);
+                count--;
+                balls[count] = null;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of balls.
+     * @return the number of balls.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the number of pairs of balls that were
+     * checked in the last frame, after the sweep.
+     * @return the number of pairs.
+     */
+    public int getPairsChecked() {
+        return pairsChecked;
+    }
+
+    /**
+     * Bounces the balls that would touch each other
+     * in the next frame.
+     */
+    public void collide() {
+        for (int i = 0; i < count; i++) {
+            Ball ball = balls[i];
+            double x = ball.getX();
+            double y = ball.getY();
+            double dx = ball.getVelocity().getDx();
+            double dy = ball.getVelocity().getDy();
+            minX[i] = Math.min(x, x + dx) - ball.getSize();
+            maxX[i] = Math.max(x, x + dx) + ball.getSize();
+            minY[i] = Math.min(y, y + dy) - ball.getSize();
+            maxY[i] = Math.max(y, y + dy) + ball.getSize();
+        }
+        sort();
+        pairsChecked = 0;
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count && minX[j] <= maxX[i]; j++) {
+                if (minY[j] <= maxY[i] && maxY[j] >= minY[i]) {
+                    pairsChecked++;
+                    collide(balls[i], balls[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts the balls by the left end of their x range,
+     * with insertion sort.
+     */
+    private void sort() {
+        for (int i = 1; i < count; i++) {
+            if (minX[i - 1] <= minX[i]) {
+                continue;
+            }
+            Ball ball = balls[i];
+            double left = minX[i];
+            double right = maxX[i];
+            double top = minY[i];
+            double bottom = maxY[i];
+            int j = i - 1;
+            while (j >= 0 && minX[j] > left) {
+                balls[j + 1] = balls[j];
+                minX[j + 1] = minX[j];
+                maxX[j + 1] = maxX[j];
+                minY[j + 1] = minY[j];
+                maxY[j + 1] = maxY[j];
+                j--;
+            }
+            balls[j + 1] = ball;
+            minX[j + 1] = left;
+            maxX[j + 1] = right;
+            minY[j + 1] = top;
+            maxY[j + 1] = bottom;
+        }
+    }
+
+    /**
+     * Bounces two balls off each other if they are
+     * getting closer and would touch in the next frame.
+     * the velocities are changed along the line between
+     * their centers when they touch, so the total
+     * momentum and energy stay the same.
+     * @param a the first ball.
+     * @param b the second ball.
+     */
+    private static void collide(Ball a, Ball b) {
+        Velocity va = a.getVelocity();
+        Velocity vb = b.getVelocity();
+        double x = b.getX() - a.getX();
+        double y = b.getY() - a.getY();
+        double dx = vb.getDx() - va.getDx();
+        double dy = vb.getDy() - va.getDy();
+        double approach = x * dx + y * dy;
+        if (approach >= 0) {
+            return;
+        }
+        double reach = a.getSize() + b.getSize();
+        double c = x * x + y * y - reach * reach;
+        double time = 0;
+        if (c > 0) {
+            double speed = dx * dx + dy * dy;
+            double discriminant = approach * approach - speed * c;
+            if (discriminant < 0) {
+                return;
+            }
+            time = (-approach - Math.sqrt(discriminant)) / speed;
+            if (time > 1) {
+                return;
+            }
+        }
+
+        // the normal is between the centers when they touch.
+        double nx = x + dx * time;
+        double ny = y + dy * time;
+        double length = Math.sqrt(nx * nx + ny * ny);
+        if (length == 0) {
+            return;
+        }
+        nx /= length;
+        ny /= length;
+        double closing = dx * nx + dy * ny;
+        if (closing >= 0) {
+            return;
+        }
+        double massA = a.getSize() * a.getSize();
+        double massB = b.getSize() * b.getSize();
+        double impulseA = 2 * massB / (massA + massB) * closing;
+        double impulseB = 2 * massA / (massA + massB) * closing;
+        a.setVelocity(va.getDx() + impulseA * nx, va.getDy() + impulseA * ny);
+        b.setVelocity(vb.getDx() - impulseB * nx, vb.getDy() - impulseB * ny);
+    }
+}
@@ -0,0 +1,414 @@
+package ball;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+import biuoop.DrawSurface;
+import collision.CollisionInfo;
+import collision.RayBatch;
+import game.GameEnvironment;
+import game.GameLevel;
+import geometry.Fixed;
+import geometry.Point;
+import sprites.Sprite;
+
+/**
+ * Many balls of the same color, kept together as one
+ * sprite for games with a lot of balls. instead of an
+ * object for every ball, the centers, velocities and
+ * radiuses of all of them are kept in arrays, and they
+ * all move in one loop. the first collisions of all the
+ * balls in a frame are looked up together in a batch,
+ * and a ball that doesn't hit anything just moves by
+ * its velocity; a ball that does moves like a Ball
+ * (see Ball.moveOneStep). the blocks and listeners get
+ * one ball object that stands for the ball that hit,
+ * and can only be used while they are notified.
+ * balls of the system don't bounce off each other.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class BallSystem implements Sprite {
+
+    public static final String STORM_PROPERTY = "arkanoid.storm";
+
+    private GameEnvironment game;
+    private Color color;
+    private double[] x;
+    private double[] y;
+    private double[] dx;
+    private double[] dy;
+    private int[] radius;
+    private boolean[] alive;
+    private int count;
+    private int dead;
+    private RayBatch batch;
+    private int[] batched;
+    private Hitter hitter;
+    private Velocity velocity;
+
+    /**
+     * A constructor for a system with no balls yet.
+     * @param color the color of the balls.
+     * @param game the environment the balls move in.
+     */
+    public BallSystem(Color color, GameEnvironment game) {
+        this.color = color;
+        this.game = game;
+        x = new double[16];
+        y = new double[16];
+        dx = new double[16];
+        dy = new double[16];
+        radius = new int[16];
+        alive = new boolean[16];
+        batched = new int[16];
+        batch = new RayBatch();
+        hitter = new Hitter();
+        velocity = new Velocity(0, 0);
+    }
+
+    /**
+     * Returns the number of extra balls levels should
+     * have in a system, asked for by running with
+     * -Darkanoid.storm=number.
+     * @return the number of balls, 0 if none were asked
+     * for.
+     */
+    public static int stormSize() {
+        return Math.max(0, Integer.getInteger(STORM_PROPERTY, 0));
+    }
+
+    /**
+     * Adds a ball.
+     * @param center the center of the ball.
+     * @param r the radius of the ball, 1 if it's not
+     * positive.
+     * @param v the velocity of the ball.
+     */
+    public void add(Point center, int r, Velocity v) {
+        if (count == x.length) {
+            grow(count * 2);
+        }
+        x[count] = Fixed.snap(center.getX());
+        y[count] = Fixed.snap(center.getY());
+        dx[count] = v.getDx();
+        dy[count] = v.getDy();
+        radius[count] = Math.max(1, r);
+        alive[count] = true;
+        count++;
+    }
+
+    /**
+     * Returns the number of balls in the system that
+     * are still in the game.
+     * @return the number of balls.
+     */
+    public int size() {
+        return count - dead;
+    }
+
+    /**
+     * Returns the center of a ball.
+     * @param i the place of the ball, from 0 to size() - 1.
+     * @return the center.
+     */
+    public Point getCenter(int i) {
+        int slot = slotOf(i);
+        return new Point(x[slot], y[slot]);
+    }
+
+    /**
+     * Returns the velocity of a ball.
+     * @param i the place of the ball, from 0 to size() - 1.
+     * @return a copy of the velocity.
+     */
+    public Velocity getVelocity(int i) {
+        int slot = slotOf(i);
+        return new Velocity(dx[slot], dy[slot]);
+    }
+
+    /**
+     * Adds the system to a game, as one sprite.
+     * @param g the game.
+     */
+    public void addToGame(GameLevel g) {
+        g.addSprite(this);
+    }
+
+    /**
+     * Draws all the balls.
+     * @param d the draw surface to draw on.
+     */
+    public void drawOn(DrawSurface d) {
+        for (int i = 0; i < count; i++) {
+            if (!alive[i]) {
+                continue;
+            }
+            d.setColor(color);
+            d.fillCircle((int) x[i], (int) y[i], radius[i]);
+            d.setColor(Color.BLACK);
+            d.drawCircle((int) x[i], (int) y[i], radius[i]);
+        }
+    }
+
+    /**
+     * Moves all the balls one step. the first collisions
+     * of the balls are looked up in one batch (by a few
+     * threads, if the environment has them), and then the
+     * balls move and hit things in the order they were
+     * added, in this thread. a ball
+     * whose first collision is with a collidable another
+     * ball removed in this frame looks it up again.
+     */
+    public void timePassed() {
+        batch.clear();
+        if (batched.length < count) {
+            batched = new int[x.length];
+        }
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (alive[i] && (dx[i] != 0 || dy[i] != 0)) {
+                batch.add(x[i], y[i], dx[i], dy[i], radius[i], 1);
+                batched[n++] = i;
+            }
+        }
+        game.getClosestCollisions(batch);
+        for (int k = 0; k < n; k++) {
+            int i = batched[k];
+            CollisionInfo first = batch.result(k);
+            if (first == null) {
+                x[i] += dx[i];
+                y[i] += dy[i];
+            } else if (alive[i]) {
+                if (!game.hasCollidable(first.collisionObject())) {
+                    first = game.getClosestCollision(x[i], y[i], dx[i], dy[i],
+                                                     radius[i], 1);
+                }
+                hitter.move(i, first);
+            }
+        }
+        batch.clear();
+        if (dead > count / 2) {
+            compact();
+        }
+    }
+
+    /**
+     * Takes a ball out of the game.
+     * @param slot the slot of the ball.
+     */
+    private void kill(int slot) {
+        if (alive[slot]) {
+            alive[slot] = false;
+            dead++;
+        }
+    }
+
+    /**
+     * Returns the slot of the i-th ball that is still
+     * in the game.
+     * @param i the place of the ball.
+     * @return the slot.
+     */
+    private int slotOf(int i) {
+        if (dead > 0) {
+            compact();
+        }
+        return i;
+    }
+
+    /**
+     * Moves the balls that are still in the game to the
+     * start of the arrays, keeping their order.
+     */
+    private void compact() {
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (alive[i]) {
+                x[n] = x[i];
+                y[n] = y[i];
+                dx[n] = dx[i];
+                dy[n] = dy[i];
+                radius[n] = radius[i];
+                alive[n] = true;
+                n++;
+            }
+        }
+        Arrays.fill(alive, n, count, false);
+        count = n;
+        dead = 0;
+    }
+
+    /**
+     * Makes the arrays bigger.
+     * @param capacity the new length of the arrays.
+     */
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        dx = Arrays.copyOf(dx, capacity);
+        dy = Arrays.copyOf(dy, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        alive = Arrays.copyOf(alive, capacity);
+    }
+
+    /**
+     * The ball the blocks and listeners are told hit
+     * them. it stands for the ball of the system that is
+     * moving now: everything that reads or changes the
+     * ball goes to its slot in the arrays, since the
+     * ball itself isn't in any environment, and removing
+     * it from the game takes that ball out of the system.
+     */
+    private class Hitter extends Ball {
+
+        private int slot;
+
+        /**
+         * A constructor for the ball, that isn't in any
+         * environment itself, and doesn't stand for any
+         * ball of the system yet.
+         */
+        Hitter() {
+            super(new Point(0, 0), 1, color, null);
+            slot = -1;
+        }
+
+        /**
+         * Moves a ball of the system one step, with
+         * Ball.moveOneStep.
+         * @param i the slot of the ball.
+         * @param first the first collision of the ball in
+         * the step, or null.
+         */
+        void move(int i, CollisionInfo first) {
+            slot = i;
+            velocity.setDx(dx[i]);
+            velocity.setDy(dy[i]);
+            moveOneStep(game, first);
+        }
+
+        /**
+         * A getter for the x value of the center.
+         * @return the x value.
+         */
+        public double getX() {
+            return x[slot];
+        }
+
+        /**
+         * A getter for the y value of the center.
+         * @return the y value.
+         */
+        public double getY() {
+            return y[slot];
+        }
+
+        /**
+         * A getter for the radius.
+         * @return the radius.
+         */
+        public int getSize() {
+            return radius[slot];
+        }
+
+        /**
+         * A getter for the velocity, as it is when the
+         * ball hits something.
+         * @return the velocity.
+         */
+        public Velocity getVelocity() {
+            return velocity;
+        }
+
+        /**
+         * Sets the velocity of the ball. like with a
+         * ball object, the velocity a hit gives it is set
+         * after the listeners are done. does nothing
+         * before the ball stands for any ball of the
+         * system (the ball constructor sets a velocity).
+         * @param v the velocity.
+         */
+        public void setVelocity(Velocity v) {
+            if (slot < 0) {
+                return;
+            }
+            dx[slot] = v.getDx();
+            dy[slot] = v.getDy();
+        }
+
+        /**
+         * Moves the ball to a point, on the 32.32 grid in
+         * the fixed point mode.
+         * @param cx the x value of the point.
+         * @param cy the y value of the point.
+         */
+        public void setCenter(double cx, double cy) {
+            x[slot] = Fixed.snap(cx);
+            y[slot] = Fixed.snap(cy);
+        }
+
+        /**
+         * Draws the ball, like the system draws it.
+         * @param surface the draw surface.
+         */
+        public void drawOn(DrawSurface surface) {
+            surface.setColor(color);
+            surface.fillCircle((int) x[slot], (int) y[slot], radius[slot]);
+            surface.setColor(Color.BLACK);
+            surface.drawCircle((int) x[slot], (int) y[slot], radius[slot]);
+        }
+
+        /**
+         * Does nothing, since the system moves its balls.
+         */
+        public void timePassed() { }
+
+        /**
+         * Does nothing, since the ball is already in the
+         * game with its system.
+         * @param g the game.
+         */
+        public void addToGame(GameLevel g) { }
+
+        /**
+         * Takes the ball out of the system.
+         * @param g the game.
+         */
+        public void removeFromGame(GameLevel g) {
+            kill(slot);
+        }
+
+        /**
+         * Moves the center of the ball, as a part of a
+         * step.
+         * @param mx the horizontal move.
+         * @param my the vertical move.
+         */
+        protected void moveBy(double mx, double my) {
+            x[slot] += mx;
+            y[slot] += my;
+        }
+
+        /**
+         * Keeps the velocity the ball bounced with, in
+         * the middle of a step.
+         * @param after the velocity.
+         */
+        protected void keepVelocity(Velocity after) {
+            dx[slot] = after.getDx();
+            dy[slot] = after.getDy();
+            velocity.setDx(after.getDx());
+            velocity.setDy(after.getDy());
+        }
+
+        /**
+         * Checks if the ball is still in the system.
+         * @return true if it wasn't taken out.
+         */
+        protected boolean isInGame() {
+            return alive[slot];
+        }
+    }
+}
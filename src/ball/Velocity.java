@@ -1,13 +1,15 @@
 
 package ball;
 
+import geometry.Fixed;
 import geometry.Point;
 
 /**
  *  Velocity specifies the change of  in position on the
  *  x and the y axes. Can be viewed as a speed of an
  *  object in each axes, or as speed towards a specific
- *  angel.
+ *  angel. in the fixed point mode, the velocity is
+ *  always rounded to the 32.32 grid.
  * @author Uri Knoll
  * @version  %I%, %G%
  * @since 17.0.2
@@ -40,7 +42,7 @@ public class Velocity {
     * to the right).
     */
    public void setDx(double dx) {
-       this.dx = dx;
+       this.dx = Fixed.snap(dx);
    }
 
    /**
@@ -49,7 +51,7 @@ public class Velocity {
    * down).
    */
    public void setDy(double dy) {
-       this.dy = dy;
+       this.dy = Fixed.snap(dy);
    }
 
    /**
@@ -124,6 +126,8 @@ public class Velocity {
    /**
     * Create a new Velocity object using speed in an angle
     * (by calculating the horizontal and vertical velocity).
+    * in the fixed point mode, StrictMath is used so the
+    * result is the same on every machine.
     * @param angle the angle of the velocity.
     * @param speed the velocity to the angel.
     * @return the new velocity object.
@@ -131,8 +135,15 @@ public class Velocity {
    public static Velocity fromAngleAndSpeed(double angle, double speed) {
        angle = angle % 360;
        angle = (angle * Math.PI) / 180;
-       double dx = Math.sin(angle) * speed;
-       double dy = -Math.cos(angle) * speed;
+       double dx;
+       double dy;
+       if (Fixed.isEnabled()) {
+           dx = StrictMath.sin(angle) * speed;
+           dy = -StrictMath.cos(angle) * speed;
+       } else {
+           dx = Math.sin(angle) * speed;
+           dy = -Math.cos(angle) * speed;
+       }
        return new Velocity(dx, dy);
    }
 
@@ -7,7 +7,6 @@ import collision.Collidable;
 import collision.CollisionInfo;
 import game.GameLevel;
 import game.GameEnvironment;
-import geometry.Line;
 import geometry.Point;
 import geometry.Rectangle;
 import listener.HitListener;
@@ -38,6 +37,7 @@ public class Block implements Collidable, Sprite, HitNotifier {
     private List<HitListener> hitListeners;
     private Rectangle rect;
     private Color color;
+    private int slot;
 
     /**
      * A Constructor for the block. creates a new
@@ -48,6 +48,7 @@ public class Block implements Collidable, Sprite, HitNotifier {
     public Block(Rectangle rect, Color color) {
         this.rect = rect;
         this.color = color;
+        this.slot = -1;
         hitListeners = new LinkedList<HitListener>();
     }
 
@@ -70,6 +71,34 @@ public class Block implements Collidable, Sprite, HitNotifier {
         return rect;
     }
 
+    /**
+     * A getter for the color of the block.
+     * @return the color, or null if the block isn't
+     * drawn.
+     */
+    public Color getColor() {
+        return color;
+    }
+
+    /**
+     * Returns the slot of the block in the block store
+     * that keeps it.
+     * @return the slot, or -1 if no store kept it.
+     */
+    int getSlot() {
+        return slot;
+    }
+
+    /**
+     * Sets the slot of the block in the block store
+     * that keeps it, so the store doesn't need a map
+     * from blocks to slots.
+     * @param slot the slot.
+     */
+    void setSlot(int slot) {
+        this.slot = slot;
+    }
+
     /**
      * Returns the Block it self. needed for
      * a spesific case, when a ball hits multiple
@@ -102,8 +131,8 @@ public class Block implements Collidable, Sprite, HitNotifier {
         if (color == null) {
             return;
         }
-        int upperLeftX = (int) rect.getUpperLeft().getX();
-        int upperLeftY = (int) rect.getUpperLeft().getY();
+        int upperLeftX = (int) rect.getX();
+        int upperLeftY = (int) rect.getY();
         int width = (int) rect.getWidth();
         int height = (int) rect.getHeight();
         d.setColor(color);
@@ -118,18 +147,60 @@ public class Block implements Collidable, Sprite, HitNotifier {
      * which hit the block should have.
      * Also notify the block that were hit.
      * @param hitter the ball which hit the blocks.
-     * @param collisionPoint the collision Point.
+     * @param ci the collision info, with the collision
+     * point and the borders it is on.
      * @param currentVelocity the velocity of the
      * object hitting the block at  the collision
      * point.
      * @return the new velocity.
      */
-    public Velocity hit(Ball hitter, Point collisionPoint,
+    public Velocity hit(Ball hitter, CollisionInfo ci,
                         Velocity currentVelocity) {
-        Line[] borders = rect.getBorders();
+        bounce(ci, currentVelocity);
+        this.notifyHit(hitter, ci.collisionPoint());
+        return currentVelocity;
+    }
+
+    /**
+     * Returns the velocity a ball would have after
+     * hitting the block, like hitting it would, but
+     * without notifying anyone or changing the given
+     * velocity.
+     * @param environment the game environment
+     * with a list of collidables.
+     * @param ci the collision info with a
+     * collision point and a collision object.
+     * @param currentVelocity the velocity of the
+     * ball at the collision point.
+     * @return the new velocity.
+     */
+    public Velocity predictHit(GameEnvironment environment, CollisionInfo ci,
+                               Velocity currentVelocity) {
+        List<Collidable> others = environment.getOtherObjectsAt(
+                                      ci.collisionPoint(),
+                                      ci.collisionObject());
+        if (!others.isEmpty()) {
+            Velocity newV = cornerVelocity(others, ci, currentVelocity);
+            if (!Point.cmpDoubles(currentVelocity.getDx(), newV.getDx())
+                || !Point.cmpDoubles(currentVelocity.getDy(), newV.getDy())) {
+                return newV;
+            }
+        }
+        return bounce(ci, currentVelocity.copyV());
+    }
 
+    /**
+     * Changes a velocity as if it hit the block at a
+     * collision point, alone.
+     * @param ci the collision info, with the collision
+     * point and the borders it is on.
+     * @param currentVelocity the velocity to change.
+     * @return the changed velocity.
+     */
+    private static Velocity bounce(CollisionInfo ci,
+                                   Velocity currentVelocity) {
         //checks which border was hit
-        if (borders[Rectangle.TOP].isPointOnLine(collisionPoint)) {
+        if (ci.isOnBorder(Rectangle.TOP)) {
 
             /*
              *  checks if a problematic corner was hit.
@@ -138,12 +209,10 @@ public class Block implements Collidable, Sprite, HitNotifier {
              *  velocity as if it hit the top border could
              *  send it back into the block.
              */
-            Line left = borders[Rectangle.LEFT];
-            Line right = borders[Rectangle.RIGHT];
-            boolean doesHitBadCorner = ((left.isPointOnLine(collisionPoint)
+            boolean doesHitBadCorner = ((ci.isOnBorder(Rectangle.LEFT)
                     && currentVelocity.getDx() > 0
                     && currentVelocity.getDy() < 0))
-                    || ((right.isPointOnLine(collisionPoint)
+                    || ((ci.isOnBorder(Rectangle.RIGHT)
                     && currentVelocity.getDx() < 0
                     && currentVelocity.getDy() < 0));
             if (doesHitBadCorner) {
@@ -154,7 +223,7 @@ public class Block implements Collidable, Sprite, HitNotifier {
 
             }
         } else {
-            if (borders[Rectangle.BOTTOM].isPointOnLine(collisionPoint)) {
+            if (ci.isOnBorder(Rectangle.BOTTOM)) {
 
                 /*
                  *  checks if a problematic corner was hit.
@@ -163,12 +232,10 @@ public class Block implements Collidable, Sprite, HitNotifier {
                  *  velocity as if it hit the bottom border could
                  *  send it back into the block.
                  */
-                Line left = borders[Rectangle.LEFT];
-                Line right = borders[Rectangle.RIGHT];
-                boolean doesHitBadCorner = ((left.isPointOnLine(collisionPoint)
+                boolean doesHitBadCorner = ((ci.isOnBorder(Rectangle.LEFT)
                         && currentVelocity.getDx() > 0
                         && currentVelocity.getDy() > 0))
-                        || ((right.isPointOnLine(collisionPoint)
+                        || ((ci.isOnBorder(Rectangle.RIGHT)
                         && currentVelocity.getDx() < 0
                         && currentVelocity.getDy() > 0));
                 if (doesHitBadCorner) {
@@ -182,7 +249,6 @@ public class Block implements Collidable, Sprite, HitNotifier {
                 currentVelocity.invertDirection(Velocity.HORIZONTAL);
             }
         }
-        this.notifyHit(hitter);
         return currentVelocity;
     }
 
@@ -209,26 +275,47 @@ public class Block implements Collidable, Sprite, HitNotifier {
                                        GameEnvironment environment,
                                        CollisionInfo ci,
                                        Velocity currentVelocity) {
-        Velocity newV = currentVelocity.copyV();
-        Collidable c1 = ci.collisionObject();
-        Collidable c2 = environment.getClosestColOtherObj(ci.collisionPoint(),
-                                                          c1, null);
-        if (c2 == null) {
+        List<Collidable> others = environment.getOtherObjectsAt(
+                                      ci.collisionPoint(),
+                                      ci.collisionObject());
+        if (others.isEmpty()) {
             // No other objects were hit.
             return currentVelocity;
         }
-        Collidable c3 = environment.getClosestColOtherObj(ci.collisionPoint(),
-                                                          c1, c2);
-        if (c3 != null) {
+        Velocity newV = cornerVelocity(others, ci, currentVelocity);
+        this.notifyHit(hitter, ci.collisionPoint());
+        for (int i = 0; i < others.size() && i < 2; i++) {
+            others.get(i).getCollisionBlock().notifyHit(hitter,
+                                                        ci.collisionPoint());
+        }
+        return newV;
+    }
+
+    /**
+     * Returns the velocity an object should have if it
+     * hit the block at a point that other collidables
+     * are on too.
+     * @param others the other collidables at the
+     * collision point.
+     * @param ci the collision info with a
+     * collision point and a collision object.
+     * @param currentVelocity the velocity of the
+     * object hitting the block at the collision
+     * point.
+     * @return the new velocity.
+     */
+    private static Velocity cornerVelocity(List<Collidable> others,
+                                           CollisionInfo ci,
+                                           Velocity currentVelocity) {
+        Velocity newV = currentVelocity.copyV();
+        Collidable c2 = others.get(0);
+        if (others.size() > 1) {
             // 3 objects were hit, meaning a corner was hit.
             newV.invertDirection(Velocity.HORIZONTAL);
             newV.invertDirection(Velocity.VERTICAL);
-            this.notifyHit(hitter);
-            c2.getCollisionBlock().notifyHit(hitter);
-            c3.getCollisionBlock().notifyHit(hitter);
             return newV;
         }
-        Rectangle rect1 = c1.getCollisionRectangle();
+        Rectangle rect1 = ci.collisionObject().getCollisionRectangle();
         Rectangle rect2 = c2.getCollisionRectangle();
         int cornerNumObj1 = rect1.pointCornerNum(ci.collisionPoint());
         int cornerNumObj2 = rect2.pointCornerNum(ci.collisionPoint());
@@ -243,8 +330,6 @@ public class Block implements Collidable, Sprite, HitNotifier {
              */
             newV.invertDirection(Velocity.HORIZONTAL);
             newV.invertDirection(Velocity.VERTICAL);
-            this.notifyHit(hitter);
-            c2.getCollisionBlock().notifyHit(hitter);
             return newV;
         }
 
@@ -252,18 +337,16 @@ public class Block implements Collidable, Sprite, HitNotifier {
          * The hit point is of two objects side by
          * side, so it acts like it hit one big object.
          */
-        Line[] borders1 = c1.getCollisionRectangle().getBorders();
-        Line[] borders2 = c2.getCollisionRectangle().getBorders();
-        if (borders1[0].isPointOnLine(ci.collisionPoint())
-            && borders2[0].isPointOnLine(ci.collisionPoint())
-            || (borders1[2].isPointOnLine(ci.collisionPoint())
-            && borders2[2].isPointOnLine(ci.collisionPoint()))) {
+        int borders2 = rect2.bordersAt(ci.collisionPoint().getX(),
+                                       ci.collisionPoint().getY());
+        if (ci.isOnBorder(Rectangle.TOP)
+            && (borders2 & (1 << Rectangle.TOP)) != 0
+            || (ci.isOnBorder(Rectangle.BOTTOM)
+            && (borders2 & (1 << Rectangle.BOTTOM)) != 0)) {
             newV.invertDirection(Velocity.VERTICAL);
         } else {
             newV.invertDirection(Velocity.HORIZONTAL);
         }
-        this.notifyHit(hitter);
-        c2.getCollisionBlock().notifyHit(hitter);
         return newV;
     }
 
@@ -308,8 +391,9 @@ public class Block implements Collidable, Sprite, HitNotifier {
      * Notifies all of the listeners that the block
      * was hit, and they should call their hitEvent.
      * @param hitter the ball that hit the block.
+     * @param at the point where the block was hit.
      */
-    private void notifyHit(Ball hitter) {
+    void notifyHit(Ball hitter, Point at) {
 
         // Make a copy of the hitListeners before iterating over them.
         List<HitListener> listeners = new LinkedList<HitListener>(hitListeners);
@@ -0,0 +1,116 @@
+package blocks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The memory of the block stores of a level, freed
+ * all at once when the level is over. the columns of
+ * the stores made in an arena are kept off the heap
+ * (see NativeBlockColumns) if the foreign memory
+ * module was added to the jvm (--add-modules
+ * jdk.incubator.foreign), and on the heap if it
+ * wasn't. the native columns are only built on java
+ * 17 (the module changed after it, and is gone from
+ * java 20), so they are looked up by name and the
+ * heap is used if they aren't there. levels only use
+ * an arena if it was asked for, by running with
+ * -Darkanoid.offheap=true. only the columns move off
+ * the heap: a level still makes a block object, its
+ * rectangle and a node in the collision index for
+ * every block, so its heap still grows with the
+ * number of blocks.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class BlockArena {
+
+    public static final String OFF_HEAP_PROPERTY = "arkanoid.offheap";
+    private static final String FOREIGN_MODULE = "jdk.incubator.foreign";
+    private static final String NATIVE_COLUMNS = "blocks.NativeBlockColumns";
+
+    private static boolean nativeMissing;
+
+    private List<BlockColumns> columns;
+    private boolean open;
+
+    /**
+     * A constructor for an open arena with no memory yet.
+     */
+    public BlockArena() {
+        columns = new ArrayList<BlockColumns>();
+        open = true;
+    }
+
+    /**
+     * Checks if levels should keep their blocks in an
+     * arena, asked for by running with
+     * -Darkanoid.offheap=true.
+     * @return true if an arena should be used.
+     */
+    public static boolean isRequested() {
+        return Boolean.getBoolean(OFF_HEAP_PROPERTY);
+    }
+
+    /**
+     * Checks if the memory of the arena is off the heap,
+     * meaning the foreign memory module is there.
+     * @return true if the columns are kept off the heap.
+     */
+    public static boolean isOffHeap() {
+        return !nativeMissing
+               && ModuleLayer.boot().findModule(FOREIGN_MODULE).isPresent();
+    }
+
+    /**
+     * Checks if the arena wasn't closed yet.
+     * @return true if its memory can be used.
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Frees the memory of all the stores made in the
+     * arena, in one call. the stores can't be used after
+     * that.
+     */
+    public void close() {
+        if (!open) {
+            return;
+        }
+        for (BlockColumns c : columns) {
+            c.free();
+        }
+        columns.clear();
+        open = false;
+    }
+
+    /**
+     * Makes the columns for a store in the arena.
+     * @param capacity the number of blocks to make room
+     * for.
+     * @return the columns.
+     */
+    BlockColumns newColumns(int capacity) {
+        if (!open) {
+            throw new IllegalStateException("the arena is closed");
+        }
+        BlockColumns made = null;
+        if (isOffHeap()) {
+            try {
+                made = (BlockColumns) Class.forName(NATIVE_COLUMNS)
+                                           .getDeclaredConstructor(int.class)
+                                           .newInstance(capacity);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                nativeMissing = true;
+            }
+        }
+        if (made == null) {
+            made = new HeapBlockColumns(capacity);
+        }
+        columns.add(made);
+        return made;
+    }
+}
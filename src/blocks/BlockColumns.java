@@ -0,0 +1,85 @@
+package blocks;
+
+/**
+ * The columns a block store keeps its blocks in: the
+ * bounds of every block (x, y, width and height), its
+ * color and the number of times it was hit, by the
+ * slot of the block. the heap columns keep them in
+ * arrays. the native columns keep them off the heap
+ * with jdk.incubator.foreign, and are only used in a
+ * block arena that asked for them (see BlockArena).
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+abstract class BlockColumns {
+
+    public static final int X = 0;
+    public static final int Y = 1;
+    public static final int WIDTH = 2;
+    public static final int HEIGHT = 3;
+    public static final int FIELDS = 4;
+
+    /**
+     * Returns the number of blocks there is room for.
+     * @return the capacity.
+     */
+    abstract int capacity();
+
+    /**
+     * Makes room for more blocks, keeping the ones
+     * already there.
+     * @param capacity the new number of blocks.
+     */
+    abstract void grow(int capacity);
+
+    /**
+     * Returns a field of the bounds of a block.
+     * @param slot the slot of the block.
+     * @param field X, Y, WIDTH or HEIGHT.
+     * @return the value of the field.
+     */
+    abstract double bound(int slot, int field);
+
+    /**
+     * Sets a field of the bounds of a block.
+     * @param slot the slot of the block.
+     * @param field X, Y, WIDTH or HEIGHT.
+     * @param value the value of the field.
+     */
+    abstract void setBound(int slot, int field, double value);
+
+    /**
+     * Returns the color of a block.
+     * @param slot the slot of the block.
+     * @return the color as ARGB, 0 if it isn't drawn.
+     */
+    abstract int color(int slot);
+
+    /**
+     * Sets the color of a block.
+     * @param slot the slot of the block.
+     * @param argb the color as ARGB, 0 if it isn't drawn.
+     */
+    abstract void setColor(int slot, int argb);
+
+    /**
+     * Returns the number of times a block was hit.
+     * @param slot the slot of the block.
+     * @return the number of hits.
+     */
+    abstract int hits(int slot);
+
+    /**
+     * Sets the number of times a block was hit.
+     * @param slot the slot of the block.
+     * @param hits the number of hits.
+     */
+    abstract void setHits(int slot, int hits);
+
+    /**
+     * Lets go of the memory of the columns. they can't
+     * be used after that.
+     */
+    abstract void free();
+}
@@ -0,0 +1,168 @@
+package blocks;
+
+import ball.Ball;
+import geometry.Point;
+import geometry.Rectangle;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A span of blocks that sit next to each other with
+ * no gaps, kept as one big block for collisions. the
+ * balls only look for collisions with the span, so
+ * the edges the blocks share are never hit and don't
+ * count as corners. when the span is hit, the blocks
+ * the collision point is on are notified, so each
+ * block still has its own listeners. the blocks are
+ * kept in rows sorted by their tops, and every row is
+ * sorted by the left sides of its blocks, so the
+ * blocks a point is on are found with binary searches.
+ * the span itself is never drawn, the blocks are.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class BlockSpan extends Block {
+
+    private static final double TINY = Point.TINY_CONSTANT;
+
+    private List<Block> blocks;
+    private double[] tops;
+    private double[] bottoms;
+    private double[][] lefts;
+    private double[][] rights;
+    private Block[][] rows;
+
+    /**
+     * A constructor for a span of blocks.
+     * @param rect the rectangle the blocks cover together.
+     * @param blocks the blocks of the span.
+     */
+    public BlockSpan(Rectangle rect, List<Block> blocks) {
+        super(rect);
+        this.blocks = new ArrayList<Block>(blocks);
+        index();
+    }
+
+    /**
+     * Returns the blocks of the span.
+     * @return the blocks.
+     */
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Notifies the blocks of the span the point is on,
+     * from the top row down and from left to right. on
+     * an edge two blocks share, both are notified. if
+     * the point isn't on any of them (a tiny bit off),
+     * the block closest to it is notified.
+     * @param hitter the ball that hit the span.
+     * @param at the point where the span was hit.
+     */
+    void notifyHit(Ball hitter, Point at) {
+        double x = at.getX();
+        double y = at.getY();
+        boolean notified = false;
+        for (int r = firstAtOrAfter(bottoms, y - TINY); r < rows.length
+             && tops[r] <= y + TINY; r++) {
+            Block[] row = rows[r];
+            for (int i = firstAtOrAfter(rights[r], x - TINY); i < row.length
+                 && lefts[r][i] <= x + TINY; i++) {
+                if (row[i].getCollisionRectangle().isPointOnBorders(x, y)) {
+                    row[i].notifyHit(hitter, at);
+                    notified = true;
+                }
+            }
+        }
+        if (!notified && rows.length > 0) {
+            closest(x, y).notifyHit(hitter, at);
+        }
+    }
+
+    /**
+     * Finds the block closest to a point, which is the
+     * first block (from the top row down, and from left to
+     * right) with the closest point of the span on it.
+     * @param x the x value of the point.
+     * @param y the y value of the point.
+     * @return the block.
+     */
+    private Block closest(double x, double y) {
+        int r = Math.min(firstAtOrAfter(bottoms, y), rows.length - 1);
+        int i = Math.min(firstAtOrAfter(rights[r], x), rows[r].length - 1);
+        return rows[r][i];
+    }
+
+    /**
+     * Finds the first of a sorted array of numbers that
+     * is at least a value.
+     * @param sorted the numbers, from small to big.
+     * @param value the value.
+     * @return the place of the number, or the length of
+     * the array if they are all smaller.
+     */
+    private static int firstAtOrAfter(double[] sorted, double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Splits the blocks into rows of blocks with the same
+     * top, sorts the rows by their tops and the blocks in
+     * every row by their left sides, and keeps the edges
+     * of the rows and blocks.
+     */
+    private void index() {
+        List<Block> sorted = new ArrayList<Block>(blocks);
+        sorted.sort(Comparator.comparingDouble((Block b) -> b
+                                   .getCollisionRectangle().getY())
+                              .thenComparingDouble(b -> b
+                                   .getCollisionRectangle().getX()));
+        List<List<Block>> found = new ArrayList<List<Block>>();
+        List<Block> row = null;
+        double top = Double.NaN;
+        for (Block b : sorted) {
+            double y = b.getCollisionRectangle().getY();
+            if (row == null || !Point.cmpDoubles(y, top)) {
+                row = new ArrayList<Block>();
+                found.add(row);
+                top = y;
+            }
+            row.add(b);
+        }
+        int count = found.size();
+        tops = new double[count];
+        bottoms = new double[count];
+        lefts = new double[count][];
+        rights = new double[count][];
+        rows = new Block[count][];
+        for (int r = 0; r < count; r++) {
+            rows[r] = found.get(r).toArray(new Block[0]);
+            lefts[r] = new double[rows[r].length];
+            rights[r] = new double[rows[r].length];
+            tops[r] = Double.POSITIVE_INFINITY;
+            bottoms[r] = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < rows[r].length; i++) {
+                Rectangle rect = rows[r][i].getCollisionRectangle();
+                lefts[r][i] = rect.getX();
+                rights[r][i] = rect.getX() + rect.getWidth();
+                tops[r] = Math.min(tops[r], rect.getY());
+                bottoms[r] = Math.max(bottoms[r],
+                                      rect.getY() + rect.getHeight());
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package blocks;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import ball.Ball;
+import biuoop.DrawSurface;
+import game.GameLevel;
+import geometry.Rectangle;
+import listener.HitListener;
+import sprites.Sprite;
+
+/**
+ * The blocks of a level kept in columns, and drawn as
+ * one sprite. the bounds of every block, its color (0
+ * for a block that isn't drawn) and the number of times
+ * it was hit are kept in block columns, on the heap or,
+ * for a store made in a block arena, off it, and a set
+ * of bits says which blocks are still in the game.
+ * removing a block only clears its bit, and drawing and
+ * looking up blocks go over the set bits. the block
+ * objects are kept too, for their listeners, and the
+ * store listens to their hits to count them. a block
+ * object knows its slot, so a store doesn't need a
+ * map from blocks to slots, and a block is kept in
+ * one store at a time. a store can't be used after
+ * its arena was closed.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class BlockStore implements Sprite, HitListener {
+
+    private static final int START_CAPACITY = 16;
+
+    private BlockArena arena;
+    private BlockColumns columns;
+    private Block[] blocks;
+    private BitSet alive;
+    private int count;
+
+    /**
+     * A constructor for an empty store on the heap.
+     */
+    public BlockStore() {
+        columns = new HeapBlockColumns(START_CAPACITY);
+        alive = new BitSet();
+    }
+
+    /**
+     * A constructor for an empty store whose columns are
+     * kept in an arena, and freed when it's closed.
+     * @param arena an open arena.
+     */
+    public BlockStore(BlockArena arena) {
+        this.arena = arena;
+        columns = arena.newColumns(START_CAPACITY);
+        alive = new BitSet();
+    }
+
+    /**
+     * Adds a block that has no block object, only its
+     * bounds and color.
+     * @param rect the bounds of the block.
+     * @param color the color, or null if it isn't drawn.
+     * @return the slot of the block.
+     */
+    public int add(Rectangle rect, Color color) {
+        checkOpen();
+        if (count == columns.capacity()) {
+            columns.grow(count * 2);
+        }
+        int slot = count++;
+        columns.setBound(slot, BlockColumns.X, rect.getX());
+        columns.setBound(slot, BlockColumns.Y, rect.getY());
+        columns.setBound(slot, BlockColumns.WIDTH, rect.getWidth());
+        columns.setBound(slot, BlockColumns.HEIGHT, rect.getHeight());
+        int argb = 0;
+        if (color != null) {
+            argb = color.getRGB();
+        }
+        columns.setColor(slot, argb);
+        columns.setHits(slot, 0);
+        alive.set(slot);
+        return slot;
+    }
+
+    /**
+     * Adds a block object, and starts counting its hits.
+     * @param block the block.
+     * @return the slot of the block.
+     */
+    public int add(Block block) {
+        int old = slotOf(block);
+        if (old != -1 && alive.get(old)) {
+            return old;
+        }
+        int slot = add(block.getCollisionRectangle(), block.getColor());
+        if (blocks == null) {
+            blocks = new Block[columns.capacity()];
+        } else if (blocks.length < columns.capacity()) {
+            blocks = Arrays.copyOf(blocks, columns.capacity());
+        }
+        blocks[slot] = block;
+        block.setSlot(slot);
+        if (old == -1) {
+            block.addHitListener(this);
+        }
+        return slot;
+    }
+
+    /**
+     * Removes the block in a slot, by clearing its bit.
+     * @param slot the slot.
+     */
+    public void remove(int slot) {
+        alive.clear(slot);
+    }
+
+    /**
+     * Removes a block object.
+     * @param block the block.
+     * @return true if it was in the store.
+     */
+    public boolean remove(Block block) {
+        int slot = slotOf(block);
+        if (slot == -1 || !alive.get(slot)) {
+            return false;
+        }
+        alive.clear(slot);
+        return true;
+    }
+
+    /**
+     * Returns the block object in a slot.
+     * @param slot the slot.
+     * @return the block, or null if it was added without
+     * one.
+     */
+    public Block getBlock(int slot) {
+        if (blocks == null || slot >= blocks.length) {
+            return null;
+        }
+        return blocks[slot];
+    }
+
+    /**
+     * Checks if the block in a slot is still in the game.
+     * @param slot the slot.
+     * @return true if it wasn't removed.
+     */
+    public boolean isAlive(int slot) {
+        return alive.get(slot);
+    }
+
+    /**
+     * Returns the number of blocks still in the game.
+     * @return the number of blocks.
+     */
+    public int size() {
+        return alive.cardinality();
+    }
+
+    /**
+     * Returns the number of times the block in a slot
+     * was hit.
+     * @param slot the slot.
+     * @return the number of hits.
+     */
+    public int getHits(int slot) {
+        checkOpen();
+        return columns.hits(slot);
+    }
+
+    /**
+     * Returns the number of times a block was hit.
+     * @param block the block.
+     * @return the number of hits, 0 if it isn't in the
+     * store.
+     */
+    public int getHits(Block block) {
+        int slot = slotOf(block);
+        if (slot == -1) {
+            return 0;
+        }
+        return getHits(slot);
+    }
+
+    /**
+     * Finds the first block still in the game whose
+     * bounds hold a point (on the borders counts).
+     * @param x the x value of the point.
+     * @param y the y value of the point.
+     * @return the slot of the block, or -1 if there is none.
+     */
+    public int blockAt(double x, double y) {
+        checkOpen();
+        for (int i = alive.nextSetBit(0); i >= 0;
+             i = alive.nextSetBit(i + 1)) {
+            double left = columns.bound(i, BlockColumns.X);
+            double top = columns.bound(i, BlockColumns.Y);
+            if (x >= left && x <= left + columns.bound(i, BlockColumns.WIDTH)
+                && y >= top
+                && y <= top + columns.bound(i, BlockColumns.HEIGHT)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Counts a hit of a block.
+     * @param beingHit the block that was hit.
+     * @param hitter the ball that hit it.
+     */
+    public void hitEvent(Block beingHit, Ball hitter) {
+        int slot = slotOf(beingHit);
+        if (slot != -1 && isOpen()) {
+            columns.setHits(slot, columns.hits(slot) + 1);
+        }
+    }
+
+    /**
+     * Draws the blocks still in the game, in the order
+     * they were added, like Block.drawOn. a color object
+     * is only made when the color changes.
+     * @param d the draw surface.
+     */
+    public void drawOn(DrawSurface d) {
+        checkOpen();
+        Color color = null;
+        for (int i = alive.nextSetBit(0); i >= 0;
+             i = alive.nextSetBit(i + 1)) {
+            int argb = columns.color(i);
+            if (argb == 0) {
+                continue;
+            }
+            if (color == null || color.getRGB() != argb) {
+                color = new Color(argb, true);
+            }
+            int x = (int) columns.bound(i, BlockColumns.X);
+            int y = (int) columns.bound(i, BlockColumns.Y);
+            int width = (int) columns.bound(i, BlockColumns.WIDTH);
+            int height = (int) columns.bound(i, BlockColumns.HEIGHT);
+            d.setColor(color);
+            d.fillRectangle(x, y, width, height);
+            d.setColor(Color.BLACK);
+            d.drawRectangle(x, y, width, height);
+        }
+    }
+
+    /**
+     * Nothing happens to the blocks when time passes.
+     */
+    public void timePassed() {
+        return;
+    }
+
+    /**
+     * Adds the store to a game, as one sprite.
+     * @param game the game.
+     */
+    public void addToGame(GameLevel game) {
+        game.addSprite(this);
+    }
+
+    /**
+     * Checks if the columns of the store can still be
+     * used, meaning its arena (if it has one) is open.
+     * @return true if the store can be used.
+     */
+    public boolean isOpen() {
+        return arena == null || arena.isOpen();
+    }
+
+    /**
+     * Returns the slot of a block object in the store.
+     * @param block the block.
+     * @return the slot, or -1 if it isn't in the store.
+     */
+    private int slotOf(Block block) {
+        int slot = block.getSlot();
+        if (blocks == null || slot < 0 || slot >= blocks.length
+            || blocks[slot] != block) {
+            return -1;
+        }
+        return slot;
+    }
+
+    /**
+     * Makes sure the columns of the store weren't freed.
+     */
+    private void checkOpen() {
+        if (!isOpen()) {
+            throw new IllegalStateException("the arena of the store is closed");
+        }
+    }
+}
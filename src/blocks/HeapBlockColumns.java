@@ -0,0 +1,113 @@
+package blocks;
+
+import java.util.Arrays;
+
+/**
+ * Block columns kept in arrays on the heap: the
+ * bounds of every block one after the other in one
+ * array, and the colors and hits in two more.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+class HeapBlockColumns extends BlockColumns {
+
+    private double[] bounds;
+    private int[] colors;
+    private int[] hits;
+
+    /**
+     * A constructor for columns with room for a number
+     * of blocks.
+     * @param capacity the number of blocks.
+     */
+    HeapBlockColumns(int capacity) {
+        bounds = new double[capacity * FIELDS];
+        colors = new int[capacity];
+        hits = new int[capacity];
+    }
+
+    /**
+     * Returns the number of blocks there is room for.
+     * @return the capacity.
+     */
+    int capacity() {
+        return colors.length;
+    }
+
+    /**
+     * Makes the arrays bigger.
+     * @param capacity the new number of blocks.
+     */
+    void grow(int capacity) {
+        bounds = Arrays.copyOf(bounds, capacity * FIELDS);
+        colors = Arrays.copyOf(colors, capacity);
+        hits = Arrays.copyOf(hits, capacity);
+    }
+
+    /**
+     * Returns a field of the bounds of a block.
+     * @param slot the slot of the block.
+     * @param field X, Y, WIDTH or HEIGHT.
+     * @return the value of the field.
+     */
+    double bound(int slot, int field) {
+        return bounds[slot * FIELDS + field];
+    }
+
+    /**
+     * Sets a field of the bounds of a block.
+     * @param slot the slot of the block.
+     * @param field X, Y, WIDTH or HEIGHT.
+     * @param value the value of the field.
+     */
+    void setBound(int slot, int field, double value) {
+        bounds[slot * FIELDS + field] = value;
+    }
+
+    /**
+     * Returns the color of a block.
+     * @param slot the slot of the block.
+     * @return the color as ARGB, 0 if it isn't drawn.
+     */
+    int color(int slot) {
+        return colors[slot];
+    }
+
+    /**
+     * Sets the color of a block.
+     * @param slot the slot of the block.
+     * @param argb the color as ARGB, 0 if it isn't drawn.
+     */
+    void setColor(int slot, int argb) {
+        colors[slot] = argb;
+    }
+
+    /**
+     * Returns the number of times a block was hit.
+     * @param slot the slot of the block.
+     * @return the number of hits.
+     */
+    int hits(int slot) {
+        return hits[slot];
+    }
+
+    /**
+     * Sets the number of times a block was hit.
+     * @param slot the slot of the block.
+     * @param count the number of hits.
+     */
+    void setHits(int slot, int count) {
+        hits[slot] = count;
+    }
+
+    /**
+     * Drops the arrays, the garbage collector frees
+     * them.
+     */
+    void free() {
+        bounds = null;
+        colors = null;
+        hits = null;
+    }
+}
@@ -0,0 +1,136 @@
+package blocks;
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+/**
+ * Block columns kept off the heap, in one segment of
+ * native memory: every block takes a record of its
+ * bounds (four doubles), its color and its hits (two
+ * ints), so the garbage collector doesn't see the
+ * blocks at all, however many there are. the segment
+ * has its own resource scope, so growing it frees the
+ * old segment right away, and freeing the columns
+ * frees the memory in one call. this class is loaded
+ * only by BlockArena, by name, since it needs the
+ * jdk.incubator.foreign module of java 17 and isn't
+ * built without it (see build.xml).
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+class NativeBlockColumns extends BlockColumns {
+
+    private static final long COLOR = FIELDS * Double.BYTES;
+    private static final long HITS = COLOR + Integer.BYTES;
+    private static final long RECORD = HITS + Integer.BYTES;
+
+    private ResourceScope scope;
+    private MemorySegment segment;
+    private int capacity;
+
+    /**
+     * A constructor for columns with room for a number
+     * of blocks.
+     * @param capacity the number of blocks.
+     */
+    NativeBlockColumns(int capacity) {
+        this.capacity = capacity;
+        scope = ResourceScope.newSharedScope();
+        segment = MemorySegment.allocateNative(capacity * RECORD,
+                                               Double.BYTES, scope);
+    }
+
+    /**
+     * Returns the number of blocks there is room for.
+     * @return the capacity.
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Moves the records to a bigger segment, and frees
+     * the old one.
+     * @param newCapacity the new number of blocks.
+     */
+    void grow(int newCapacity) {
+        ResourceScope next = ResourceScope.newSharedScope();
+        MemorySegment bigger = MemorySegment.allocateNative(
+                                   newCapacity * RECORD, Double.BYTES, next);
+        bigger.asSlice(0, segment.byteSize()).copyFrom(segment);
+        scope.close();
+        scope = next;
+        segment = bigger;
+        capacity = newCapacity;
+    }
+
+    /**
+     * Returns a field of the bounds of a block.
+     * @param slot the slot of the block.
+     * @param field X, Y, WIDTH or HEIGHT.
+     * @return the value of the field.
+     */
+    double bound(int slot, int field) {
+        return MemoryAccess.getDoubleAtOffset(segment, slot * RECORD
+                                              + field * Double.BYTES);
+    }
+
+    /**
+     * Sets a field of the bounds of a block.
+     * @param slot the slot of the block.
+     * @param field X, Y, WIDTH or HEIGHT.
+     * @param value the value of the field.
+     */
+    void setBound(int slot, int field, double value) {
+        MemoryAccess.setDoubleAtOffset(segment, slot * RECORD
+                                       + field * Double.BYTES, value);
+    }
+
+    /**
+     * Returns the color of a block.
+     * @param slot the slot of the block.
+     * @return the color as ARGB, 0 if it isn't drawn.
+     */
+    int color(int slot) {
+        return MemoryAccess.getIntAtOffset(segment, slot * RECORD + COLOR);
+    }
+
+    /**
+     * Sets the color of a block.
+     * @param slot the slot of the block.
+     * @param argb the color as ARGB, 0 if it isn't drawn.
+     */
+    void setColor(int slot, int argb) {
+        MemoryAccess.setIntAtOffset(segment, slot * RECORD + COLOR, argb);
+    }
+
+    /**
+     * Returns the number of times a block was hit.
+     * @param slot the slot of the block.
+     * @return the number of hits.
+     */
+    int hits(int slot) {
+        return MemoryAccess.getIntAtOffset(segment, slot * RECORD + HITS);
+    }
+
+    /**
+     * Sets the number of times a block was hit.
+     * @param slot the slot of the block.
+     * @param count the number of hits.
+     */
+    void setHits(int slot, int count) {
+        MemoryAccess.setIntAtOffset(segment, slot * RECORD + HITS, count);
+    }
+
+    /**
+     * Frees the native memory, by closing the scope of
+     * the segment.
+     */
+    void free() {
+        if (scope.isAlive()) {
+            scope.close();
+        }
+    }
+}
@@ -8,9 +8,9 @@ import biuoop.DrawSurface;
 import biuoop.KeyboardSensor;
 import collision.Collidable;
 import collision.CollisionInfo;
+import collision.Kinematic;
 import game.GameLevel;
 import game.GameEnvironment;
-import geometry.Line;
 import geometry.Point;
 import geometry.Rectangle;
 import sprites.Sprite;
@@ -19,16 +19,21 @@ import sprites.Sprite;
  * A user controlled paddle. it is a collidable
  * so objects can collide and bounce off it,
  * and a Sprite so it can be displayed on a
- * GUI.
+ * GUI. it's kinematic: it moves its rectangle
+ * in place, and lets the game know how much it
+ * moved in the frame, so balls are checked by how
+ * they move relative to it.
  * @author Uri Knoll
  * @version  %I%, %G%
  * @since 17.0.2
  */
-public class Paddle implements Sprite, Collidable {
+public class Paddle implements Sprite, Kinematic {
 
 
    private KeyboardSensor keyboard;
    private Rectangle rect;
+   private GameLevel game;
+   private double dx;
    private Color color;
    private double speed;
    private double border1;
@@ -79,17 +84,36 @@ public class Paddle implements Sprite, Collidable {
     *  @param g the game to be added to.
     */
    public void addToGame(GameLevel g) {
+       game = g;
        g.addCollidable(this);
        g.addSprite(this);
    }
 
+    /**
+     * Returns how much the paddle moved horizontally
+     * in this frame.
+     * @return the horizontal move.
+     */
+    public double getDx() {
+        return dx;
+    }
+
+    /**
+     * Returns 0, since the paddle only moves
+     * horizontally.
+     * @return 0.
+     */
+    public double getDy() {
+        return 0;
+    }
+
     /**
     * Draws the paddle on the drawing surface.
     * @param d the drawing surface.
     */
     public void drawOn(DrawSurface d) {
-       int upperLeftX = (int) rect.getUpperLeft().getX();
-       int upperLeftY = (int) rect.getUpperLeft().getY();
+       int upperLeftX = (int) rect.getX();
+       int upperLeftY = (int) rect.getY();
        int width = (int) rect.getWidth();
        int height = (int) rect.getHeight();
        d.setColor(color);
@@ -98,17 +122,6 @@ public class Paddle implements Sprite, Collidable {
        d.drawRectangle(upperLeftX, upperLeftY, width, height);
     }
 
-    /**
-    * Changing the location of the paddle.
-    * @param newCornerX the new upperLeft corner's
-    * X value for the paddle.
-    * @return the new Rectangle of the paddle.
-    */
-   private Rectangle updateRec(double newCornerX) {
-       Point corner = new Point(newCornerX, rect.getUpperLeft().getY());
-       return new Rectangle(corner, rect.getWidth(), rect.getHeight());
-   }
-
    /**
     * Moves the paddle left if the user
     * presses the left key and the paddle
@@ -116,8 +129,8 @@ public class Paddle implements Sprite, Collidable {
     */
    public void moveLeft() {
        if (keyboard.isPressed(KeyboardSensor.LEFT_KEY)
-           && rect.getUpperLeft().getX() > border1) {
-           rect = updateRec(rect.getUpperLeft().getX() - speed);
+           && rect.getX() > border1) {
+           rect.moveTo(rect.getX() - speed, rect.getY());
        }
 
    }
@@ -129,8 +142,8 @@ public class Paddle implements Sprite, Collidable {
     */
    public void moveRight() {
        if (keyboard.isPressed(KeyboardSensor.RIGHT_KEY)
-           && rect.getUpperLeft().getX() + rect.getWidth() < border2) {
-           rect = updateRec(rect.getUpperLeft().getX() + speed);
+           && rect.getX() + rect.getWidth() < border2) {
+           rect.moveTo(rect.getX() + speed, rect.getY());
        }
    }
 
@@ -138,11 +151,17 @@ public class Paddle implements Sprite, Collidable {
    /**
     * Lets the paddle now time passed, meaning
     * it should change. the paddle changes it's
-    * location according to the user's input.
+    * location according to the user's input,
+    * and lets the game know if it moved.
     */
    public void timePassed() {
+       double before = rect.getX();
        moveLeft();
        moveRight();
+       dx = rect.getX() - before;
+       if (dx != 0 && game != null) {
+           game.updateCollidable(this);
+       }
    }
 
 
@@ -155,17 +174,19 @@ public class Paddle implements Sprite, Collidable {
      * it hits the middle part of the paddle.
      * if it hits the other parts, returns a fixed
      * velocity. (still the same as it had, but the
-     * angle is changed to a fixed value).
+     * angle is changed to a fixed value). a ball that
+     * hits a side bounces off it as it moves relative
+     * to the paddle, so a moving paddle pushes it.
      * @param hitter the ball that hits the paddle.
-     * @param collisionPoint the collision Point.
+     * @param ci the collision info, with the collision
+     * point and the borders it is on.
      * @param currentVelocity the velocity of the
      * @return the new velocity
      */
-    public Velocity hit(Ball hitter, Point collisionPoint,
+    public Velocity hit(Ball hitter, CollisionInfo ci,
                         Velocity currentVelocity) {
-        Line[] borders = rect.getBorders();
-        double distance = collisionPoint.getX() - rect.getUpperLeft().getX();
-        if (borders[Rectangle.TOP].isPointOnLine(collisionPoint)) {
+        double distance = ci.collisionPoint().getX() - rect.getX();
+        if (ci.isOnBorder(Rectangle.TOP)) {
 
             //Sends it in a strong angle to the left/right
             if (distance < rect.getWidth() / 5
@@ -197,7 +218,7 @@ public class Paddle implements Sprite, Collidable {
         } else {
 
               //hits the sides of the paddle.
-             currentVelocity.invertDirection(Velocity.HORIZONTAL);
+             currentVelocity.setDx(2 * dx - currentVelocity.getDx());
          }
           return currentVelocity;
    }
@@ -224,13 +245,35 @@ public class Paddle implements Sprite, Collidable {
                                        Velocity currentVelocity) {
         Velocity newV = currentVelocity.copyV();
         Collidable c1 = ci.collisionObject();
-        Collidable c2 = environment.getClosestColOtherObj(ci.collisionPoint(),
-                                                          c1);
-        if (c2 == null) {
+        if (environment.getOtherObjectsAt(ci.collisionPoint(), c1).isEmpty()) {
             return currentVelocity;
         }
         newV.invertDirection(Velocity.HORIZONTAL);
         newV.invertDirection(Velocity.VERTICAL);
         return newV;
     }
+
+    /**
+     * Returns the velocity a ball would have after
+     * hitting the paddle, like hitting it would, but
+     * without changing the given velocity. a side is
+     * pushed by how the paddle moved in this frame.
+     * @param environment the game environment
+     * with a list of collidables.
+     * @param ci the collision info with a
+     * collision point and a collision object.
+     * @param currentVelocity the velocity of the
+     * ball at the collision point.
+     * @return the new velocity.
+     */
+    public Velocity predictHit(GameEnvironment environment, CollisionInfo ci,
+                               Velocity currentVelocity) {
+        Velocity newV = multipleObjectsHit(null, environment, ci,
+                                           currentVelocity);
+        if (Point.cmpDoubles(currentVelocity.getDx(), newV.getDx())
+            && Point.cmpDoubles(currentVelocity.getDy(), newV.getDy())) {
+            return hit(null, ci, currentVelocity.copyV());
+        }
+        return newV;
+    }
 }
@@ -0,0 +1,133 @@
+package collision;
+
+/**
+ * Checks a circle moving along a segment against a
+ * batch of packed rectangle bounds, and finds the
+ * nearest hit. the scalar kernel checks the rectangles
+ * one by one. the vector kernel checks a few lanes at
+ * once with jdk.incubator.vector, and is only used if
+ * it's turned on (with setVectorized, or by running
+ * with -Darkanoid.vector=true) and the module was added
+ * to the jvm (--add-modules jdk.incubator.vector). both
+ * give exactly the same times.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public abstract class BoundsKernel {
+
+    public static final String VECTOR_PROPERTY = "arkanoid.vector";
+    public static final int NO_HIT = -1;
+
+    private static final BoundsKernel SCALAR = new ScalarBoundsKernel();
+    private static BoundsKernel vector;
+    private static BoundsKernel current = SCALAR;
+
+    static {
+        setVectorized(Boolean.getBoolean(VECTOR_PROPERTY));
+    }
+
+    /**
+     * Turns the vector kernel on or off. if the vector
+     * module isn't there, the scalar kernel is kept.
+     * @param vectorized true to use the vector kernel.
+     * @return true if the vector kernel is used now.
+     */
+    public static boolean setVectorized(boolean vectorized) {
+        if (!vectorized) {
+            current = SCALAR;
+            return false;
+        }
+        if (vector == null) {
+            try {
+                Class<?> type = Class.forName("collision.VectorBoundsKernel");
+                vector = (BoundsKernel) type.getDeclaredConstructor()
+                                            .newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return false;
+            }
+        }
+        current = vector;
+        return true;
+    }
+
+    /**
+     * Checks if the vector kernel is used.
+     * @return true if the vector kernel is used.
+     */
+    public static boolean isVectorized() {
+        return current != SCALAR;
+    }
+
+    /**
+     * Returns the kernel that is used now.
+     * @return the kernel.
+     */
+    static BoundsKernel get() {
+        return current;
+    }
+
+    /**
+     * Finds when a circle moving from (x, y) by (dx, dy)
+     * first touches every rectangle in the batch, the
+     * same as Rectangle.collisionTime, and puts the times
+     * in the times array of the batch.
+     * @param batch the batch of rectangles.
+     * @param x the x value of the center at the start.
+     * @param y the y value of the center at the start.
+     * @param dx the horizontal change of the center.
+     * @param dy the vertical change of the center.
+     * @param radius the radius of the circle, 0 for a point.
+     */
+    abstract void collisionTimes(PackedBounds batch, double x, double y,
+                                 double dx, double dy, double radius);
+
+    /**
+     * Finds the rectangle in the batch the circle hits
+     * first. if two are hit at the same time, the one
+     * with the lower order is returned.
+     * @param batch the batch of rectangles.
+     * @param x the x value of the center at the start.
+     * @param y the y value of the center at the start.
+     * @param dx the horizontal change of the center.
+     * @param dy the vertical change of the center.
+     * @param radius the radius of the circle, 0 for a point.
+     * @return the place of the rectangle in the batch, or
+     * NO_HIT. its time is in the times array of the batch.
+     */
+    int nearest(PackedBounds batch, double x, double y, double dx,
+                double dy, double radius) {
+        collisionTimes(batch, x, y, dx, dy, radius);
+        double[] times = batch.times();
+        int best = NO_HIT;
+        for (int i = 0; i < batch.size(); i++) {
+            double t = times[i];
+            if (t < 0) {
+                continue;
+            }
+            if (best == NO_HIT || t < times[best]
+                || (t == times[best] && batch.order(i) < batch.order(best))) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Checks one rectangle of the batch with
+     * Rectangle.collisionTime.
+     * @param batch the batch of rectangles.
+     * @param i the place of the rectangle.
+     * @param x the x value of the center at the start.
+     * @param y the y value of the center at the start.
+     * @param dx the horizontal change of the center.
+     * @param dy the vertical change of the center.
+     * @param radius the radius of the circle, 0 for a point.
+     * @return the collision time.
+     */
+    static double scalarTime(PackedBounds batch, int i, double x, double y,
+                             double dx, double dy, double radius) {
+        return batch.item(i).getCollisionRectangle().collisionTime(x, y, dx,
+                                                                   dy, radius);
+    }
+}
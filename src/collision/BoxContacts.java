@@ -0,0 +1,78 @@
+package collision;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import geometry.Rectangle;
+
+/**
+ * The collidables found so far whose collision
+ * rectangles overlap a box (touching counts), while
+ * an index is being searched. like PointContacts,
+ * they are kept in the order they were added to the
+ * index.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+class BoxContacts {
+
+    private double minX;
+    private double minY;
+    private double maxX;
+    private double maxY;
+    private List<Collidable> found;
+    private List<Integer> orders;
+
+    /**
+     * A constructor for an empty set of contacts of a box.
+     * @param minX the left side of the box.
+     * @param minY the top of the box.
+     * @param maxX the right side of the box.
+     * @param maxY the bottom of the box.
+     */
+    BoxContacts(double minX, double minY, double maxX, double maxY) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        found = new ArrayList<Collidable>();
+        orders = new ArrayList<Integer>();
+    }
+
+    /**
+     * Checks if a collidable overlaps the box, and keeps
+     * it if it does.
+     * @param c the collidable to check.
+     * @param cOrder the order the collidable was added in.
+     */
+    void offer(Collidable c, int cOrder) {
+        Rectangle rect = c.getCollisionRectangle();
+        if (rect.getX() > maxX || rect.getX() + rect.getWidth() < minX
+            || rect.getY() > maxY || rect.getY() + rect.getHeight() < minY) {
+            return;
+        }
+        int i = found.size();
+        while (i > 0 && orders.get(i - 1) > cOrder) {
+            i--;
+        }
+        found.add(i, c);
+        orders.add(i, cOrder);
+    }
+
+    /**
+     * Copies the collidables that were found to an array,
+     * in the order they were added to the index, as many
+     * as it has room for.
+     * @param out the array.
+     * @return the number of collidables found, which can
+     * be more than the length of the array.
+     */
+    int copyTo(Collidable[] out) {
+        int n = Math.min(out.length, found.size());
+        for (int i = 0; i < n; i++) {
+            out[i] = found.get(i);
+        }
+        return found.size();
+    }
+}
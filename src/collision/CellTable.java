@@ -0,0 +1,139 @@
+package collision;
+
+/**
+ * A hash table from the keys of grid cells to what the
+ * cells hold, kept in two arrays (one for the keys and
+ * one for the values), so looking up a cell doesn't
+ * make a Long. collisions go to the next place in the
+ * table, and when a cell is removed the cells after it
+ * are moved back, so there are no deleted markers.
+ * @param <T> the type of what a cell holds.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+class CellTable<T> {
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    /**
+     * A constructor for an empty table.
+     */
+    CellTable() {
+        keys = new long[64];
+        values = new Object[64];
+    }
+
+    /**
+     * Returns what a cell holds.
+     * @param key the key of the cell.
+     * @return what it holds, or null if the cell is
+     * not in the table.
+     */
+    @SuppressWarnings("unchecked")
+    T get(long key) {
+        return (T) values[indexOf(key)];
+    }
+
+    /**
+     * Puts what a cell holds in the table, over what it
+     * held if it was there.
+     * @param key the key of the cell.
+     * @param value what it holds, not null.
+     */
+    void put(long key, T value) {
+        if (2 * (size + 1) > keys.length) {
+            resize(keys.length * 2);
+        }
+        int i = indexOf(key);
+        if (values[i] == null) {
+            keys[i] = key;
+            size++;
+        }
+        values[i] = value;
+    }
+
+    /**
+     * Removes a cell from the table, and moves back
+     * the cells after it that couldn't get their own
+     * place because of it.
+     * @param key the key of the cell.
+     */
+    void remove(long key) {
+        int hole = indexOf(key);
+        if (values[hole] == null) {
+            return;
+        }
+        values[hole] = null;
+        size--;
+        int mask = keys.length - 1;
+        int i = (hole + 1) & mask;
+        while (values[i] != null) {
+            int home = home(keys[i]);
+
+            // the cell can move back only if its home isn't
+            // between the hole and where it is now.
+            boolean stays;
+            if (hole <= i) {
+                stays = hole < home && home <= i;
+            } else {
+                stays = hole < home || home <= i;
+            }
+            if (!stays) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                values[i] = null;
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Finds the place of a cell, or the empty place
+     * it would go in.
+     * @param key the key of the cell.
+     * @return the place.
+     */
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int i = home(key);
+        while (values[i] != null && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the place a cell goes in if it's free,
+     * with the bits of its key mixed so the cells next
+     * to each other are spread out.
+     * @param key the key of the cell.
+     * @return the place.
+     */
+    private int home(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (keys.length - 1);
+    }
+
+    /**
+     * Moves all the cells to a bigger table.
+     * @param capacity the size of the new table, a
+     * power of 2.
+     */
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int at = indexOf(oldKeys[i]);
+                keys[at] = oldKeys[i];
+                values[at] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package collision;
+
+import geometry.Fixed;
+import geometry.Point;
+import geometry.Rectangle;
+
+/**
+ * The closest collision found so far while an
+ * index is being searched. collidables are checked
+ * one by one against a circle moving along a segment
+ * given by its start and change, and the closest one
+ * is kept. if two are at the same distance, the one
+ * with the lower order is kept. when the vector
+ * kernel is on, collidables are gathered in a batch
+ * (one is kept for every thread, so queries don't
+ * make their own) and checked together when the batch
+ * is full, when an index asks for the settled distance
+ * or at the end of the query. kinematic
+ * collidables are checked by how the circle moves
+ * relative to them: they are moved back by their
+ * move in the part of the frame the segment takes.
+ * in the fixed point mode, the times are found in
+ * 32.32 fixed point (and are always on its grid).
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+class ClosestHit {
+
+    private static final ThreadLocal<PackedBounds> BATCHES =
+        ThreadLocal.withInitial(PackedBounds::new);
+
+    private double x;
+    private double y;
+    private double dx;
+    private double dy;
+    private double radius;
+    private double span;
+    private double length;
+    private double time;
+    private Collidable collidable;
+    private int order;
+    private double shiftX;
+    private double shiftY;
+    private BoundsKernel kernel;
+    private PackedBounds batch;
+    private boolean fixed;
+    private int flushes;
+    private int flushed;
+
+    /**
+     * A constructor for a hit that is set up later, with
+     * reset.
+     */
+    ClosestHit() {
+    }
+
+    /**
+     * Empties the hit and sets it up for another segment,
+     * so an index can use the same hit for all its queries.
+     * @param startX the x value of the segment start.
+     * @param startY the y value of the segment start.
+     * @param changeX the horizontal change of the segment.
+     * @param changeY the vertical change of the segment.
+     * @param r the radius of the circle, 0 for a point.
+     * @param part the part of the current frame the segment
+     * takes, 0 to check kinematic collidables where they are.
+     * @return the hit.
+     */
+    ClosestHit reset(double startX, double startY, double changeX,
+                     double changeY, double r, double part) {
+        this.x = startX;
+        this.y = startY;
+        this.dx = changeX;
+        this.dy = changeY;
+        this.radius = r;
+        this.span = part;
+        this.length = Math.sqrt(changeX * changeX + changeY * changeY);
+        this.time = Double.POSITIVE_INFINITY;
+        this.collidable = null;
+        this.order = 0;
+        this.shiftX = 0;
+        this.shiftY = 0;
+        this.fixed = Fixed.isEnabled();
+        this.flushes = 0;
+        this.flushed = 0;
+        if (BoundsKernel.isVectorized() && !fixed) {
+            kernel = BoundsKernel.get();
+            batch = BATCHES.get();
+            batch.clear();
+        } else {
+            batch = null;
+        }
+        return this;
+    }
+
+    /**
+     * Checks the circle against a collidable, and
+     * keeps it if it's the closest collision so far.
+     * @param c the collidable to check.
+     * @param cOrder the order the collidable was added in.
+     */
+    void offer(Collidable c, int cOrder) {
+        if (span > 0 && c instanceof Kinematic) {
+            offerMoving((Kinematic) c, cOrder);
+            return;
+        }
+        if (batch != null) {
+            batch.add(c, cOrder);
+            if (batch.isFull()) {
+                flush();
+            }
+            return;
+        }
+        double t = time(c.getCollisionRectangle(), x, y, dx, dy);
+        if (t < 0) {
+            return;
+        }
+        if (t < time || (t == time && cOrder < order)) {
+            time = t;
+            collidable = c;
+            order = cOrder;
+            shiftX = 0;
+            shiftY = 0;
+        }
+    }
+
+    /**
+     * Checks the circle against a kinematic collidable,
+     * by moving the start of the circle by the move of
+     * the collidable in the span (which is the same as
+     * moving the collidable back), and taking the move
+     * of the collidable off the segment.
+     * @param c the collidable to check.
+     * @param cOrder the order the collidable was added in.
+     */
+    private void offerMoving(Kinematic c, int cOrder) {
+        double moveX = Fixed.snap(c.getDx() * span);
+        double moveY = Fixed.snap(c.getDy() * span);
+        double t = time(c.getCollisionRectangle(), x + moveX, y + moveY,
+                        dx - moveX, dy - moveY);
+        if (t < 0) {
+            return;
+        }
+        if (t < time || (t == time && cOrder < order)) {
+            time = t;
+            collidable = c;
+            order = cOrder;
+            shiftX = moveX;
+            shiftY = moveY;
+        }
+    }
+
+    /**
+     * Finds when the circle, moving from (startX, startY)
+     * by (changeX, changeY), touches a rectangle, in
+     * fixed point if the mode is on.
+     * @param rect the rectangle.
+     * @param startX the x value of the start.
+     * @param startY the y value of the start.
+     * @param changeX the horizontal change.
+     * @param changeY the vertical change.
+     * @return the collision time, or a negative number.
+     */
+    private double time(Rectangle rect, double startX, double startY,
+                        double changeX, double changeY) {
+        if (!fixed) {
+            return rect.collisionTime(startX, startY, changeX, changeY,
+                                      radius);
+        }
+        long t = rect.fixedCollisionTime(Fixed.of(startX), Fixed.of(startY),
+                                         Fixed.of(changeX), Fixed.of(changeY),
+                                         Fixed.of(radius));
+        return Fixed.toDouble(t);
+    }
+
+    /**
+     * Checks the collidables in the batch with the
+     * kernel, and keeps the closest one if it's the
+     * closest collision so far.
+     */
+    private void flush() {
+        if (batch == null || batch.size() == 0) {
+            return;
+        }
+        flushes++;
+        flushed += batch.size();
+        int i = kernel.nearest(batch, x, y, dx, dy, radius);
+        if (i != BoundsKernel.NO_HIT) {
+            double t = batch.times()[i];
+            if (t < time || (t == time && batch.order(i) < order)) {
+                time = t;
+                collidable = batch.item(i);
+                order = batch.order(i);
+                shiftX = 0;
+                shiftY = 0;
+            }
+        }
+        batch.clear();
+    }
+
+    /**
+     * Returns the distance the center passes before
+     * the closest collision checked so far. the batch
+     * waiting to be checked isn't, so the distance can
+     * be more than the real one but never less, and an
+     * index can prune with it for every node it visits.
+     * @return the distance, infinity if nothing was hit.
+     */
+    double distance() {
+        return time * length;
+    }
+
+    /**
+     * Returns the distance the center passes before
+     * the closest collision, after checking the batch.
+     * for indexes that decide to stop once a cell or a
+     * step is done.
+     * @return the distance, infinity if nothing was hit.
+     */
+    double settledDistance() {
+        flush();
+        return time * length;
+    }
+
+    /**
+     * Returns the average number of collidables the
+     * kernel checked at once in the query, for checking
+     * the batches are used.
+     * @return the average size of a batch, 0 if the
+     * kernel wasn't used.
+     */
+    double averageBatch() {
+        if (flushes == 0) {
+            return 0;
+        }
+        return (double) flushed / flushes;
+    }
+
+    /**
+     * Returns the information of the closest collision.
+     * the collision point is where the circle touches
+     * the collidable. for a kinematic collidable, it's
+     * given on the collidable where it is at the end of
+     * the frame.
+     * @return the collision information, or null if
+     * nothing was hit.
+     */
+    CollisionInfo toCollisionInfo() {
+        flush();
+        if (collidable == null) {
+            return null;
+        }
+        Rectangle rect = collidable.getCollisionRectangle();
+        double atX;
+        double atY;
+        if (fixed) {
+            long t = Fixed.of(time);
+            atX = Fixed.toDouble(Fixed.of(x + shiftX)
+                                 + Fixed.mul(Fixed.of(dx - shiftX), t));
+            atY = Fixed.toDouble(Fixed.of(y + shiftY)
+                                 + Fixed.mul(Fixed.of(dy - shiftY), t));
+        } else {
+            atX = x + shiftX + (dx - shiftX) * time;
+            atY = y + shiftY + (dy - shiftY) * time;
+        }
+        Point point = rect.closestPoint(atX, atY);
+        int borders = rect.bordersAt(point.getX(), point.getY());
+        return new CollisionInfo(point, collidable, time, borders);
+    }
+}
@@ -5,7 +5,6 @@ import ball.Velocity;
 import blocks.Block;
 import ball.Ball;
 import game.GameEnvironment;
-import geometry.Point;
 import geometry.Rectangle;
 
 /**
@@ -38,15 +37,16 @@ public interface Collidable {
 
    /**
     * Notify the object that they were collided with at
-    * collisionPoint with a given velocity.
+    * the collision point with a given velocity.
     * The return is the new velocity expected after the hit
     * (based on the force the object inflicted on us).
     * @param hitter the ball that collided.
-    * @param collisionPoint the collision Point.
+    * @param ci the collision info, with the collision point
+    * and the borders it is on.
     * @param currentVelocity the velocity of the
     * @return the new velocity
     */
-   Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity);
+   Velocity hit(Ball hitter, CollisionInfo ci, Velocity currentVelocity);
 
    /**
     * Gets a the collision info, a velocity,
@@ -70,5 +70,22 @@ public interface Collidable {
    Velocity multipleObjectsHit(Ball hitter, GameEnvironment environment,
            CollisionInfo ci, Velocity currentVelocity);
 
+   /**
+    * Returns the velocity a ball would have after
+    * hitting the object, by the same rules as
+    * multipleObjectsHit and hit (a ball that didn't
+    * hit a corner bounces off the object alone), but
+    * without notifying anyone or changing the given
+    * velocity. used to predict where balls go.
+    * @param environment the game environment
+    * with a list of collidables.
+    * @param ci the collision info with a
+    * collision point and a collision object.
+    * @param currentVelocity the velocity of the
+    * ball at the collision point.
+    * @return the new velocity.
+    */
+   Velocity predictHit(GameEnvironment environment, CollisionInfo ci,
+                       Velocity currentVelocity);
 
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+package collision;
+
+import java.util.List;
+
+/**
+ * An index of the collidables in a game, used to
+ * find the closest collision of a trajectory without
+ * checking every collidable.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public interface CollisionIndex {
+
+    String INDEX_PROPERTY = "arkanoid.index";
+
+    /**
+     * Makes the kind of index levels should use, asked
+     * for by running with -Darkanoid.index=grid (a
+     * spatial hash grid) or -Darkanoid.index=tiles (a
+     * tile map). otherwise it's a tree of bounding boxes.
+     * @return a new empty index.
+     */
+    static CollisionIndex requested() {
+        String kind = System.getProperty(INDEX_PROPERTY, "tree");
+        if (kind.equals("grid")) {
+            return new SpatialHashGrid();
+        }
+        if (kind.equals("tiles")) {
+            return new TileMapIndex();
+        }
+        return new DynamicAabbTree();
+    }
+
+    /**
+     * Adds a collidable to the index.
+     * @param c the collidable to add.
+     */
+    void insert(Collidable c);
+
+    /**
+     * Removes a collidable from the index.
+     * @param c the collidable to remove.
+     */
+    void remove(Collidable c);
+
+    /**
+     * Lets the index know the collision rectangle
+     * of a collidable has changed.
+     * @param c the collidable that changed.
+     */
+    void update(Collidable c);
+
+    /**
+     * Finds the closest collision of a circle moving along
+     * a trajectory with the collidables in the index. if
+     * two collidables are hit at the same distance, the
+     * one that was added first is returned. kinematic
+     * collidables are checked by how the circle moves
+     * relative to them.
+     * @param x the x value of the trajectory start.
+     * @param y the y value of the trajectory start.
+     * @param dx the horizontal change of the trajectory.
+     * @param dy the vertical change of the trajectory.
+     * @param radius the radius of the circle, 0 for a point.
+     * @param span the part of the current frame the
+     * trajectory takes, up to the end of the frame (1 for
+     * a whole frame). kinematic collidables are moved back
+     * by that part of their move in the frame. 0 checks
+     * them where they are, as if they were still.
+     * @return the collision information, or null if
+     * there is no collision.
+     */
+    CollisionInfo closestCollision(double x, double y, double dx, double dy,
+                                   double radius, double span);
+
+    /**
+     * Finds all the collidables in the index that have
+     * a point on the borders of their collision rectangle.
+     * @param x the x value of the point.
+     * @param y the y value of the point.
+     * @return the collidables, in the order they were
+     * added to the index.
+     */
+    List<Collidable> collidablesAt(double x, double y);
+
+    /**
+     * Finds all the collidables in the index whose
+     * collision rectangles overlap a box (touching counts),
+     * and puts them in an array.
+     * @param minX the left side of the box.
+     * @param minY the top of the box.
+     * @param maxX the right side of the box.
+     * @param maxY the bottom of the box.
+     * @param out gets the collidables, in the order they
+     * were added to the index, as many as it has room for.
+     * @return the number of collidables found, which can
+     * be more than the length of out.
+     */
+    int overlapping(double minX, double minY, double maxX, double maxY,
+                    Collidable[] out);
+
+    /**
+     * Gets the index ready for closestCollision to be
+     * called from a few threads at once, with nothing
+     * changing the index until they are all done (work
+     * the index would do lazily in a query is done now).
+     * @return true if queries can run at once, false if
+     * they must be made one at a time.
+     */
+    boolean prepareConcurrentQueries();
+
+    /**
+     * Lets the index know the queries that ran at once
+     * (after prepareConcurrentQueries returned true) are
+     * all done, so queries can do their lazy work again.
+     */
+    void finishConcurrentQueries();
+}
@@ -1,12 +1,15 @@
-
 package collision;
 
 import geometry.Point;
+import geometry.Rectangle;
 
 /**
  * Information about a collision.
- * Holds the point of the collision, and the
- * object that was collided with.
+ * Holds the point of the collision, the
+ * object that was collided with, the part of the
+ * trajectory passed before the collision, and the
+ * borders of the object the point is on, so the
+ * object hit doesn't need to look for them again.
  * @author Uri Knoll
  * @version  %I%, %G%
  * @since 17.0.2
@@ -15,6 +18,8 @@ public class CollisionInfo {
 
     private Point collisionPoint;
     private Collidable collisionObject;
+    private double time;
+    private int borders;
 
     /**
      * A constructor for the collision info, gets
@@ -22,10 +27,18 @@ public class CollisionInfo {
      * @param collisionPoint the point of the collision.
      * @param collisionObject the object that was
      * collided with.
+     * @param time the part of the trajectory (0 to 1)
+     * passed before the collision.
+     * @param borders the borders of the object's
+     * rectangle the point is on, as returned by
+     * Rectangle.bordersAt.
      */
-    public CollisionInfo(Point collisionPoint, Collidable collisionObject) {
+    public CollisionInfo(Point collisionPoint, Collidable collisionObject,
+                         double time, int borders) {
         this.collisionPoint = collisionPoint;
         this.collisionObject = collisionObject;
+        this.time = time;
+        this.borders = borders;
     }
 
     /**
@@ -44,5 +57,81 @@ public class CollisionInfo {
     public Collidable collisionObject() {
         return collisionObject;
     }
-}
 
+    /**
+     * Returns the time of impact, the part of the
+     * trajectory passed before the collision.
+     * @return the time of impact, from 0 to 1.
+     */
+    public double time() {
+        return time;
+    }
+
+    /**
+     * Checks if the collision point is on one of the
+     * borders of the object's rectangle.
+     * @param border Rectangle.TOP, RIGHT, BOTTOM or LEFT.
+     * @return true if the point is on that border.
+     */
+    public boolean isOnBorder(int border) {
+        return (borders & (1 << border)) != 0;
+    }
+
+    /**
+     * Returns true if the collision point is on two
+     * borders, meaning a corner of the object was hit.
+     * @return true if a corner was hit.
+     */
+    public boolean isCorner() {
+        return Integer.bitCount(borders) > 1;
+    }
+
+    /**
+     * Returns the side of the object that was hit.
+     * on a corner, the top or bottom border counts
+     * as the side that was hit.
+     * @return Rectangle.TOP, RIGHT, BOTTOM or LEFT.
+     */
+    public int side() {
+        if (isOnBorder(Rectangle.TOP)) {
+            return Rectangle.TOP;
+        }
+        if (isOnBorder(Rectangle.BOTTOM)) {
+            return Rectangle.BOTTOM;
+        }
+        if (isOnBorder(Rectangle.RIGHT)) {
+            return Rectangle.RIGHT;
+        }
+        return Rectangle.LEFT;
+    }
+
+    /**
+     * Returns the x value of the normal of the side
+     * that was hit, pointing out of the object.
+     * @return -1, 0 or 1.
+     */
+    public int normalX() {
+        if (side() == Rectangle.RIGHT) {
+            return 1;
+        }
+        if (side() == Rectangle.LEFT) {
+            return -1;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the y value of the normal of the side
+     * that was hit, pointing out of the object.
+     * @return -1, 0 or 1.
+     */
+    public int normalY() {
+        if (side() == Rectangle.BOTTOM) {
+            return 1;
+        }
+        if (side() == Rectangle.TOP) {
+            return -1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,433 @@
+package collision;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import blocks.Block;
+import blocks.BlockSpan;
+import geometry.Point;
+import geometry.Rectangle;
+
+/**
+ * An index that generates the code that finds the
+ * blocks near a trajectory for the layout of a level
+ * (see LayoutCompiler), so a level that is played
+ * over and over again (like when a bot is trained)
+ * checks its blocks with code made just for it.
+ * the code is made for the bricks of the level (every
+ * block, and every block of a span), and every brick
+ * keeps the collidable it's in now, so when a span is
+ * split into smaller ones the code stays the same and
+ * the bricks just get their new spans. every collidable
+ * is kept in another index too, which is used while
+ * there is no generated code: the first query after
+ * the level is set up generates it, and when a block
+ * that isn't in it is added, or a block moves, it's
+ * dropped and generated again after the layout didn't
+ * change for a while. removing a block doesn't drop
+ * the code, its bricks are just skipped. collidables
+ * that are not blocks (the paddle) are checked on every
+ * query. it's only used if it's turned on (by running
+ * with -Darkanoid.compiled=true).
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class CompiledIndex implements CollisionIndex {
+
+    public static final String COMPILED_PROPERTY = "arkanoid.compiled";
+    public static final int SETTLE_QUERIES = 4096;
+    public static final double STEP_LENGTH = 64.0;
+    private static final double MARGIN = Math.pow(10.0, -6.0);
+
+    private CollisionIndex generic;
+    private Map<Collidable, Integer> orders;
+    private List<Collidable> moving;
+    private Map<Block, Integer> slots;
+    private Rectangle[] bricks;
+    private Collidable[] items;
+    private int[] itemOrders;
+    private ThreadLocal<int[]> found;
+    private ThreadLocal<long[]> sorted;
+    private ThreadLocal<ClosestHit> hits;
+    private LayoutProbe probe;
+    private int quietQueries;
+    private int nextOrder;
+    private int compilations;
+
+    /**
+     * A constructor for an empty index, that uses another
+     * index while there is no generated code.
+     * @param generic an empty index.
+     */
+    public CompiledIndex(CollisionIndex generic) {
+        this.generic = generic;
+        orders = new LinkedHashMap<Collidable, Integer>();
+        moving = new ArrayList<Collidable>();
+        slots = new HashMap<Block, Integer>();
+        found = new ThreadLocal<int[]>();
+        sorted = new ThreadLocal<long[]>();
+        hits = ThreadLocal.withInitial(ClosestHit::new);
+
+        // the first query generates the code right away.
+        quietQueries = SETTLE_QUERIES;
+    }
+
+    /**
+     * Checks if the index was asked for, by running
+     * with -Darkanoid.compiled=true.
+     * @return true if it should be used.
+     */
+    public static boolean isRequested() {
+        return Boolean.getBoolean(COMPILED_PROPERTY);
+    }
+
+    /**
+     * Adds a collidable. a block whose bricks are all in
+     * the generated code, where they were, takes their
+     * slots, otherwise the code is dropped.
+     * @param c the collidable to add.
+     */
+    public void insert(Collidable c) {
+        if (orders.containsKey(c)) {
+            return;
+        }
+        generic.insert(c);
+        int order = nextOrder++;
+        orders.put(c, order);
+        if (c.getCollisionBlock() == null) {
+            moving.add(c);
+        } else if (!claim(c, order)) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Removes a collidable. the generated code is kept,
+     * the slots of its bricks are emptied.
+     * @param c the collidable to remove.
+     */
+    public void remove(Collidable c) {
+        if (orders.remove(c) == null) {
+            return;
+        }
+        generic.remove(c);
+        if (c.getCollisionBlock() == null) {
+            moving.remove(c);
+            return;
+        }
+        if (probe == null) {
+            return;
+        }
+        for (Block b : bricksOf(c)) {
+            Integer slot = slots.get(b);
+            if (slot != null && items[slot] == c) {
+                items[slot] = null;
+            }
+        }
+    }
+
+    /**
+     * Lets the index know a collidable changed. a block
+     * that moved drops the generated code.
+     * @param c the collidable that changed.
+     */
+    public void update(Collidable c) {
+        generic.update(c);
+        if (probe != null && c.getCollisionBlock() != null) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Finds the closest collision of a circle moving along
+     * a trajectory. with generated code, the trajectory is
+     * gone over in steps of STEP_LENGTH: the bricks whose
+     * rectangles overlap the box around a step are found
+     * with the code, and their collidables are checked (with
+     * the collidables that are not blocks), until a step
+     * ends after the closest collision found so far.
+     * otherwise the other index is used.
+     * @param x1 the x value of the trajectory start.
+     * @param y1 the y value of the trajectory start.
+     * @param dx the horizontal change of the trajectory.
+     * @param dy the vertical change of the trajectory.
+     * @param radius the radius of the circle, 0 for a point.
+     * @param span the part of the current frame the
+     * trajectory takes, 0 to check kinematic collidables
+     * where they are.
+     * @return the collision information, or null if
+     * there is no collision.
+     */
+    public CollisionInfo closestCollision(double x1, double y1, double dx,
+                                          double dy, double radius,
+                                          double span) {
+        if (probe == null) {
+            quietQueries++;
+            if (quietQueries < SETTLE_QUERIES || !compile()) {
+                return generic.closestCollision(x1, y1, dx, dy, radius,
+                                                span);
+            }
+        }
+        ClosestHit best = hits.get().reset(x1, y1, dx, dy, radius, span);
+        for (Collidable c : moving) {
+            best.offer(c, orders.get(c));
+        }
+        double pad = radius + MARGIN;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        int steps = Math.max(1, (int) Math.ceil(length / STEP_LENGTH));
+        double startX = x1;
+        double startY = y1;
+        for (int step = 1; step <= steps; step++) {
+            double endX = x1 + dx * step / steps;
+            double endY = y1 + dy * step / steps;
+            if (step == steps) {
+                endX = x1 + dx;
+                endY = y1 + dy;
+            }
+            int count = probe(Math.min(startX, endX) - pad,
+                              Math.min(startY, endY) - pad,
+                              Math.max(startX, endX) + pad,
+                              Math.max(startY, endY) + pad);
+            long[] keys = sorted.get();
+            for (int i = 0; i < count; i++) {
+                int slot = (int) keys[i];
+                if (i == 0 || keys[i] >>> Integer.SIZE
+                              != keys[i - 1] >>> Integer.SIZE) {
+                    best.offer(items[slot], itemOrders[slot]);
+                }
+            }
+            if (best.settledDistance() <= length * step / steps) {
+                break;
+            }
+            startX = endX;
+            startY = endY;
+        }
+        return best.toCollisionInfo();
+    }
+
+    /**
+     * Finds all the collidables with a point on their
+     * borders, with the other index.
+     * @param x the x value of the point.
+     * @param y the y value of the point.
+     * @return the collidables, in the order they were added.
+     */
+    public List<Collidable> collidablesAt(double x, double y) {
+        return generic.collidablesAt(x, y);
+    }
+
+    /**
+     * Finds all the collidables overlapping a box. with
+     * generated code, the blocks are found with it,
+     * otherwise the other index is used.
+     * @param minX the left side of the box.
+     * @param minY the top of the box.
+     * @param maxX the right side of the box.
+     * @param maxY the bottom of the box.
+     * @param out gets the collidables, in the order they
+     * were added.
+     * @return the number of collidables found.
+     */
+    public int overlapping(double minX, double minY, double maxX,
+                           double maxY, Collidable[] out) {
+        if (probe == null) {
+            return generic.overlapping(minX, minY, maxX, maxY, out);
+        }
+        BoxContacts contacts = new BoxContacts(minX, minY, maxX, maxY);
+        for (Collidable c : moving) {
+            contacts.offer(c, orders.get(c));
+        }
+        int count = probe(minX, minY, maxX, maxY);
+        long[] keys = sorted.get();
+        for (int i = 0; i < count; i++) {
+            int slot = (int) keys[i];
+            if (i == 0 || keys[i] >>> Integer.SIZE
+                          != keys[i - 1] >>> Integer.SIZE) {
+                contacts.offer(items[slot], itemOrders[slot]);
+            }
+        }
+        return contacts.copyTo(out);
+    }
+
+    /**
+     * Queries can run at once only with generated code,
+     * since without it they count towards generating it.
+     * @return true if there is generated code.
+     */
+    public boolean prepareConcurrentQueries() {
+        return probe != null;
+    }
+
+    /**
+     * Does nothing, since queries with generated code
+     * don't change anything.
+     */
+    public void finishConcurrentQueries() { }
+
+    /**
+     * Returns the number of times code was generated.
+     * @return the number of layouts generated.
+     */
+    public int getCompilations() {
+        return compilations;
+    }
+
+    /**
+     * Checks if there is generated code for the layout
+     * as it is now.
+     * @return true if queries use generated code.
+     */
+    public boolean isCompiled() {
+        return probe != null;
+    }
+
+    /**
+     * Finds the bricks that overlap a box with the
+     * generated code, and puts the ones that are in a
+     * collidable in the sorted array of the thread, by the
+     * order of their collidables (in the high 32 bits, the
+     * slot is in the low ones), so the bricks of the same
+     * collidable are next to each other.
+     * @param minX the left side of the box.
+     * @param minY the top of the box.
+     * @param maxX the right side of the box.
+     * @param maxY the bottom of the box.
+     * @return the number of bricks found.
+     */
+    private int probe(double minX, double minY, double maxX, double maxY) {
+        int[] out = found.get();
+        long[] keys = sorted.get();
+        if (out == null || out.length < bricks.length) {
+            out = new int[bricks.length];
+            keys = new long[bricks.length];
+            found.set(out);
+            sorted.set(keys);
+        }
+        int count = probe.overlapping(minX, minY, maxX, maxY, out);
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = out[i];
+            if (items[slot] != null) {
+                keys[kept++] = ((long) itemOrders[slot] << Integer.SIZE)
+                               | slot;
+            }
+        }
+        Arrays.sort(keys, 0, kept);
+        return kept;
+    }
+
+    /**
+     * Puts a block in the slots of its bricks, if they
+     * all have slots in the generated code and didn't move.
+     * @param c the block.
+     * @param order the order it was added in.
+     * @return true if it got the slots, false if there is
+     * no generated code or it doesn't have the bricks.
+     */
+    private boolean claim(Collidable c, int order) {
+        if (probe == null) {
+            return false;
+        }
+        List<Block> parts = bricksOf(c);
+        for (Block b : parts) {
+            Integer slot = slots.get(b);
+            if (slot == null || !sameBounds(bricks[slot],
+                                            b.getCollisionRectangle())) {
+                return false;
+            }
+        }
+        for (Block b : parts) {
+            int slot = slots.get(b);
+            items[slot] = c;
+            itemOrders[slot] = order;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the bricks of a block: the blocks of a span,
+     * or the block itself.
+     * @param c the block.
+     * @return the bricks.
+     */
+    private static List<Block> bricksOf(Collidable c) {
+        if (c instanceof BlockSpan) {
+            return ((BlockSpan) c).getBlocks();
+        }
+        return List.of(c.getCollisionBlock());
+    }
+
+    /**
+     * Checks if two rectangles have the same bounds.
+     * @param a the first rectangle.
+     * @param b the second rectangle.
+     * @return true if they are the same.
+     */
+    private static boolean sameBounds(Rectangle a, Rectangle b) {
+        return a.getX() == b.getX() && a.getY() == b.getY()
+               && a.getWidth() == b.getWidth()
+               && a.getHeight() == b.getHeight();
+    }
+
+    /**
+     * Drops the generated code. if there was code for the
+     * level, the queries until it's generated again are
+     * counted, before that the first query generates it.
+     */
+    private void invalidate() {
+        probe = null;
+        bricks = null;
+        items = null;
+        itemOrders = null;
+        slots.clear();
+        if (compilations > 0) {
+            quietQueries = 0;
+        } else {
+            quietQueries = SETTLE_QUERIES;
+        }
+    }
+
+    /**
+     * Generates the code for the bricks of the blocks in
+     * the index now. if it can't be generated, it isn't
+     * tried again until the layout changes.
+     * @return true if the code was generated.
+     */
+    private boolean compile() {
+        List<Block> all = new ArrayList<Block>();
+        List<Collidable> owners = new ArrayList<Collidable>();
+        for (Collidable c : orders.keySet()) {
+            if (c.getCollisionBlock() != null) {
+                for (Block b : bricksOf(c)) {
+                    all.add(b);
+                    owners.add(c);
+                }
+            }
+        }
+        bricks = new Rectangle[all.size()];
+        items = new Collidable[all.size()];
+        itemOrders = new int[all.size()];
+        for (int i = 0; i < bricks.length; i++) {
+            Block b = all.get(i);
+            Rectangle rect = b.getCollisionRectangle();
+            bricks[i] = new Rectangle(new Point(rect.getX(), rect.getY()),
+                                      rect.getWidth(), rect.getHeight());
+            items[i] = owners.get(i);
+            itemOrders[i] = orders.get(owners.get(i));
+            slots.put(b, i);
+        }
+        probe = LayoutCompiler.compile(bricks);
+        if (probe == null) {
+            invalidate();
+            quietQueries = Integer.MIN_VALUE;
+            return false;
+        }
+        compilations++;
+        return true;
+    }
+}
@@ -0,0 +1,805 @@
+package collision;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import geometry.Rectangle;
+
+/**
+ * A dynamic bounding volume tree of collidables.
+ * Every leaf holds one collidable and a box around
+ * its collision rectangle, and every inner node holds
+ * a box around both of its children, so a trajectory
+ * only has to be checked against the leaves whose
+ * boxes it passes through.
+ * The tree is kept balanced with rotations when leaves
+ * are added or removed, so both take O(log n). leaves
+ * of collidables that move (the paddle) get a box that
+ * is a bit bigger than needed, so small moves don't
+ * change the tree at all. after many removals the
+ * tree is rebuilt before the next query.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class DynamicAabbTree implements CollisionIndex {
+
+    public static final double FAT_MARGIN = 10.0;
+    private static final double MARGIN = Math.pow(10.0, -6.0);
+    private static final int NULL_NODE = -1;
+    private static final int MIN_REBUILD_SIZE = 16;
+
+    private double[] minX;
+    private double[] minY;
+    private double[] maxX;
+    private double[] maxY;
+    private int[] parent;
+    private int[] child1;
+    private int[] child2;
+    private int[] height;
+    private int[] order;
+    private Collidable[] items;
+    private int root;
+    private int freeList;
+    private int leafCount;
+    private int nextOrder;
+    private int removedSinceRebuild;
+    private double[] box;
+    private ThreadLocal<ClosestHit> hits;
+    private ThreadLocal<int[]> paths;
+    private Map<Collidable, Integer> leaves;
+    private List<Collidable> moving;
+    private boolean concurrent;
+
+    /**
+     * A constructor for an empty tree.
+     */
+    public DynamicAabbTree() {
+        root = NULL_NODE;
+        freeList = NULL_NODE;
+        leaves = new HashMap<Collidable, Integer>();
+        moving = new ArrayList<Collidable>();
+        box = new double[4];
+        hits = ThreadLocal.withInitial(ClosestHit::new);
+        paths = ThreadLocal.withInitial(() -> new int[64]);
+        grow(16);
+    }
+
+    /**
+     * Adds a collidable to the tree as a new leaf.
+     * @param c the collidable to add.
+     */
+    public void insert(Collidable c) {
+        if (leaves.containsKey(c)) {
+            return;
+        }
+        int leaf = allocateNode();
+        items[leaf] = c;
+        order[leaf] = nextOrder++;
+        height[leaf] = 0;
+        if (c.getCollisionBlock() == null) {
+            moving.add(c);
+        }
+        fit(leaf);
+        insertLeaf(leaf);
+        leaves.put(c, leaf);
+        leafCount++;
+    }
+
+    /**
+     * Removes the leaf of a collidable from the tree.
+     * @param c the collidable to remove.
+     */
+    public void remove(Collidable c) {
+        Integer leaf = leaves.remove(c);
+        if (leaf == null) {
+            return;
+        }
+        if (c.getCollisionBlock() == null) {
+            moving.remove(c);
+        }
+        removeLeaf(leaf);
+        freeNode(leaf);
+        leafCount--;
+        removedSinceRebuild++;
+    }
+
+    /**
+     * Refits the leaf of a collidable whose collision
+     * rectangle changed. if the new rectangle (with the
+     * area a kinematic collidable swept in this frame) is
+     * still inside the leaf's box nothing is changed,
+     * otherwise the leaf is taken out and put back in.
+     * @param c the collidable that changed.
+     */
+    public void update(Collidable c) {
+        Integer leaf = leaves.get(c);
+        if (leaf == null) {
+            return;
+        }
+        double[] swept = sweptBox(c);
+        if (swept[0] >= minX[leaf] && swept[1] >= minY[leaf]
+            && swept[2] <= maxX[leaf] && swept[3] <= maxY[leaf]) {
+            return;
+        }
+        removeLeaf(leaf);
+        fit(leaf);
+        insertLeaf(leaf);
+    }
+
+    /**
+     * Returns the box around the collision rectangle of
+     * a collidable, and for a kinematic collidable also
+     * around where it was at the start of the frame. the
+     * same array is given every time.
+     * @param c the collidable.
+     * @return the min x, min y, max x and max y of the box.
+     */
+    private double[] sweptBox(Collidable c) {
+        Rectangle rect = c.getCollisionRectangle();
+        box[0] = rect.getX();
+        box[1] = rect.getY();
+        box[2] = rect.getX() + rect.getWidth();
+        box[3] = rect.getY() + rect.getHeight();
+        if (c instanceof Kinematic) {
+            Kinematic k = (Kinematic) c;
+            box[0] = Math.min(box[0], box[0] - k.getDx());
+            box[1] = Math.min(box[1], box[1] - k.getDy());
+            box[2] = Math.max(box[2], box[2] - k.getDx());
+            box[3] = Math.max(box[3], box[3] - k.getDy());
+        }
+        return box;
+    }
+
+    /**
+     * Finds the closest collision of a circle moving along
+     * a trajectory with the collidables in the tree. only
+     * goes down nodes whose box, grown by the radius, the
+     * trajectory passes through before the closest
+     * collision found so far (not counting the batch the
+     * vector kernel didn't check yet, so its batches fill
+     * up). the nodes to visit and the
+     * closest hit are kept in scratch of the thread, made
+     * again only when the tree gets taller, so queries
+     * don't allocate and can run at once. while they do,
+     * the tree isn't brought up to date here (see
+     * prepareConcurrentQueries).
+     * @param x1 the x value of the trajectory start.
+     * @param y1 the y value of the trajectory start.
+     * @param dx the horizontal change of the trajectory.
+     * @param dy the vertical change of the trajectory.
+     * @param radius the radius of the circle, 0 for a point.
+     * @param span the part of the current frame the
+     * trajectory takes, 0 to check kinematic collidables
+     * where they are.
+     * @return the collision information, or null if
+     * there is no collision.
+     */
+    public CollisionInfo closestCollision(double x1, double y1, double dx,
+                                          double dy, double radius,
+                                          double span) {
+        if (!concurrent) {
+            catchUp();
+        }
+        if (root == NULL_NODE) {
+            return null;
+        }
+        ClosestHit best = hits.get().reset(x1, y1, dx, dy, radius, span);
+        double length = Math.sqrt(dx * dx + dy * dy);
+        int[] path = path();
+        int top = 0;
+        path[top++] = root;
+        while (top > 0) {
+            int node = path[--top];
+            double tMax = 1;
+            if (length > 0) {
+                tMax = Math.min(1, (best.distance() + MARGIN) / length);
+            }
+            if (!segmentHitsBox(node, x1, y1, dx, dy, radius, tMax)) {
+                continue;
+            }
+            if (child1[node] == NULL_NODE) {
+                best.offer(items[node], order[node]);
+                continue;
+            }
+            path[top++] = child1[node];
+            path[top++] = child2[node];
+        }
+        return best.toCollisionInfo();
+    }
+
+    /**
+     * Returns the hit the last query of this thread
+     * used, for checking how it was found.
+     * @return the hit.
+     */
+    ClosestHit lastHit() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the tree ready for queries at once: the boxes
+     * of the collidables that move are brought up to date,
+     * and the tree is rebuilt if it's due, so the queries
+     * only read it until finishConcurrentQueries.
+     * @return true.
+     */
+    public boolean prepareConcurrentQueries() {
+        catchUp();
+        concurrent = true;
+        return true;
+    }
+
+    /**
+     * Lets queries bring the tree up to date again.
+     */
+    public void finishConcurrentQueries() {
+        concurrent = false;
+    }
+
+    /**
+     * Brings the boxes of the collidables that move up
+     * to date, and rebuilds the tree if it's due.
+     */
+    private void catchUp() {
+        for (Collidable c : moving) {
+            update(c);
+        }
+        if (removedSinceRebuild > leafCount && leafCount >= MIN_REBUILD_SIZE) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Returns the stack of nodes to visit of this
+     * thread, big enough for going down the tree (going
+     * down one node leaves its sibling behind).
+     * @return the stack.
+     */
+    private int[] path() {
+        int[] path = paths.get();
+        if (path.length < height[root] + 2) {
+            path = new int[2 * (height[root] + 2)];
+            paths.set(path);
+        }
+        return path;
+    }
+
+    /**
+     * Finds all the collidables with a point on their
+     * borders. only goes down nodes whose box holds
+     * the point.
+     * @param x the x value of the point.
+     * @param y the y value of the point.
+     * @return the collidables, in the order they were added.
+     */
+    public List<Collidable> collidablesAt(double x, double y) {
+        if (!concurrent) {
+            catchUp();
+        }
+        PointContacts contacts = new PointContacts(x, y);
+        if (root == NULL_NODE) {
+            return contacts.toList();
+        }
+        int[] path = path();
+        int top = 0;
+        path[top++] = root;
+        while (top > 0) {
+            int node = path[--top];
+            if (x < minX[node] - MARGIN || x > maxX[node] + MARGIN
+                || y < minY[node] - MARGIN || y > maxY[node] + MARGIN) {
+                continue;
+            }
+            if (child1[node] == NULL_NODE) {
+                contacts.offer(items[node], order[node]);
+                continue;
+            }
+            path[top++] = child1[node];
+            path[top++] = child2[node];
+        }
+        return contacts.toList();
+    }
+
+    /**
+     * Finds all the collidables overlapping a box, going
+     * down only into the nodes whose boxes overlap it.
+     * @param x1 the left side of the box.
+     * @param y1 the top of the box.
+     * @param x2 the right side of the box.
+     * @param y2 the bottom of the box.
+     * @param out gets the collidables, in the order they
+     * were added.
+     * @return the number of collidables found.
+     */
+    public int overlapping(double x1, double y1, double x2, double y2,
+                           Collidable[] out) {
+        if (!concurrent) {
+            catchUp();
+        }
+        BoxContacts contacts = new BoxContacts(x1, y1, x2, y2);
+        if (root == NULL_NODE) {
+            return contacts.copyTo(out);
+        }
+        int[] path = path();
+        int top = 0;
+        path[top++] = root;
+        while (top > 0) {
+            int node = path[--top];
+            if (x2 < minX[node] - MARGIN || x1 > maxX[node] + MARGIN
+                || y2 < minY[node] - MARGIN || y1 > maxY[node] + MARGIN) {
+                continue;
+            }
+            if (child1[node] == NULL_NODE) {
+                contacts.offer(items[node], order[node]);
+                continue;
+            }
+            path[top++] = child1[node];
+            path[top++] = child2[node];
+        }
+        return contacts.copyTo(out);
+    }
+
+    /**
+     * Returns the height of the tree, for checking
+     * how balanced it is.
+     * @return the height of the tree, -1 if it's empty.
+     */
+    public int height() {
+        if (root == NULL_NODE) {
+            return -1;
+        }
+        return height[root];
+    }
+
+    /**
+     * Checks if the segment from (x1, y1) moving by
+     * (dx, dy) passes through the box of a node, grown
+     * by a radius, somewhere between 0 and tMax, using
+     * the slab method.
+     * @param node the node.
+     * @param x1 the x value of the segment start.
+     * @param y1 the y value of the segment start.
+     * @param dx the horizontal change of the segment.
+     * @param dy the vertical change of the segment.
+     * @param radius how much to grow the box by.
+     * @param tMax the last part of the segment to check.
+     * @return true if the segment passes through the box.
+     */
+    private boolean segmentHitsBox(int node, double x1, double y1,
+                                   double dx, double dy, double radius,
+                                   double tMax) {
+        double tMin = 0;
+        double pad = radius + MARGIN;
+        double lowX = minX[node] - pad;
+        double highX = maxX[node] + pad;
+        if (dx == 0) {
+            if (x1 < lowX || x1 > highX) {
+                return false;
+            }
+        } else {
+            double t1 = (lowX - x1) / dx;
+            double t2 = (highX - x1) / dx;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        double lowY = minY[node] - pad;
+        double highY = maxY[node] + pad;
+        if (dy == 0) {
+            if (y1 < lowY || y1 > highY) {
+                return false;
+            }
+        } else {
+            double t1 = (lowY - y1) / dy;
+            double t2 = (highY - y1) / dy;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        return tMin <= tMax;
+    }
+
+    /**
+     * Sets the box of a leaf around the collision rectangle
+     * of its collidable (and the area it swept in this
+     * frame if it's kinematic). moving collidables get a
+     * fat box.
+     * @param leaf the leaf.
+     */
+    private void fit(int leaf) {
+        double[] swept = sweptBox(items[leaf]);
+        double margin = 0;
+        if (items[leaf].getCollisionBlock() == null) {
+            margin = FAT_MARGIN;
+        }
+        minX[leaf] = swept[0] - margin;
+        minY[leaf] = swept[1] - margin;
+        maxX[leaf] = swept[2] + margin;
+        maxY[leaf] = swept[3] + margin;
+    }
+
+    /**
+     * Puts a leaf in the tree, next to the sibling that
+     * makes the boxes grow the least, and rebalances the
+     * nodes above it.
+     * @param leaf the leaf to put in.
+     */
+    private void insertLeaf(int leaf) {
+        if (root == NULL_NODE) {
+            root = leaf;
+            parent[leaf] = NULL_NODE;
+            return;
+        }
+        int index = root;
+        while (child1[index] != NULL_NODE) {
+            double area = perimeter(index);
+            double combined = unionPerimeter(index, leaf);
+            double cost = 2 * combined;
+            double inheritance = 2 * (combined - area);
+            double cost1 = descendCost(child1[index], leaf) + inheritance;
+            double cost2 = descendCost(child2[index], leaf) + inheritance;
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            if (cost1 < cost2) {
+                index = child1[index];
+            } else {
+                index = child2[index];
+            }
+        }
+        int sibling = index;
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        union(newParent, sibling, leaf);
+        height[newParent] = height[sibling] + 1;
+        if (oldParent != NULL_NODE) {
+            if (child1[oldParent] == sibling) {
+                child1[oldParent] = newParent;
+            } else {
+                child2[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+        refitUp(parent[leaf]);
+    }
+
+    /**
+     * Returns the cost of putting a leaf somewhere
+     * under a node.
+     * @param node the node.
+     * @param leaf the leaf.
+     * @return the growth in perimeter.
+     */
+    private double descendCost(int node, int leaf) {
+        if (child1[node] == NULL_NODE) {
+            return unionPerimeter(node, leaf);
+        }
+        return unionPerimeter(node, leaf) - perimeter(node);
+    }
+
+    /**
+     * Takes a leaf out of the tree. its parent is
+     * replaced by its sibling, and the nodes above
+     * are rebalanced.
+     * @param leaf the leaf to take out.
+     */
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL_NODE;
+            return;
+        }
+        int p = parent[leaf];
+        int grandParent = parent[p];
+        int sibling = child1[p] == leaf ? child2[p] : child1[p];
+        if (grandParent != NULL_NODE) {
+            if (child1[grandParent] == p) {
+                child1[grandParent] = sibling;
+            } else {
+                child2[grandParent] = sibling;
+            }
+            parent[sibling] = grandParent;
+            freeNode(p);
+            refitUp(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL_NODE;
+            freeNode(p);
+        }
+    }
+
+    /**
+     * Walks from a node up to the root, rebalancing
+     * every node and fixing its box and height.
+     * @param node the first node.
+     */
+    private void refitUp(int node) {
+        int index = node;
+        while (index != NULL_NODE) {
+            index = balance(index);
+            int c1 = child1[index];
+            int c2 = child2[index];
+            height[index] = 1 + Math.max(height[c1], height[c2]);
+            union(index, c1, c2);
+            index = parent[index];
+        }
+    }
+
+    /**
+     * If one child of a node is more than one level
+     * higher than the other, rotates it up.
+     * @param a the node to balance.
+     * @return the node that is now in its place.
+     */
+    private int balance(int a) {
+        if (child1[a] == NULL_NODE || height[a] < 2) {
+            return a;
+        }
+        int b = child1[a];
+        int c = child2[a];
+        int diff = height[c] - height[b];
+        if (diff > 1) {
+            return rotate(a, c, b, false);
+        }
+        if (diff < -1) {
+            return rotate(a, b, c, true);
+        }
+        return a;
+    }
+
+    /**
+     * Rotates the higher child of a node up in its place.
+     * the higher child keeps its own higher child, and
+     * gives the other one to the node.
+     * @param a the node.
+     * @param up the higher child of the node.
+     * @param other the other child of the node.
+     * @param upIsFirst true if the higher child is child1.
+     * @return the higher child, now in the node's place.
+     */
+    private int rotate(int a, int up, int other, boolean upIsFirst) {
+        int f = child1[up];
+        int g = child2[up];
+        child1[up] = a;
+        parent[up] = parent[a];
+        parent[a] = up;
+        if (parent[up] != NULL_NODE) {
+            if (child1[parent[up]] == a) {
+                child1[parent[up]] = up;
+            } else {
+                child2[parent[up]] = up;
+            }
+        } else {
+            root = up;
+        }
+        int keep = f;
+        int give = g;
+        if (height[f] <= height[g]) {
+            keep = g;
+            give = f;
+        }
+        child2[up] = keep;
+        if (upIsFirst) {
+            child1[a] = give;
+        } else {
+            child2[a] = give;
+        }
+        parent[give] = a;
+        union(a, other, give);
+        height[a] = 1 + Math.max(height[other], height[give]);
+        union(up, a, keep);
+        height[up] = 1 + Math.max(height[a], height[keep]);
+        return up;
+    }
+
+    /**
+     * Rebuilds the whole tree from its leaves, splitting
+     * them in the middle of their longer axis at every
+     * level. used after many leaves were removed, so the
+     * boxes left behind don't slow down the queries.
+     */
+    private void rebuild() {
+        int[] all = new int[leafCount];
+        int count = 0;
+        for (int leaf : leaves.values()) {
+            all[count++] = leaf;
+        }
+        for (int i = 0; i < items.length; i++) {
+            if (height[i] > 0) {
+                freeNode(i);
+            }
+        }
+        root = build(all, 0, count);
+        if (root != NULL_NODE) {
+            parent[root] = NULL_NODE;
+        }
+        removedSinceRebuild = 0;
+    }
+
+    /**
+     * Builds a subtree out of a range of leaves.
+     * @param all the leaves.
+     * @param from the first leaf in the range.
+     * @param to the end of the range (not included).
+     * @return the root of the subtree.
+     */
+    private int build(int[] all, int from, int to) {
+        if (from >= to) {
+            return NULL_NODE;
+        }
+        if (to - from == 1) {
+            return all[from];
+        }
+        double lowX = Double.POSITIVE_INFINITY;
+        double lowY = Double.POSITIVE_INFINITY;
+        double highX = Double.NEGATIVE_INFINITY;
+        double highY = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            int n = all[i];
+            lowX = Math.min(lowX, minX[n] + maxX[n]);
+            highX = Math.max(highX, minX[n] + maxX[n]);
+            lowY = Math.min(lowY, minY[n] + maxY[n]);
+            highY = Math.max(highY, minY[n] + maxY[n]);
+        }
+        final boolean byX = highX - lowX >= highY - lowY;
+        Integer[] range = new Integer[to - from];
+        for (int i = from; i < to; i++) {
+            range[i - from] = all[i];
+        }
+        Arrays.sort(range, (n1, n2) -> Double.compare(center(n1, byX),
+                                                      center(n2, byX)));
+        for (int i = from; i < to; i++) {
+            all[i] = range[i - from];
+        }
+        int middle = (from + to) / 2;
+        int node = allocateNode();
+        int c1 = build(all, from, middle);
+        int c2 = build(all, middle, to);
+        child1[node] = c1;
+        child2[node] = c2;
+        parent[c1] = node;
+        parent[c2] = node;
+        height[node] = 1 + Math.max(height[c1], height[c2]);
+        union(node, c1, c2);
+        return node;
+    }
+
+    /**
+     * Returns twice the center of a node's box on an axis.
+     * @param node the node.
+     * @param byX true for the x axis, false for the y axis.
+     * @return twice the center of the box.
+     */
+    private double center(int node, boolean byX) {
+        if (byX) {
+            return minX[node] + maxX[node];
+        }
+        return minY[node] + maxY[node];
+    }
+
+    /**
+     * Sets the box of a node to the box around two others.
+     * @param node the node to set.
+     * @param n1 the first node.
+     * @param n2 the second node.
+     */
+    private void union(int node, int n1, int n2) {
+        minX[node] = Math.min(minX[n1], minX[n2]);
+        minY[node] = Math.min(minY[n1], minY[n2]);
+        maxX[node] = Math.max(maxX[n1], maxX[n2]);
+        maxY[node] = Math.max(maxY[n1], maxY[n2]);
+    }
+
+    /**
+     * Returns the perimeter of a node's box.
+     * @param node the node.
+     * @return the perimeter of the box.
+     */
+    private double perimeter(int node) {
+        return 2 * (maxX[node] - minX[node] + maxY[node] - minY[node]);
+    }
+
+    /**
+     * Returns the perimeter of the box around two nodes.
+     * @param n1 the first node.
+     * @param n2 the second node.
+     * @return the perimeter of the box around both.
+     */
+    private double unionPerimeter(int n1, int n2) {
+        double w = Math.max(maxX[n1], maxX[n2]) - Math.min(minX[n1], minX[n2]);
+        double h = Math.max(maxY[n1], maxY[n2]) - Math.min(minY[n1], minY[n2]);
+        return 2 * (w + h);
+    }
+
+    /**
+     * Takes a node from the free list, growing the
+     * arrays if there are no free nodes left.
+     * @return the new node.
+     */
+    private int allocateNode() {
+        if (freeList == NULL_NODE) {
+            grow(items.length * 2);
+        }
+        int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL_NODE;
+        child1[node] = NULL_NODE;
+        child2[node] = NULL_NODE;
+        height[node] = 0;
+        return node;
+    }
+
+    /**
+     * Puts a node back in the free list.
+     * @param node the node to free.
+     */
+    private void freeNode(int node) {
+        items[node] = null;
+        height[node] = -1;
+        parent[node] = freeList;
+        freeList = node;
+    }
+
+    /**
+     * Grows the node arrays to a new capacity, and puts
+     * the new nodes in the free list.
+     * @param capacity the new capacity.
+     */
+    private void grow(int capacity) {
+        int old = 0;
+        if (items != null) {
+            old = items.length;
+        }
+        minX = copy(minX, capacity);
+        minY = copy(minY, capacity);
+        maxX = copy(maxX, capacity);
+        maxY = copy(maxY, capacity);
+        parent = copy(parent, capacity);
+        child1 = copy(child1, capacity);
+        child2 = copy(child2, capacity);
+        height = copy(height, capacity);
+        order = copy(order, capacity);
+        if (items == null) {
+            items = new Collidable[capacity];
+        } else {
+            items = Arrays.copyOf(items, capacity);
+        }
+        for (int i = capacity - 1; i >= old; i--) {
+            height[i] = -1;
+            parent[i] = freeList;
+            freeList = i;
+        }
+    }
+
+    /**
+     * Copies an array to a new length.
+     * @param array the array, might be null.
+     * @param length the new length.
+     * @return the copy.
+     */
+    private static double[] copy(double[] array, int length) {
+        if (array == null) {
+            return new double[length];
+        }
+        return Arrays.copyOf(array, length);
+    }
+
+    /**
+     * Copies an array to a new length.
+     * @param array the array, might be null.
+     * @param length the new length.
+     * @return the copy.
+     */
+    private static int[] copy(int[] array, int length) {
+        if (array == null) {
+            return new int[length];
+        }
+        return Arrays.copyOf(array, length);
+    }
+}
@@ -0,0 +1,30 @@
+package collision;
+
+/**
+ * A collidable that moves by itself (like the paddle),
+ * and knows how much it moved in the current frame.
+ * it's expected to move before the balls in a frame,
+ * and to keep its collision rectangle and move it in
+ * place. collisions with it are found by how the ball
+ * moves relative to it during the frame, so a fast
+ * kinematic collidable doesn't jump over a ball.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public interface Kinematic extends Collidable {
+
+   /**
+    * Returns how much the collidable moved horizontally
+    * in the current frame.
+    * @return the horizontal move.
+    */
+   double getDx();
+
+   /**
+    * Returns how much the collidable moved vertically
+    * in the current frame.
+    * @return the vertical move.
+    */
+   double getDy();
+}
@@ -0,0 +1,517 @@
+package collision;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import geometry.Rectangle;
+
+/**
+ * Writes a LayoutProbe for a fixed layout of rectangles
+ * as a class file, and loads it as a hidden class. the
+ * rectangles are put in a tree of boxes (split in the
+ * middle, on the longer side, every level), and the tree
+ * is unrolled into the code of the probe: every node is
+ * four compares against constants, and if the box of
+ * the node doesn't overlap the query, the code jumps
+ * over the whole subtree. small subtrees get methods
+ * of their own, so no method is too big for the jit to
+ * compile, and the checks of the boxes are constants
+ * with no loads from memory. the class can be unloaded
+ * once the probe isn't used. the class file is written
+ * with version 49, so it doesn't need stack map frames.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+final class LayoutCompiler {
+
+    private static final String CLASS_NAME = "collision/CompiledLayout";
+    private static final String PART_TYPE = "(DDDD[II)I";
+    private static final int MAX_CODE = Short.MAX_VALUE;
+    private static final int PART_SIZE = 32;
+
+    // local variables of the static methods, which get the
+    // box, the output array and the count so far.
+    private static final int MIN_X = 0;
+    private static final int MIN_Y = 2;
+    private static final int MAX_X = 4;
+    private static final int MAX_Y = 6;
+    private static final int OUT = 8;
+    private static final int COUNT = 9;
+
+    private static final int DLOAD = 0x18;
+    private static final int LDC2_W = 0x14;
+    private static final int DCMPL = 0x97;
+    private static final int DCMPG = 0x98;
+    private static final int IFLT = 0x9b;
+    private static final int IFGT = 0x9d;
+    private static final int ALOAD = 0x19;
+    private static final int ILOAD = 0x15;
+    private static final int ISTORE = 0x36;
+    private static final int SIPUSH = 0x11;
+    private static final int IASTORE = 0x4f;
+    private static final int IINC = 0x84;
+    private static final int ICONST_0 = 0x03;
+    private static final int IRETURN = 0xac;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int RETURN = 0xb1;
+
+    private Rectangle[] rects;
+    private int[] places;
+    private List<Bytes> parts;
+    private List<Integer> partNames;
+    private Bytes pool;
+    private int poolCount;
+    private Map<Object, Integer> constants;
+
+    /**
+     * A constructor for a compiler of a layout.
+     * @param rects the rectangles of the layout.
+     */
+    private LayoutCompiler(Rectangle[] rects) {
+        this.rects = rects;
+        places = new int[rects.length];
+        for (int i = 0; i < places.length; i++) {
+            places[i] = i;
+        }
+        parts = new ArrayList<Bytes>();
+        partNames = new ArrayList<Integer>();
+        pool = new Bytes();
+        poolCount = 1;
+        constants = new HashMap<Object, Integer>();
+    }
+
+    /**
+     * Generates and loads a probe for a layout.
+     * @param rects the rectangles of the layout, the
+     * probe gives their places in this array.
+     * @return the probe, or null if the layout is too big
+     * for one method or the class couldn't be loaded.
+     */
+    static LayoutProbe compile(Rectangle[] rects) {
+        if (rects.length == 0 || rects.length > Short.MAX_VALUE) {
+            return null;
+        }
+        byte[] bytes = new LayoutCompiler(rects).classFile();
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            Class<?> type = MethodHandles.lookup()
+                                         .defineHiddenClass(bytes, true)
+                                         .lookupClass();
+            return (LayoutProbe) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the class file of the probe. the jumps only
+     * reach 32k bytes, so longer code is given up on.
+     * @return the class file, or null if the code is
+     * too long.
+     */
+    private byte[] classFile() {
+        int thisClass = classRef(CLASS_NAME);
+        int superClass = classRef("java/lang/Object");
+        int probe = classRef("collision/LayoutProbe");
+        int init = utf8("<init>");
+        int noArgs = utf8("()V");
+        int superInit = methodRef(superClass, init, noArgs);
+        int method = utf8("overlapping");
+        int methodType = utf8("(DDDD[I)I");
+        int partType = utf8(PART_TYPE);
+        int codeName = utf8("Code");
+
+        // the whole tree is the first part.
+        Bytes root = new Bytes();
+        int rootRef = newPart(root, thisClass);
+        node(root, thisClass, 0, rects.length);
+        root.u1(ILOAD);
+        root.u1(COUNT);
+        root.u1(IRETURN);
+        for (Bytes part : parts) {
+            if (part.size() > MAX_CODE) {
+                return null;
+            }
+        }
+
+        Bytes file = new Bytes();
+        file.u4(0xCAFEBABE);
+        file.u2(0);
+        file.u2(49);
+        file.u2(poolCount);
+        file.append(pool);
+        file.u2(0x0010 | 0x0020);
+        file.u2(thisClass);
+        file.u2(superClass);
+        file.u2(1);
+        file.u2(probe);
+        file.u2(0);
+        file.u2(2 + parts.size());
+
+        // the constructor, which only calls the one of Object.
+        Bytes ctor = new Bytes();
+        ctor.u1(ALOAD_0);
+        ctor.u1(INVOKESPECIAL);
+        ctor.u2(superInit);
+        ctor.u1(RETURN);
+        method(file, 0x0001, init, noArgs, codeName, 1, 1, ctor);
+
+        // overlapping calls the first part with a count of 0.
+        Bytes entry = new Bytes();
+        for (int local = MIN_X; local <= MAX_Y; local += 2) {
+            entry.u1(DLOAD);
+            entry.u1(local + 1);
+        }
+        entry.u1(ALOAD);
+        entry.u1(OUT + 1);
+        entry.u1(ICONST_0);
+        entry.u1(INVOKESTATIC);
+        entry.u2(rootRef);
+        entry.u1(IRETURN);
+        method(file, 0x0001, method, methodType, codeName, COUNT + 1,
+               COUNT + 1, entry);
+        for (int i = 0; i < parts.size(); i++) {
+            method(file, 0x0008, partNames.get(i), partType, codeName,
+                   COUNT + 1, COUNT + 1, parts.get(i));
+        }
+        file.u2(0);
+        return file.toArray();
+    }
+
+    /**
+     * Writes a method with its code.
+     * @param file the class file.
+     * @param access the access flags of the method.
+     * @param name the name of the method in the pool.
+     * @param type the descriptor of the method in the pool.
+     * @param codeName "Code" in the pool.
+     * @param maxStack the deepest the stack gets.
+     * @param maxLocals the number of local variable slots.
+     * @param body the code.
+     */
+    private static void method(Bytes file, int access, int name, int type,
+                               int codeName, int maxStack, int maxLocals,
+                               Bytes body) {
+        file.u2(access);
+        file.u2(name);
+        file.u2(type);
+        file.u2(1);
+        file.u2(codeName);
+        file.u4(body.size() + 12);
+        file.u2(maxStack);
+        file.u2(maxLocals);
+        file.u4(body.size());
+        file.append(body);
+        file.u2(0);
+        file.u2(0);
+    }
+
+    /**
+     * Writes the code of a node of the tree, for the
+     * rectangles in places[from] to places[to - 1]: the
+     * test of its box, and then the rectangle if it's a
+     * leaf, or its children. a small enough subtree in the
+     * first part is written as a part of its own, and
+     * called.
+     * @param code the code of the part the node is in.
+     * @param thisClass the pool index of the class.
+     * @param from the first place.
+     * @param to the place after the last one.
+     */
+    private void node(Bytes code, int thisClass, int from, int to) {
+        double left = Double.POSITIVE_INFINITY;
+        double top = Double.POSITIVE_INFINITY;
+        double right = Double.NEGATIVE_INFINITY;
+        double bottom = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            Rectangle r = rects[places[i]];
+            left = Math.min(left, r.getX());
+            top = Math.min(top, r.getY());
+            right = Math.max(right, r.getX() + r.getWidth());
+            bottom = Math.max(bottom, r.getY() + r.getHeight());
+        }
+        int[] skips = {
+            test(code, MAX_X, left, DCMPL, IFLT),
+            test(code, MIN_X, right, DCMPG, IFGT),
+            test(code, MAX_Y, top, DCMPL, IFLT),
+            test(code, MIN_Y, bottom, DCMPG, IFGT),
+        };
+        if (to - from == 1) {
+            code.u1(ALOAD);
+            code.u1(OUT);
+            code.u1(ILOAD);
+            code.u1(COUNT);
+            code.u1(SIPUSH);
+            code.u2(places[from]);
+            code.u1(IASTORE);
+            code.u1(IINC);
+            code.u1(COUNT);
+            code.u1(1);
+        } else if (code == parts.get(0) && to - from <= PART_SIZE
+                   && to - from < rects.length) {
+            Bytes part = new Bytes();
+            int ref = newPart(part, thisClass);
+            children(part, thisClass, from, to, right - left >= bottom - top);
+            part.u1(ILOAD);
+            part.u1(COUNT);
+            part.u1(IRETURN);
+            for (int local = MIN_X; local <= MAX_Y; local += 2) {
+                code.u1(DLOAD);
+                code.u1(local);
+            }
+            code.u1(ALOAD);
+            code.u1(OUT);
+            code.u1(ILOAD);
+            code.u1(COUNT);
+            code.u1(INVOKESTATIC);
+            code.u2(ref);
+            code.u1(ISTORE);
+            code.u1(COUNT);
+        } else {
+            children(code, thisClass, from, to, right - left >= bottom - top);
+        }
+        for (int skip : skips) {
+            code.set2(skip + 1, code.size() - skip);
+        }
+    }
+
+    /**
+     * Splits the rectangles of a node in two halves and
+     * writes the code of both.
+     * @param code the code of the part the node is in.
+     * @param thisClass the pool index of the class.
+     * @param from the first place.
+     * @param to the place after the last one.
+     * @param byX true to split on x, false on y.
+     */
+    private void children(Bytes code, int thisClass, int from, int to,
+                          boolean byX) {
+        split(from, to, byX);
+        int middle = (from + to) / 2;
+        node(code, thisClass, from, middle);
+        node(code, thisClass, middle, to);
+    }
+
+    /**
+     * Writes a compare of a local variable with a constant,
+     * and a jump that is filled in later.
+     * @param code the code to write to.
+     * @param local the local variable.
+     * @param value the constant.
+     * @param compare the compare instruction.
+     * @param jump the jump to take when the node is missed.
+     * @return where the jump is in the code.
+     */
+    private int test(Bytes code, int local, double value, int compare,
+                     int jump) {
+        code.u1(DLOAD);
+        code.u1(local);
+        code.u1(LDC2_W);
+        code.u2(doubleConstant(value));
+        code.u1(compare);
+        int at = code.size();
+        code.u1(jump);
+        code.u2(0);
+        return at;
+    }
+
+    /**
+     * Adds a part (a static method that gets the box, the
+     * output array and the count so far, and returns the
+     * new count), and returns the pool index to call it.
+     * @param code the code of the part, written later.
+     * @param thisClass the pool index of the class.
+     * @return the pool index of the method reference.
+     */
+    private int newPart(Bytes code, int thisClass) {
+        int name = utf8("part" + parts.size());
+        parts.add(code);
+        partNames.add(name);
+        return methodRef(thisClass, name, utf8(PART_TYPE));
+    }
+
+    /**
+     * Sorts places[from] to places[to - 1] by the centers
+     * of their rectangles, on x or on y.
+     * @param from the first place.
+     * @param to the place after the last one.
+     * @param byX true to sort on x.
+     */
+    private void split(int from, int to, boolean byX) {
+        Integer[] part = new Integer[to - from];
+        for (int i = from; i < to; i++) {
+            part[i - from] = places[i];
+        }
+        Arrays.sort(part, (a, b) -> Double.compare(center(a, byX),
+                                                   center(b, byX)));
+        for (int i = from; i < to; i++) {
+            places[i] = part[i - from];
+        }
+    }
+
+    /**
+     * Returns the center of a rectangle on one axis.
+     * @param i the place of the rectangle.
+     * @param byX true for x, false for y.
+     * @return the center.
+     */
+    private double center(int i, boolean byX) {
+        Rectangle r = rects[i];
+        if (byX) {
+            return r.getX() + r.getWidth() / 2;
+        }
+        return r.getY() + r.getHeight() / 2;
+    }
+
+    /**
+     * Returns the pool index of a double constant, adding
+     * it if it's not there yet. a double takes two slots.
+     * @param value the constant.
+     * @return the index.
+     */
+    private int doubleConstant(double value) {
+        Integer known = constants.get(value);
+        if (known != null) {
+            return known;
+        }
+        int index = poolCount;
+        pool.u1(6);
+        pool.u4((int) (Double.doubleToRawLongBits(value) >>> 32));
+        pool.u4((int) Double.doubleToRawLongBits(value));
+        poolCount += 2;
+        constants.put(value, index);
+        return index;
+    }
+
+    /**
+     * Returns the pool index of a string, adding it if it's
+     * not there yet. only ascii names are used.
+     * @param s the string.
+     * @return the index.
+     */
+    private int utf8(String s) {
+        Integer known = constants.get(s);
+        if (known != null) {
+            return known;
+        }
+        pool.u1(1);
+        pool.u2(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            pool.u1(s.charAt(i));
+        }
+        constants.put(s, poolCount);
+        return poolCount++;
+    }
+
+    /**
+     * Returns the pool index of a new class constant.
+     * @param name the internal name of the class.
+     * @return the index.
+     */
+    private int classRef(String name) {
+        int nameIndex = utf8(name);
+        pool.u1(7);
+        pool.u2(nameIndex);
+        return poolCount++;
+    }
+
+    /**
+     * Returns the pool index of a new method reference.
+     * @param owner the pool index of the class.
+     * @param name the pool index of the name.
+     * @param type the pool index of the descriptor.
+     * @return the index.
+     */
+    private int methodRef(int owner, int name, int type) {
+        pool.u1(12);
+        pool.u2(name);
+        pool.u2(type);
+        int nameAndType = poolCount++;
+        pool.u1(10);
+        pool.u2(owner);
+        pool.u2(nameAndType);
+        return poolCount++;
+    }
+
+    /**
+     * A growing array of bytes, written big endian.
+     */
+    private static class Bytes {
+        private byte[] data = new byte[256];
+        private int size;
+
+        /**
+         * Returns the number of bytes written.
+         * @return the size.
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Writes one byte.
+         * @param b the byte.
+         */
+        void u1(int b) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = (byte) b;
+        }
+
+        /**
+         * Writes two bytes.
+         * @param v the value.
+         */
+        void u2(int v) {
+            u1(v >>> 8);
+            u1(v);
+        }
+
+        /**
+         * Writes four bytes.
+         * @param v the value.
+         */
+        void u4(int v) {
+            u2(v >>> 16);
+            u2(v);
+        }
+
+        /**
+         * Writes two bytes over ones written before.
+         * @param at where to write.
+         * @param v the value.
+         */
+        void set2(int at, int v) {
+            data[at] = (byte) (v >>> 8);
+            data[at + 1] = (byte) v;
+        }
+
+        /**
+         * Writes all the bytes of another array.
+         * @param other the other array.
+         */
+        void append(Bytes other) {
+            for (int i = 0; i < other.size; i++) {
+                u1(other.data[i]);
+            }
+        }
+
+        /**
+         * Returns a copy of the bytes written.
+         * @return the bytes.
+         */
+        byte[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
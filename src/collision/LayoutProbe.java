@@ -0,0 +1,27 @@
+package collision;
+
+/**
+ * Finds the rectangles of a fixed layout that overlap
+ * a box. the classes that implement it are generated
+ * for every layout by LayoutCompiler, with the bounds
+ * of the rectangles written in the code.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+interface LayoutProbe {
+
+    /**
+     * Finds the rectangles of the layout that overlap a
+     * box (touching counts).
+     * @param minX the left side of the box.
+     * @param minY the top of the box.
+     * @param maxX the right side of the box.
+     * @param maxY the bottom of the box.
+     * @param out gets the places of the rectangles in the
+     * layout, it needs a place for every rectangle.
+     * @return the number of rectangles found.
+     */
+    int overlapping(double minX, double minY, double maxX, double maxY,
+                    int[] out);
+}
@@ -0,0 +1,142 @@
+package collision;
+
+import geometry.Rectangle;
+
+/**
+ * A batch of collidables waiting to be checked
+ * against a trajectory, with the bounds of their
+ * rectangles packed in arrays (an array for every
+ * side), so a kernel can check a few of them at once.
+ * after the check, the collision time of every
+ * collidable is kept in the times array.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+class PackedBounds {
+
+    public static final int CAPACITY = 64;
+
+    private double[] left;
+    private double[] top;
+    private double[] right;
+    private double[] bottom;
+    private double[] times;
+    private Collidable[] items;
+    private int[] orders;
+    private int count;
+
+    /**
+     * A constructor for an empty batch.
+     */
+    PackedBounds() {
+        left = new double[CAPACITY];
+        top = new double[CAPACITY];
+        right = new double[CAPACITY];
+        bottom = new double[CAPACITY];
+        times = new double[CAPACITY];
+        items = new Collidable[CAPACITY];
+        orders = new int[CAPACITY];
+    }
+
+    /**
+     * Adds a collidable to the batch.
+     * @param c the collidable.
+     * @param cOrder the order the collidable was added
+     * to the index in.
+     */
+    void add(Collidable c, int cOrder) {
+        Rectangle rect = c.getCollisionRectangle();
+        left[count] = rect.getX();
+        top[count] = rect.getY();
+        right[count] = rect.getX() + rect.getWidth();
+        bottom[count] = rect.getY() + rect.getHeight();
+        items[count] = c;
+        orders[count] = cOrder;
+        count++;
+    }
+
+    /**
+     * Checks if the batch has no room for more collidables.
+     * @return true if the batch is full.
+     */
+    boolean isFull() {
+        return count == CAPACITY;
+    }
+
+    /**
+     * Empties the batch.
+     */
+    void clear() {
+        for (int i = 0; i < count; i++) {
+            items[i] = null;
+        }
+        count = 0;
+    }
+
+    /**
+     * Returns the number of collidables in the batch.
+     * @return the number of collidables.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Returns the left sides of the rectangles.
+     * @return the left sides.
+     */
+    double[] left() {
+        return left;
+    }
+
+    /**
+     * Returns the top sides of the rectangles.
+     * @return the top sides.
+     */
+    double[] top() {
+        return top;
+    }
+
+    /**
+     * Returns the right sides of the rectangles.
+     * @return the right sides.
+     */
+    double[] right() {
+        return right;
+    }
+
+    /**
+     * Returns the bottom sides of the rectangles.
+     * @return the bottom sides.
+     */
+    double[] bottom() {
+        return bottom;
+    }
+
+    /**
+     * Returns the collision times found by the kernel.
+     * @return the collision times.
+     */
+    double[] times() {
+        return times;
+    }
+
+    /**
+     * Returns a collidable in the batch.
+     * @param i the place of the collidable.
+     * @return the collidable.
+     */
+    Collidable item(int i) {
+        return items[i];
+    }
+
+    /**
+     * Returns the order of a collidable in the batch.
+     * @param i the place of the collidable.
+     * @return the order it was added to the index in.
+     */
+    int order(int i) {
+        return orders[i];
+    }
+}
@@ -0,0 +1,62 @@
+package collision;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The collidables found so far with a point on their
+ * borders, while an index is being searched. they are
+ * kept in the order they were added to the index, so
+ * the result is the same as going over a list of all
+ * the collidables.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+class PointContacts {
+
+    private double x;
+    private double y;
+    private List<Collidable> found;
+    private List<Integer> orders;
+
+    /**
+     * A constructor for an empty set of contacts
+     * of a point.
+     * @param x the x value of the point.
+     * @param y the y value of the point.
+     */
+    PointContacts(double x, double y) {
+        this.x = x;
+        this.y = y;
+        found = new ArrayList<Collidable>();
+        orders = new ArrayList<Integer>();
+    }
+
+    /**
+     * Checks if the point is on the borders of a
+     * collidable, and keeps it if it is.
+     * @param c the collidable to check.
+     * @param cOrder the order the collidable was added in.
+     */
+    void offer(Collidable c, int cOrder) {
+        if (!c.getCollisionRectangle().isPointOnBorders(x, y)) {
+            return;
+        }
+        int i = found.size();
+        while (i > 0 && orders.get(i - 1) > cOrder) {
+            i--;
+        }
+        found.add(i, c);
+        orders.add(i, cOrder);
+    }
+
+    /**
+     * Returns the collidables that were found.
+     * @return the collidables, in the order they were
+     * added to the index.
+     */
+    List<Collidable> toList() {
+        return found;
+    }
+}
@@ -0,0 +1,232 @@
+package collision;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A batch of trajectories (circles moving along
+ * segments, like the balls in a frame) to look up in
+ * a collision index together, with the closest
+ * collision of every one of them after the lookup.
+ * the trajectories are kept in arrays, and are looked
+ * up sorted by the cell their start is in (in z-order),
+ * so trajectories that start near each other are looked
+ * up one after the other and find the same parts of the
+ * index still in the cache. with a fork-join pool,
+ * runs of trajectories in that order are looked up in
+ * parallel; every lookup only reads the index and
+ * writes its own result, so the results are the same
+ * with any number of threads.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class RayBatch {
+
+    public static final double CELL_SIZE = 32;
+    public static final int TASK_SIZE = 512;
+    private static final int COORDINATE_BITS = 15;
+    private static final int COORDINATE_MASK = (1 << COORDINATE_BITS) - 1;
+
+    private double[] x;
+    private double[] y;
+    private double[] dx;
+    private double[] dy;
+    private double[] radius;
+    private double[] span;
+    private CollisionInfo[] results;
+    private long[] keys;
+    private int count;
+
+    /**
+     * A constructor for an empty batch.
+     */
+    public RayBatch() {
+        x = new double[16];
+        y = new double[16];
+        dx = new double[16];
+        dy = new double[16];
+        radius = new double[16];
+        span = new double[16];
+        results = new CollisionInfo[16];
+        keys = new long[16];
+    }
+
+    /**
+     * Adds a trajectory to the batch.
+     * @param startX the x value of the trajectory start.
+     * @param startY the y value of the trajectory start.
+     * @param changeX the horizontal change of the trajectory.
+     * @param changeY the vertical change of the trajectory.
+     * @param r the radius of the circle, 0 for a point.
+     * @param part the part of the current frame the
+     * trajectory takes (see CollisionIndex).
+     * @return the place of the trajectory in the batch.
+     */
+    public int add(double startX, double startY, double changeX,
+                   double changeY, double r, double part) {
+        if (count == x.length) {
+            x = Arrays.copyOf(x, count * 2);
+            y = Arrays.copyOf(y, count * 2);
+            dx = Arrays.copyOf(dx, count * 2);
+            dy = Arrays.copyOf(dy, count * 2);
+            radius = Arrays.copyOf(radius, count * 2);
+            span = Arrays.copyOf(span, count * 2);
+            results = Arrays.copyOf(results, count * 2);
+            keys = Arrays.copyOf(keys, count * 2);
+        }
+        x[count] = startX;
+        y[count] = startY;
+        dx[count] = changeX;
+        dy[count] = changeY;
+        radius[count] = r;
+        span[count] = part;
+        results[count] = null;
+        return count++;
+    }
+
+    /**
+     * Empties the batch.
+     */
+    public void clear() {
+        Arrays.fill(results, 0, count, null);
+        count = 0;
+    }
+
+    /**
+     * Returns the number of trajectories in the batch.
+     * @return the number of trajectories.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the closest collision of a trajectory,
+     * after the batch was looked up.
+     * @param i the place of the trajectory.
+     * @return the collision information, or null if
+     * the trajectory doesn't hit anything.
+     */
+    public CollisionInfo result(int i) {
+        return results[i];
+    }
+
+    /**
+     * Looks up every trajectory of the batch in an index,
+     * in z-order of their starts, and keeps the results.
+     * @param index the index.
+     */
+    public void resolve(CollisionIndex index) {
+        resolve(index, null);
+    }
+
+    /**
+     * Looks up every trajectory of the batch in an index,
+     * like resolve(index), with the runs of up to
+     * TASK_SIZE trajectories split between the threads of
+     * a pool, if the index lets queries run at once.
+     * @param index the index.
+     * @param pool the pool, or null to look them up in
+     * this thread.
+     */
+    public void resolve(CollisionIndex index, ForkJoinPool pool) {
+        for (int i = 0; i < count; i++) {
+            keys[i] = ((long) zOrder(x[i], y[i]) << Integer.SIZE) | i;
+        }
+        Arrays.sort(keys, 0, count);
+        if (pool == null || count <= TASK_SIZE
+            || !index.prepareConcurrentQueries()) {
+            resolve(index, 0, count);
+        } else {
+            try {
+                pool.invoke(new Lookup(index, 0, count));
+            } finally {
+                index.finishConcurrentQueries();
+            }
+        }
+    }
+
+    /**
+     * Looks up the trajectories of a run of the sorted
+     * keys.
+     * @param index the index.
+     * @param from the place of the first key.
+     * @param to the place after the last key.
+     */
+    private void resolve(CollisionIndex index, int from, int to) {
+        for (int k = from; k < to; k++) {
+            int i = (int) keys[k];
+            results[i] = index.closestCollision(x[i], y[i], dx[i], dy[i],
+                                                radius[i], span[i]);
+        }
+    }
+
+    /**
+     * Returns the place of the cell of a point in the
+     * z-order, where the bits of the row and column of
+     * the cell are interleaved.
+     * @param px the x value of the point.
+     * @param py the y value of the point.
+     * @return the place in the z-order.
+     */
+    private static int zOrder(double px, double py) {
+        return spread((int) Math.floor(px / CELL_SIZE) & COORDINATE_MASK)
+               | (spread((int) Math.floor(py / CELL_SIZE) & COORDINATE_MASK)
+                  << 1);
+    }
+
+    /**
+     * Moves the bits of a number apart, so there is a
+     * zero bit between every two bits.
+     * @param n the number, up to COORDINATE_BITS bits.
+     * @return the spread number.
+     */
+    private static int spread(int n) {
+        n = (n | (n << 8)) & 0x00FF00FF;
+        n = (n | (n << 4)) & 0x0F0F0F0F;
+        n = (n | (n << 2)) & 0x33333333;
+        n = (n | (n << 1)) & 0x55555555;
+        return n;
+    }
+
+    /**
+     * A task that looks up a run of the sorted keys,
+     * split in two until it's short enough.
+     */
+    private class Lookup extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private transient CollisionIndex index;
+        private int from;
+        private int to;
+
+        /**
+         * A constructor for the task of a run of keys.
+         * @param index the index.
+         * @param from the place of the first key.
+         * @param to the place after the last key.
+         */
+        Lookup(CollisionIndex index, int from, int to) {
+            this.index = index;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Looks up the run, or splits it and looks up the
+         * halves in parallel.
+         */
+        protected void compute() {
+            if (to - from <= TASK_SIZE) {
+                resolve(index, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Lookup(index, from, middle),
+                      new Lookup(index, middle, to));
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package collision;
+
+/**
+ * A kernel that checks the rectangles of a batch
+ * one by one. used when the vector kernel is off
+ * or can't be loaded.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+class ScalarBoundsKernel extends BoundsKernel {
+
+    /**
+     * Finds the collision time of every rectangle in
+     * the batch, one at a time.
+     * @param batch the batch of rectangles.
+     * @param x the x value of the center at the start.
+     * @param y the y value of the center at the start.
+     * @param dx the horizontal change of the center.
+     * @param dy the vertical change of the center.
+     * @param radius the radius of the circle, 0 for a point.
+     */
+    void collisionTimes(PackedBounds batch, double x, double y, double dx,
+                        double dy, double radius) {
+        double[] times = batch.times();
+        for (int i = 0; i < batch.size(); i++) {
+            times[i] = scalarTime(batch, i, x, y, dx, dy, radius);
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package collision;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import geometry.Rectangle;
+
+/**
+ * A uniform spatial hash grid for collidables.
+ * Every block is put in all the cells its collision
+ * rectangle covers, so a trajectory only has to be
+ * checked against the collidables in the cells it
+ * passes through. Collidables that are not blocks
+ * (the paddle) can move, so they are not put in the
+ * cells and are always checked. the cells are kept in
+ * a table keyed by a long, so probing a cell doesn't
+ * make a Long. levels use it if it was asked for, by
+ * running with -Darkanoid.index=grid.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class SpatialHashGrid implements CollisionIndex {
+
+    public static final double DEFAULT_CELL_SIZE = 64.0;
+    private static final double MARGIN = Math.pow(10.0, -6.0);
+
+    private double cellSize;
+    private CellTable<List<Entry>> cells;
+    private Map<Collidable, Entry> entries;
+    private List<Entry> moving;
+    private int nextOrder;
+    private int queryStamp;
+    private ThreadLocal<ClosestHit> hits;
+
+    /**
+     * A constructor for a grid with the default cell size.
+     */
+    public SpatialHashGrid() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * A constructor for a grid with a given cell size.
+     * if it's not a positive number, uses the default size.
+     * @param cellSize the width and height of every cell.
+     */
+    public SpatialHashGrid(double cellSize) {
+        if (cellSize > 0) {
+            this.cellSize = cellSize;
+        } else {
+            this.cellSize = DEFAULT_CELL_SIZE;
+        }
+        cells = new CellTable<List<Entry>>();
+        entries = new HashMap<Collidable, Entry>();
+        moving = new ArrayList<Entry>();
+        hits = ThreadLocal.withInitial(ClosestHit::new);
+    }
+
+    /**
+     * Adds a collidable to the grid. blocks are put
+     * in the cells they cover, anything else is
+     * kept aside and checked on every query.
+     * @param c the collidable to add.
+     */
+    public void insert(Collidable c) {
+        if (entries.containsKey(c)) {
+            return;
+        }
+        Entry e = new Entry(c, nextOrder++);
+        entries.put(c, e);
+        if (c.getCollisionBlock() == null) {
+            moving.add(e);
+            return;
+        }
+        e.range = cellRange(c.getCollisionRectangle());
+        addToCells(e);
+    }
+
+    /**
+     * Removes a collidable from the grid, from all
+     * the cells it was put in.
+     * @param c the collidable to remove.
+     */
+    public void remove(Collidable c) {
+        Entry e = entries.remove(c);
+        if (e == null) {
+            return;
+        }
+        if (e.range == null) {
+            moving.remove(e);
+            return;
+        }
+        removeFromCells(e);
+    }
+
+    /**
+     * Puts a block back in the cells if its collision
+     * rectangle now covers other cells. collidables that
+     * are not blocks are checked on every query anyway.
+     * @param c the collidable that changed.
+     */
+    public void update(Collidable c) {
+        Entry e = entries.get(c);
+        if (e == null || e.range == null) {
+            return;
+        }
+        int[] range = cellRange(c.getCollisionRectangle());
+        if (Arrays.equals(range, e.range)) {
+            return;
+        }
+        removeFromCells(e);
+        e.range = range;
+        addToCells(e);
+    }
+
+    /**
+     * Adds an entry to all the cells in its range.
+     * @param e the entry to add.
+     */
+    private void addToCells(Entry e) {
+        int[] range = e.range;
+        for (int x = range[0]; x <= range[2]; x++) {
+            for (int y = range[1]; y <= range[3]; y++) {
+                List<Entry> cell = cells.get(key(x, y));
+                if (cell == null) {
+                    cell = new ArrayList<Entry>();
+                    cells.put(key(x, y), cell);
+                }
+                cell.add(e);
+            }
+        }
+    }
+
+    /**
+     * Removes an entry from all the cells in its range.
+     * @param e the entry to remove.
+     */
+    private void removeFromCells(Entry e) {
+        int[] range = e.range;
+        for (int x = range[0]; x <= range[2]; x++) {
+            for (int y = range[1]; y <= range[3]; y++) {
+                List<Entry> cell = cells.get(key(x, y));
+                if (cell != null) {
+                    cell.remove(e);
+                    if (cell.isEmpty()) {
+                        cells.remove(key(x, y));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the closest collision of a circle moving along
+     * a trajectory with the collidables in the grid. walks
+     * the cells the trajectory passes through in order,
+     * checking the cells the circle touches on the way,
+     * and stops once a collision was found before the end
+     * of the cell.
+     * @param x1 the x value of the trajectory start.
+     * @param y1 the y value of the trajectory start.
+     * @param dx the horizontal change of the trajectory.
+     * @param dy the vertical change of the trajectory.
+     * @param radius the radius of the circle, 0 for a point.
+     * @param span the part of the current frame the
+     * trajectory takes, 0 to check kinematic collidables
+     * where they are.
+     * @return the collision information, or null if
+     * there is no collision.
+     */
+    public CollisionInfo closestCollision(double x1, double y1, double dx,
+                                          double dy, double radius,
+                                          double span) {
+        queryStamp++;
+        ClosestHit best = hits.get().reset(x1, y1, dx, dy, radius, span);
+        for (Entry e : moving) {
+            test(e, best);
+        }
+        double length = Math.sqrt(dx * dx + dy * dy);
+        int cellX = cell(x1);
+        int cellY = cell(y1);
+        int endX = cell(x1 + dx);
+        int endY = cell(y1 + dy);
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
+        double tMaxX = Double.POSITIVE_INFINITY;
+        double tMaxY = Double.POSITIVE_INFINITY;
+        if (dx != 0) {
+            tMaxX = ((cellX + (stepX > 0 ? 1 : 0)) * cellSize - x1) / dx;
+        }
+        if (dy != 0) {
+            tMaxY = ((cellY + (stepY > 0 ? 1 : 0)) * cellSize - y1) / dy;
+        }
+        double tDeltaX = cellSize / Math.abs(dx);
+        double tDeltaY = cellSize / Math.abs(dy);
+        double tIn = 0;
+        while (true) {
+            boolean last = cellX == endX && cellY == endY;
+            double tExit = Math.min(tMaxX, tMaxY);
+            double tOut = last ? 1 : Math.min(tExit, 1);
+            testCells(x1 + dx * tIn, y1 + dy * tIn, x1 + dx * tOut,
+                      y1 + dy * tOut, radius, best);
+
+            /*
+             * a collision in a later cell can't be closer
+             * than the point where the trajectory leaves
+             * this one, since the cells around it were
+             * checked already.
+             */
+            if (last || tExit > 1
+                || best.settledDistance() < tExit * length - MARGIN) {
+                break;
+            }
+            if (tMaxX < tMaxY) {
+                cellX += stepX;
+                tMaxX += tDeltaX;
+            } else {
+                cellY += stepY;
+                tMaxY += tDeltaY;
+            }
+            tIn = tExit;
+        }
+        return best.toCollisionInfo();
+    }
+
+    /**
+     * Finds all the collidables with a point on their
+     * borders. every block is in all the cells it touches,
+     * so only the cell of the point is checked.
+     * @param x the x value of the point.
+     * @param y the y value of the point.
+     * @return the collidables, in the order they were added.
+     */
+    public List<Collidable> collidablesAt(double x, double y) {
+        PointContacts contacts = new PointContacts(x, y);
+        for (Entry e : moving) {
+            contacts.offer(e.collidable, e.order);
+        }
+        List<Entry> cell = cells.get(key(cell(x), cell(y)));
+        if (cell != null) {
+            for (Entry e : cell) {
+                contacts.offer(e.collidable, e.order);
+            }
+        }
+        return contacts.toList();
+    }
+
+    /**
+     * Queries can't run at once, since they mark the
+     * entries they checked.
+     * @return false.
+     */
+    public boolean prepareConcurrentQueries() {
+        return false;
+    }
+
+    /**
+     * Does nothing, since queries never run at once.
+     */
+    public void finishConcurrentQueries() { }
+
+    /**
+     * Finds all the collidables overlapping a box. checks
+     * the collidables that are not in cells, and the cells
+     * the box covers.
+     * @param minX the left side of the box.
+     * @param minY the top of the box.
+     * @param maxX the right side of the box.
+     * @param maxY the bottom of the box.
+     * @param out gets the collidables, in the order they
+     * were added.
+     * @return the number of collidables found.
+     */
+    public int overlapping(double minX, double minY, double maxX,
+                           double maxY, Collidable[] out) {
+        queryStamp++;
+        BoxContacts contacts = new BoxContacts(minX, minY, maxX, maxY);
+        for (Entry e : moving) {
+            contacts.offer(e.collidable, e.order);
+        }
+        int toX = cell(maxX + MARGIN);
+        int toY = cell(maxY + MARGIN);
+        for (int x = cell(minX - MARGIN); x <= toX; x++) {
+            for (int y = cell(minY - MARGIN); y <= toY; y++) {
+                List<Entry> cell = cells.get(key(x, y));
+                if (cell == null) {
+                    continue;
+                }
+                for (Entry e : cell) {
+                    if (e.stamp != queryStamp) {
+                        e.stamp = queryStamp;
+                        contacts.offer(e.collidable, e.order);
+                    }
+                }
+            }
+        }
+        return contacts.copyTo(out);
+    }
+
+    /**
+     * Checks the entries of all the cells a circle moving
+     * along a part of the trajectory touches.
+     * @param xIn the x value where the part starts.
+     * @param yIn the y value where the part starts.
+     * @param xOut the x value where the part ends.
+     * @param yOut the y value where the part ends.
+     * @param radius the radius of the circle.
+     * @param best the closest collision so far.
+     */
+    private void testCells(double xIn, double yIn, double xOut, double yOut,
+                           double radius, ClosestHit best) {
+        double pad = radius + MARGIN;
+        int fromX = cell(Math.min(xIn, xOut) - pad);
+        int toX = cell(Math.max(xIn, xOut) + pad);
+        int fromY = cell(Math.min(yIn, yOut) - pad);
+        int toY = cell(Math.max(yIn, yOut) + pad);
+        for (int x = fromX; x <= toX; x++) {
+            for (int y = fromY; y <= toY; y++) {
+                List<Entry> cell = cells.get(key(x, y));
+                if (cell != null) {
+                    for (int i = 0; i < cell.size(); i++) {
+                        test(cell.get(i), best);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the trajectory against one entry, if it
+     * wasn't checked already in this query, and keeps
+     * it if it's the closest collision so far.
+     * @param e the entry to check.
+     * @param best the closest collision so far.
+     */
+    private void test(Entry e, ClosestHit best) {
+        if (e.stamp == queryStamp) {
+            return;
+        }
+        e.stamp = queryStamp;
+        best.offer(e.collidable, e.order);
+    }
+
+    /**
+     * Returns the range of cells a rectangle covers,
+     * slightly enlarged so points on its borders are
+     * always found in the cells that hold it.
+     * @param rect the rectangle.
+     * @return the first x, first y, last x and last y
+     * cells.
+     */
+    private int[] cellRange(Rectangle rect) {
+        double x = rect.getX();
+        double y = rect.getY();
+        return new int[] {cell(x - MARGIN), cell(y - MARGIN),
+                          cell(x + rect.getWidth() + MARGIN),
+                          cell(y + rect.getHeight() + MARGIN)};
+    }
+
+    /**
+     * Returns the cell a coordinate is in.
+     * @param value an x or y value.
+     * @return the index of the cell.
+     */
+    private int cell(double value) {
+        return (int) Math.floor(value / cellSize);
+    }
+
+    /**
+     * Returns the key of a cell in the cells table.
+     * @param x the x index of the cell.
+     * @param y the y index of the cell.
+     * @return the key of the cell.
+     */
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    /**
+     * A collidable in the grid, with the order it was
+     * added in and the range of cells it was put in
+     * (null for collidables that are not blocks).
+     */
+    private static class Entry {
+        private Collidable collidable;
+        private int order;
+        private int[] range;
+        private int stamp;
+
+        /**
+         * A constructor.
+         * @param collidable the collidable.
+         * @param order the order it was added in.
+         */
+        Entry(Collidable collidable, int order) {
+            this.collidable = collidable;
+            this.order = order;
+        }
+    }
+}
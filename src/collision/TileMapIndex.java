@@ -0,0 +1,515 @@
+package collision;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import geometry.Rectangle;
+
+/**
+ * A tile map of the blocks in a level. all the levels
+ * place their blocks on a grid of fixed width and
+ * height, so every block can be kept as a tile in an
+ * array, and a trajectory only has to check the tiles
+ * it passes through, in order, until it hits one.
+ * The grid is found from the blocks when the first
+ * query is made: the most common block size is the
+ * tile size. Blocks that don't fit the grid, and
+ * collidables that are not blocks (the borders, the
+ * paddle) are kept in a small list that is checked
+ * on every query. levels use it if it was asked for,
+ * by running with -Darkanoid.index=tiles, and don't
+ * merge their blocks into spans for it, since a span
+ * doesn't fit a tile.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class TileMapIndex implements CollisionIndex {
+
+    private static final double MARGIN = Math.pow(10.0, -6.0);
+    private static final int EMPTY = 0;
+
+    private Map<Collidable, Entry> entries;
+    private List<Entry> loose;
+    private List<Entry> pending;
+    private boolean compiled;
+    private double originX;
+    private double originY;
+    private double tileWidth;
+    private double tileHeight;
+    private int columns;
+    private int rows;
+    private int[] tiles;
+    private Collidable[] tileBlocks;
+    private int[] tileStamps;
+    private int nextOrder;
+    private int queryStamp;
+    private ThreadLocal<ClosestHit> hits;
+    private ThreadLocal<double[]> ranges;
+
+    /**
+     * A constructor for an empty tile map. the grid
+     * is found when the first query is made.
+     */
+    public TileMapIndex() {
+        entries = new HashMap<Collidable, Entry>();
+        loose = new ArrayList<Entry>();
+        pending = new ArrayList<Entry>();
+        tiles = new int[0];
+        tileBlocks = new Collidable[0];
+        tileStamps = new int[0];
+        hits = ThreadLocal.withInitial(ClosestHit::new);
+        ranges = ThreadLocal.withInitial(() -> new double[2]);
+    }
+
+    /**
+     * Adds a collidable to the map. before the grid is
+     * found it's only remembered, afterwards it's put in
+     * its tile if it fits one, or in the loose list.
+     * @param c the collidable to add.
+     */
+    public void insert(Collidable c) {
+        if (entries.containsKey(c)) {
+            return;
+        }
+        Entry e = new Entry(c, nextOrder++);
+        entries.put(c, e);
+        if (compiled) {
+            place(e);
+        } else {
+            pending.add(e);
+        }
+    }
+
+    /**
+     * Removes a collidable from the map, by emptying
+     * its tile or taking it out of the loose list.
+     * @param c the collidable to remove.
+     */
+    public void remove(Collidable c) {
+        Entry e = entries.remove(c);
+        if (e == null) {
+            return;
+        }
+        if (!compiled) {
+            pending.remove(e);
+        } else if (e.tile != -1) {
+            tiles[e.tile] = EMPTY;
+            tileBlocks[e.tile] = null;
+        } else {
+            loose.remove(e);
+        }
+    }
+
+    /**
+     * Puts a collidable whose rectangle changed back
+     * in the right tile, or in the loose list.
+     * @param c the collidable that changed.
+     */
+    public void update(Collidable c) {
+        Entry e = entries.get(c);
+        if (e == null || !compiled
+            || (e.tile == -1 && c.getCollisionBlock() == null)) {
+            return;
+        }
+        if (e.tile != -1) {
+            tiles[e.tile] = EMPTY;
+            tileBlocks[e.tile] = null;
+            e.tile = -1;
+        } else {
+            loose.remove(e);
+        }
+        place(e);
+    }
+
+    /**
+     * Finds the closest collision of a circle moving along
+     * a trajectory. checks the loose list, and then walks
+     * the tiles the trajectory passes through in order (as
+     * in Amanatides and Woo), checking the tiles the circle
+     * touches on the way, until a block is hit.
+     * @param x1 the x value of the trajectory start.
+     * @param y1 the y value of the trajectory start.
+     * @param dx the horizontal change of the trajectory.
+     * @param dy the vertical change of the trajectory.
+     * @param radius the radius of the circle, 0 for a point.
+     * @param span the part of the current frame the
+     * trajectory takes, 0 to check kinematic collidables
+     * where they are.
+     * @return the collision information, or null if
+     * there is no collision.
+     */
+    public CollisionInfo closestCollision(double x1, double y1, double dx,
+                                          double dy, double radius,
+                                          double span) {
+        if (!compiled) {
+            compile();
+        }
+        queryStamp++;
+        ClosestHit best = hits.get().reset(x1, y1, dx, dy, radius, span);
+        for (Entry e : loose) {
+            best.offer(e.collidable, e.order);
+        }
+        if (columns == 0) {
+            return best.toCollisionInfo();
+        }
+        double length = Math.sqrt(dx * dx + dy * dy);
+
+        // Clips the trajectory to the area of the map.
+        double pad = radius + MARGIN;
+        double[] range = ranges.get();
+        range[0] = 0;
+        range[1] = 1;
+        if (!clip(x1, dx, originX - pad,
+                  originX + columns * tileWidth + pad, range)
+            || !clip(y1, dy, originY - pad,
+                     originY + rows * tileHeight + pad, range)) {
+            return best.toCollisionInfo();
+        }
+        double t = range[0];
+        int tileX = tileX(x1 + dx * t);
+        int tileY = tileY(y1 + dy * t);
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
+        double tMaxX = Double.POSITIVE_INFINITY;
+        double tMaxY = Double.POSITIVE_INFINITY;
+        if (dx != 0) {
+            tMaxX = (originX + (tileX + (stepX > 0 ? 1 : 0)) * tileWidth - x1)
+                    / dx;
+        }
+        if (dy != 0) {
+            tMaxY = (originY + (tileY + (stepY > 0 ? 1 : 0)) * tileHeight
+                     - y1) / dy;
+        }
+        double tDeltaX = tileWidth / Math.abs(dx);
+        double tDeltaY = tileHeight / Math.abs(dy);
+        while (true) {
+            double tOut = Math.min(Math.min(tMaxX, tMaxY), range[1]);
+            visit(x1 + dx * t, y1 + dy * t, x1 + dx * tOut, y1 + dy * tOut,
+                  pad, best);
+
+            /*
+             * a block in a later tile can't be hit before
+             * the trajectory leaves this one, since the
+             * tiles around it were checked already.
+             */
+            if (best.settledDistance() < tOut * length - MARGIN
+                || tOut >= range[1]) {
+                break;
+            }
+            if (tMaxX < tMaxY) {
+                tMaxX += tDeltaX;
+            } else {
+                tMaxY += tDeltaY;
+            }
+            t = tOut;
+        }
+        return best.toCollisionInfo();
+    }
+
+    /**
+     * Finds all the collidables with a point on their
+     * borders. checks the loose list and the tiles around
+     * the point, a point on a grid line can be on the
+     * blocks of the tiles on both sides of it.
+     * @param x the x value of the point.
+     * @param y the y value of the point.
+     * @return the collidables, in the order they were added.
+     */
+    public List<Collidable> collidablesAt(double x, double y) {
+        if (!compiled) {
+            compile();
+        }
+        PointContacts contacts = new PointContacts(x, y);
+        for (Entry e : loose) {
+            contacts.offer(e.collidable, e.order);
+        }
+        if (columns == 0) {
+            return contacts.toList();
+        }
+        int toX = Math.min(columns - 1, tileX(x + MARGIN));
+        int toY = Math.min(rows - 1, tileY(y + MARGIN));
+        for (int i = Math.max(0, tileX(x - MARGIN)); i <= toX; i++) {
+            for (int j = Math.max(0, tileY(y - MARGIN)); j <= toY; j++) {
+                int tile = j * columns + i;
+                if (tiles[tile] != EMPTY) {
+                    contacts.offer(tileBlocks[tile], tiles[tile] - 1);
+                }
+            }
+        }
+        return contacts.toList();
+    }
+
+    /**
+     * Queries can't run at once, since they mark the
+     * tiles they checked.
+     * @return false.
+     */
+    public boolean prepareConcurrentQueries() {
+        return false;
+    }
+
+    /**
+     * Does nothing, since queries never run at once.
+     */
+    public void finishConcurrentQueries() { }
+
+    /**
+     * Finds all the collidables overlapping a box. checks
+     * the loose list and the tiles the box covers.
+     * @param minX the left side of the box.
+     * @param minY the top of the box.
+     * @param maxX the right side of the box.
+     * @param maxY the bottom of the box.
+     * @param out gets the collidables, in the order they
+     * were added.
+     * @return the number of collidables found.
+     */
+    public int overlapping(double minX, double minY, double maxX,
+                           double maxY, Collidable[] out) {
+        if (!compiled) {
+            compile();
+        }
+        BoxContacts contacts = new BoxContacts(minX, minY, maxX, maxY);
+        for (Entry e : loose) {
+            contacts.offer(e.collidable, e.order);
+        }
+        if (columns == 0) {
+            return contacts.copyTo(out);
+        }
+        int toX = Math.min(columns - 1, tileX(maxX + MARGIN));
+        int toY = Math.min(rows - 1, tileY(maxY + MARGIN));
+        for (int i = Math.max(0, tileX(minX - MARGIN)); i <= toX; i++) {
+            for (int j = Math.max(0, tileY(minY - MARGIN)); j <= toY; j++) {
+                int tile = j * columns + i;
+                if (tiles[tile] != EMPTY) {
+                    contacts.offer(tileBlocks[tile], tiles[tile] - 1);
+                }
+            }
+        }
+        return contacts.copyTo(out);
+    }
+
+    /**
+     * Finds the grid of the map from the blocks added so
+     * far, and puts every collidable in its tile or in
+     * the loose list. called on the first query, and can
+     * be called before it once all the blocks were added.
+     */
+    public void compile() {
+        Rectangle common = mostCommonBlockSize();
+        if (common != null) {
+            tileWidth = common.getWidth();
+            tileHeight = common.getHeight();
+            originX = common.getX();
+            originY = common.getY();
+            double lastX = originX;
+            double lastY = originY;
+            for (Entry e : pending) {
+                Rectangle rect = e.collidable.getCollisionRectangle();
+                if (fitsGrid(e.collidable)) {
+                    originX = Math.min(originX, rect.getX());
+                    originY = Math.min(originY, rect.getY());
+                    lastX = Math.max(lastX, rect.getX());
+                    lastY = Math.max(lastY, rect.getY());
+                }
+            }
+            columns = (int) Math.round((lastX - originX) / tileWidth) + 1;
+            rows = (int) Math.round((lastY - originY) / tileHeight) + 1;
+            tiles = new int[columns * rows];
+            tileBlocks = new Collidable[columns * rows];
+            tileStamps = new int[columns * rows];
+        }
+        compiled = true;
+        for (Entry e : pending) {
+            place(e);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Returns the number of tiles that hold a block.
+     * @return the number of blocks in tiles.
+     */
+    public int tiledCount() {
+        int count = 0;
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] != EMPTY) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks the blocks of all the tiles a circle moving
+     * along a part of the trajectory touches.
+     * @param xIn the x value where the part starts.
+     * @param yIn the y value where the part starts.
+     * @param xOut the x value where the part ends.
+     * @param yOut the y value where the part ends.
+     * @param pad the radius of the circle, with some margin
+     * so blocks touched exactly on the grid lines are found.
+     * @param best the closest collision so far.
+     */
+    private void visit(double xIn, double yIn, double xOut, double yOut,
+                       double pad, ClosestHit best) {
+        int toX = tileX(Math.max(xIn, xOut) + pad);
+        int toY = tileY(Math.max(yIn, yOut) + pad);
+        for (int x = tileX(Math.min(xIn, xOut) - pad); x <= toX; x++) {
+            for (int y = tileY(Math.min(yIn, yOut) - pad); y <= toY; y++) {
+                test(x, y, best);
+            }
+        }
+    }
+
+    /**
+     * Checks the block in a tile, if there is one and it
+     * wasn't checked already in this query.
+     * @param tileX the x index of the tile.
+     * @param tileY the y index of the tile.
+     * @param best the closest collision so far.
+     */
+    private void test(int tileX, int tileY, ClosestHit best) {
+        if (tileX < 0 || tileX >= columns || tileY < 0 || tileY >= rows) {
+            return;
+        }
+        int tile = tileY * columns + tileX;
+        if (tiles[tile] == EMPTY || tileStamps[tile] == queryStamp) {
+            return;
+        }
+        tileStamps[tile] = queryStamp;
+        best.offer(tileBlocks[tile], tiles[tile] - 1);
+    }
+
+    /**
+     * Puts an entry in its tile if it's a block that
+     * fits the grid and the tile is free, otherwise in
+     * the loose list.
+     * @param e the entry.
+     */
+    private void place(Entry e) {
+        if (columns > 0 && fitsGrid(e.collidable)) {
+            Rectangle rect = e.collidable.getCollisionRectangle();
+            int x = tileX(rect.getX() + tileWidth / 2);
+            int y = tileY(rect.getY() + tileHeight / 2);
+            if (x >= 0 && x < columns && y >= 0 && y < rows
+                && tiles[y * columns + x] == EMPTY) {
+                e.tile = y * columns + x;
+                tiles[e.tile] = e.order + 1;
+                tileBlocks[e.tile] = e.collidable;
+                return;
+            }
+        }
+        loose.add(e);
+    }
+
+    /**
+     * Checks if a collidable is a block with the size of
+     * a tile, placed exactly on the grid.
+     * @param c the collidable.
+     * @return true if it fits in a tile.
+     */
+    private boolean fitsGrid(Collidable c) {
+        if (c.getCollisionBlock() == null) {
+            return false;
+        }
+        Rectangle rect = c.getCollisionRectangle();
+        if (Math.abs(rect.getWidth() - tileWidth) > MARGIN
+            || Math.abs(rect.getHeight() - tileHeight) > MARGIN) {
+            return false;
+        }
+        double x = (rect.getX() - originX) / tileWidth;
+        double y = (rect.getY() - originY) / tileHeight;
+        return Math.abs(x - Math.round(x)) * tileWidth < MARGIN
+               && Math.abs(y - Math.round(y)) * tileHeight < MARGIN;
+    }
+
+    /**
+     * Returns the rectangle of the first block with the
+     * most common size among the blocks added so far.
+     * @return the rectangle, or null if there are no blocks.
+     */
+    private Rectangle mostCommonBlockSize() {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        Rectangle common = null;
+        int max = 0;
+        for (Entry e : pending) {
+            if (e.collidable.getCollisionBlock() == null) {
+                continue;
+            }
+            Rectangle rect = e.collidable.getCollisionRectangle();
+            String size = rect.getWidth() + "x" + rect.getHeight();
+            int count = counts.getOrDefault(size, 0) + 1;
+            counts.put(size, count);
+            if (count > max) {
+                max = count;
+                common = rect;
+            }
+        }
+        return common;
+    }
+
+    /**
+     * Clips the range of a trajectory to the part of it
+     * between two values on one axis.
+     * @param start the start value on the axis.
+     * @param delta the change on the axis.
+     * @param low the low value.
+     * @param high the high value.
+     * @param range the range to clip, from and to.
+     * @return false if nothing of the range is left.
+     */
+    private static boolean clip(double start, double delta, double low,
+                                double high, double[] range) {
+        if (delta == 0) {
+            return start >= low && start <= high;
+        }
+        double t1 = (low - start) / delta;
+        double t2 = (high - start) / delta;
+        range[0] = Math.max(range[0], Math.min(t1, t2));
+        range[1] = Math.min(range[1], Math.max(t1, t2));
+        return range[0] <= range[1];
+    }
+
+    /**
+     * Returns the column of an x value.
+     * @param x the x value.
+     * @return the column.
+     */
+    private int tileX(double x) {
+        return (int) Math.floor((x - originX) / tileWidth);
+    }
+
+    /**
+     * Returns the row of a y value.
+     * @param y the y value.
+     * @return the row.
+     */
+    private int tileY(double y) {
+        return (int) Math.floor((y - originY) / tileHeight);
+    }
+
+    /**
+     * A collidable in the map, with the order it was
+     * added in and its tile (-1 if it's not in a tile).
+     */
+    private static class Entry {
+        private Collidable collidable;
+        private int order;
+        private int tile;
+
+        /**
+         * A constructor.
+         * @param collidable the collidable.
+         * @param order the order it was added in.
+         */
+        Entry(Collidable collidable, int order) {
+            this.collidable = collidable;
+            this.order = order;
+            this.tile = -1;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package collision;
+
+import geometry.Point;
+import geometry.Rectangle;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A kernel that checks a few rectangles of a batch
+ * at once, one in every lane of a vector. the slab
+ * method is done in the lanes with the same steps as
+ * Rectangle.collisionTime, so the times are exactly
+ * the same. lanes where the circle touches the
+ * rectangle at the start, or gets to it next to a
+ * corner, are rare, and are checked again one by one.
+ * the rectangles left after the last full vector are
+ * also checked one by one. this class is loaded only
+ * by BoundsKernel.setVectorized, since it needs the
+ * jdk.incubator.vector module.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+class VectorBoundsKernel extends BoundsKernel {
+
+    private static final VectorSpecies<Double> SPECIES =
+                                      DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * Finds the collision time of every rectangle in
+     * the batch, a vector of them at a time.
+     * @param batch the batch of rectangles.
+     * @param x the x value of the center at the start.
+     * @param y the y value of the center at the start.
+     * @param dx the horizontal change of the center.
+     * @param dy the vertical change of the center.
+     * @param radius the radius of the circle, 0 for a point.
+     */
+    void collisionTimes(PackedBounds batch, double x, double y, double dx,
+                        double dy, double radius) {
+        double[] times = batch.times();
+        int count = batch.size();
+        if (dx == 0 && dy == 0) {
+            for (int i = 0; i < count; i++) {
+                times[i] = Rectangle.NO_INTERSECTION;
+            }
+            return;
+        }
+        double touch = radius + Point.TINY_CONSTANT;
+        int bound = SPECIES.loopBound(count);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            DoubleVector left = load(batch.left(), i);
+            DoubleVector top = load(batch.top(), i);
+            DoubleVector right = load(batch.right(), i);
+            DoubleVector bottom = load(batch.bottom(), i);
+
+            // lanes where the circle touches the rectangle already.
+            DoubleVector offX = DoubleVector.broadcast(SPECIES, x)
+                                            .sub(left.max(right.min(x)));
+            DoubleVector offY = DoubleVector.broadcast(SPECIES, y)
+                                            .sub(top.max(bottom.min(y)));
+            VectorMask<Double> special = offX.mul(offX).add(offY.mul(offY))
+                                    .compare(VectorOperators.LE, touch * touch);
+            VectorMask<Double> miss = SPECIES.maskAll(false);
+            DoubleVector tEnter;
+            DoubleVector tExit;
+            if (dx == 0) {
+                miss = left.sub(radius).compare(VectorOperators.GT, x)
+                       .or(right.add(radius).compare(VectorOperators.LT, x));
+                tEnter = DoubleVector.broadcast(SPECIES,
+                                                Double.NEGATIVE_INFINITY);
+                tExit = DoubleVector.broadcast(SPECIES,
+                                               Double.POSITIVE_INFINITY);
+            } else {
+                DoubleVector t1 = left.sub(radius).sub(x).div(dx);
+                DoubleVector t2 = right.add(radius).sub(x).div(dx);
+                tEnter = t1.min(t2);
+                tExit = t1.max(t2);
+            }
+            if (dy == 0) {
+                miss = miss.or(top.sub(radius).compare(VectorOperators.GT, y))
+                       .or(bottom.add(radius).compare(VectorOperators.LT, y));
+            } else {
+                DoubleVector t1 = top.sub(radius).sub(y).div(dy);
+                DoubleVector t2 = bottom.add(radius).sub(y).div(dy);
+                tEnter = tEnter.max(t1.min(t2));
+                tExit = tExit.min(t1.max(t2));
+            }
+            miss = miss.or(tEnter.compare(VectorOperators.GT, tExit))
+                       .or(tEnter.compare(VectorOperators.GT, 1))
+                       .or(tExit.compare(VectorOperators.LT, 0));
+
+            // lanes where the center gets to the box next to a corner.
+            DoubleVector t = tEnter.max(0);
+            DoubleVector hitX = t.mul(dx).add(x);
+            DoubleVector hitY = t.mul(dy).add(y);
+            VectorMask<Double> corner =
+                    hitX.compare(VectorOperators.LT, left)
+                        .or(hitX.compare(VectorOperators.GT, right))
+                        .and(hitY.compare(VectorOperators.LT, top)
+                             .or(hitY.compare(VectorOperators.GT, bottom)));
+            special = special.or(corner.andNot(miss));
+            miss = miss.or(t.compare(VectorOperators.GT, 1));
+            t.blend(Rectangle.NO_INTERSECTION, miss).intoArray(times, i);
+            long lanes = special.toLong();
+            while (lanes != 0) {
+                int lane = Long.numberOfTrailingZeros(lanes);
+                times[i + lane] = scalarTime(batch, i + lane, x, y, dx, dy,
+                                             radius);
+                lanes &= lanes - 1;
+            }
+        }
+        for (int i = bound; i < count; i++) {
+            times[i] = scalarTime(batch, i, x, y, dx, dy, radius);
+        }
+    }
+
+    /**
+     * Loads a vector from an array of bounds.
+     * @param bounds the array.
+     * @param i the place of the first lane.
+     * @return the vector.
+     */
+    private static DoubleVector load(double[] bounds, int i) {
+        return DoubleVector.fromArray(SPECIES, bounds, i);
+    }
+}
@@ -0,0 +1,256 @@
+package entity;
+
+import java.util.Arrays;
+
+/**
+ * All the entities with the same set of components,
+ * packed in columns: every field of the components
+ * has an array, and an entity is a row of them, so
+ * a system goes over the entities it wants with
+ * loops over plain arrays. destroying an entity only
+ * marks its row, and the rows are compacted (keeping
+ * their order) when the world flushes, so rows don't
+ * move while systems run. the columns can be made
+ * bigger when entities are added, so a system that
+ * adds entities gets the columns again.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class Archetype {
+
+    private int mask;
+    private int count;
+    private int dead;
+    private int[] entities;
+    private boolean[] removed;
+    private double[][] doubles;
+    private int[][] ints;
+    private Object[][] refs;
+
+    /**
+     * A constructor for an archetype with no entities.
+     * @param mask the components of its entities.
+     */
+    Archetype(int mask) {
+        this.mask = mask;
+        entities = new int[16];
+        removed = new boolean[16];
+        doubles = new double[Components.DOUBLE_FIELDS][];
+        ints = new int[Components.INT_FIELDS][];
+        refs = new Object[Components.REF_FIELDS][];
+        for (int f = 0; f < doubles.length; f++) {
+            if (has(Components.ownerOfDouble(f))) {
+                doubles[f] = new double[16];
+            }
+        }
+        for (int f = 0; f < ints.length; f++) {
+            if (has(Components.ownerOfInt(f))) {
+                ints[f] = new int[16];
+            }
+        }
+        for (int f = 0; f < refs.length; f++) {
+            if (has(Components.ownerOfRef(f))) {
+                refs[f] = new Object[16];
+            }
+        }
+    }
+
+    /**
+     * Returns the components of the entities.
+     * @return the mask of the components.
+     */
+    public int mask() {
+        return mask;
+    }
+
+    /**
+     * Checks if the entities have a component.
+     * @param component the bit of the component.
+     * @return true if they have it.
+     */
+    public boolean has(int component) {
+        return Components.hasAll(mask, component);
+    }
+
+    /**
+     * Returns the number of rows, the destroyed
+     * entities that weren't flushed yet included.
+     * @return the number of rows.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the entity in a row.
+     * @param row the row.
+     * @return the entity.
+     */
+    public int entity(int row) {
+        return entities[row];
+    }
+
+    /**
+     * Checks if the entity in a row was destroyed.
+     * @param row the row.
+     * @return true if it was destroyed.
+     */
+    public boolean isRemoved(int row) {
+        return removed[row];
+    }
+
+    /**
+     * Returns the column of a double field.
+     * @param field the field.
+     * @return the column, or null if the entities
+     * don't have its component.
+     */
+    public double[] doubles(int field) {
+        return doubles[field];
+    }
+
+    /**
+     * Returns the column of an int field.
+     * @param field the field.
+     * @return the column, or null if the entities
+     * don't have its component.
+     */
+    public int[] ints(int field) {
+        return ints[field];
+    }
+
+    /**
+     * Returns the column of a reference field.
+     * @param field the field.
+     * @return the column, or null if the entities
+     * don't have its component.
+     */
+    public Object[] refs(int field) {
+        return refs[field];
+    }
+
+    /**
+     * Adds a row for an entity, with all its fields 0
+     * (or null).
+     * @param entity the entity.
+     * @return the row.
+     */
+    int add(int entity) {
+        if (count == entities.length) {
+            grow(count * 2);
+        }
+        entities[count] = entity;
+        removed[count] = false;
+        return count++;
+    }
+
+    /**
+     * Marks the entity in a row as destroyed.
+     * @param row the row.
+     */
+    void remove(int row) {
+        if (!removed[row]) {
+            removed[row] = true;
+            dead++;
+        }
+    }
+
+    /**
+     * Checks if there are destroyed rows to compact.
+     * @return true if there are.
+     */
+    boolean hasRemoved() {
+        return dead > 0;
+    }
+
+    /**
+     * Drops the rows of the destroyed entities, moving
+     * the rest to the start of the columns in their
+     * order, and lets the world know the new rows and
+     * the entities that are gone.
+     * @param world the world of the entities.
+     */
+    void compact(World world) {
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (removed[i]) {
+                world.released(entities[i]);
+                continue;
+            }
+            if (n != i) {
+                entities[n] = entities[i];
+                removed[n] = false;
+                for (double[] column : doubles) {
+                    if (column != null) {
+                        column[n] = column[i];
+                    }
+                }
+                for (int[] column : ints) {
+                    if (column != null) {
+                        column[n] = column[i];
+                    }
+                }
+                for (Object[] column : refs) {
+                    if (column != null) {
+                        column[n] = column[i];
+                    }
+                }
+                world.moved(entities[n], n);
+            }
+            n++;
+        }
+        for (int i = n; i < count; i++) {
+            clear(i);
+        }
+        count = n;
+        dead = 0;
+    }
+
+    /**
+     * Empties a row that is no longer used.
+     * @param row the row.
+     */
+    private void clear(int row) {
+        removed[row] = false;
+        for (double[] column : doubles) {
+            if (column != null) {
+                column[row] = 0;
+            }
+        }
+        for (int[] column : ints) {
+            if (column != null) {
+                column[row] = 0;
+            }
+        }
+        for (Object[] column : refs) {
+            if (column != null) {
+                column[row] = null;
+            }
+        }
+    }
+
+    /**
+     * Makes the columns bigger.
+     * @param capacity the new number of rows.
+     */
+    private void grow(int capacity) {
+        entities = Arrays.copyOf(entities, capacity);
+        removed = Arrays.copyOf(removed, capacity);
+        for (int f = 0; f < doubles.length; f++) {
+            if (doubles[f] != null) {
+                doubles[f] = Arrays.copyOf(doubles[f], capacity);
+            }
+        }
+        for (int f = 0; f < ints.length; f++) {
+            if (ints[f] != null) {
+                ints[f] = Arrays.copyOf(ints[f], capacity);
+            }
+        }
+        for (int f = 0; f < refs.length; f++) {
+            if (refs[f] != null) {
+                refs[f] = Arrays.copyOf(refs[f], capacity);
+            }
+        }
+    }
+}
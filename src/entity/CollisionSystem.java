@@ -0,0 +1,285 @@
+package entity;
+
+import java.awt.Color;
+
+import ball.Ball;
+import ball.Velocity;
+import biuoop.DrawSurface;
+import collision.CollisionInfo;
+import collision.RayBatch;
+import game.GameEnvironment;
+import game.GameLevel;
+import geometry.Fixed;
+import geometry.Point;
+
+/**
+ * Moves the entities that are balls (a position, a
+ * velocity and a radius) that hit something in this
+ * frame, the same way BallSystem does: the first
+ * collisions of all of them are looked up in one
+ * batch, and a ball that hits something moves like a
+ * Ball (see Ball.moveOneStep) and is marked as moved,
+ * and the rest are left for the movement system. the
+ * collidables and listeners get one ball object that
+ * stands for the entity that hit, and removing it from
+ * the game destroys the entity.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class CollisionSystem implements EntitySystem {
+
+    private static final int BALLS = Components.POSITION
+                                     | Components.VELOCITY
+                                     | Components.RADIUS;
+
+    private GameEnvironment environment;
+    private RayBatch batch;
+    private int[] batched;
+    private Hitter hitter;
+    private Velocity velocity;
+
+    /**
+     * A constructor for the system.
+     * @param environment the environment the balls move in.
+     */
+    public CollisionSystem(GameEnvironment environment) {
+        this.environment = environment;
+        batch = new RayBatch();
+        batched = new int[16];
+        hitter = new Hitter();
+        velocity = new Velocity(0, 0);
+    }
+
+    /**
+     * Moves the balls that hit something, an archetype
+     * at a time.
+     * @param world the world of the entities.
+     */
+    public void update(World world) {
+        hitter.world = world;
+        for (Archetype a : world.query(BALLS)) {
+            step(world, a);
+        }
+    }
+
+    /**
+     * Looks up the first collisions of the balls of an
+     * archetype, and moves the ones that hit something.
+     * a ball whose first collision is with a collidable
+     * another ball removed in this frame looks it up
+     * again.
+     * @param world the world of the entities.
+     * @param a the archetype.
+     */
+    private void step(World world, Archetype a) {
+        double[] x = a.doubles(Components.X);
+        double[] y = a.doubles(Components.Y);
+        double[] dx = a.doubles(Components.DX);
+        double[] dy = a.doubles(Components.DY);
+        double[] r = a.doubles(Components.R);
+        batch.clear();
+        if (batched.length < a.size()) {
+            batched = new int[a.size()];
+        }
+        int n = 0;
+        for (int row = 0; row < a.size(); row++) {
+            if (!a.isRemoved(row) && (dx[row] != 0 || dy[row] != 0)) {
+                batch.add(x[row], y[row], dx[row], dy[row], r[row], 1);
+                batched[n++] = row;
+            }
+        }
+        environment.getClosestCollisions(batch);
+        int[] moved = a.ints(Components.MOVED);
+        for (int k = 0; k < n; k++) {
+            int row = batched[k];
+            CollisionInfo first = batch.result(k);
+            if (first == null || a.isRemoved(row)) {
+                continue;
+            }
+            if (!environment.hasCollidable(first.collisionObject())) {
+                first = environment.getClosestCollision(x[row], y[row],
+                                                        dx[row], dy[row],
+                                                        r[row], 1);
+                if (first == null) {
+                    continue;
+                }
+            }
+            hitter.move(a, row, first);
+            moved[row] = world.getFrame();
+        }
+        batch.clear();
+    }
+
+    /**
+     * The ball the collidables and listeners are told
+     * hit them. it stands for the ball entity that is
+     * moving now: everything that reads or changes the
+     * ball goes to the columns of the entity, since the
+     * ball itself isn't in any environment, and removing
+     * it from the game destroys that entity.
+     */
+    private class Hitter extends Ball {
+
+        private World world;
+        private Archetype archetype;
+        private int row;
+
+        /**
+         * A constructor for the ball, that isn't in any
+         * environment itself.
+         */
+        Hitter() {
+            super(new Point(0, 0), 1, Color.WHITE, null);
+        }
+
+        /**
+         * Moves a ball entity one step, with
+         * Ball.moveOneStep.
+         * @param a the archetype of the ball.
+         * @param i the row of the ball.
+         * @param first the first collision of the ball in
+         * the step.
+         */
+        void move(Archetype a, int i, CollisionInfo first) {
+            archetype = a;
+            row = i;
+            velocity.setDx(a.doubles(Components.DX)[i]);
+            velocity.setDy(a.doubles(Components.DY)[i]);
+            moveOneStep(environment, first);
+        }
+
+        /**
+         * A getter for the x value of the center.
+         * @return the x value.
+         */
+        public double getX() {
+            return archetype.doubles(Components.X)[row];
+        }
+
+        /**
+         * A getter for the y value of the center.
+         * @return the y value.
+         */
+        public double getY() {
+            return archetype.doubles(Components.Y)[row];
+        }
+
+        /**
+         * A getter for the radius.
+         * @return the radius.
+         */
+        public int getSize() {
+            return (int) archetype.doubles(Components.R)[row];
+        }
+
+        /**
+         * A getter for the color, if the ball has one.
+         * @return the color.
+         */
+        public Color getColor() {
+            if (!archetype.has(Components.COLOR)) {
+                return super.getColor();
+            }
+            return new Color(archetype.ints(Components.ARGB)[row], true);
+        }
+
+        /**
+         * A getter for the velocity, as it is when the
+         * ball hits something.
+         * @return the velocity.
+         */
+        public Velocity getVelocity() {
+            return velocity;
+        }
+
+        /**
+         * Sets the velocity of the entity. like with a
+         * ball, the velocity the hit gives it is set
+         * after the listeners are done. does nothing
+         * before the ball stands for any entity (the
+         * ball constructor sets a velocity).
+         * @param v the velocity.
+         */
+        public void setVelocity(Velocity v) {
+            if (archetype == null) {
+                return;
+            }
+            archetype.doubles(Components.DX)[row] = v.getDx();
+            archetype.doubles(Components.DY)[row] = v.getDy();
+        }
+
+        /**
+         * Moves the entity to a point, on the 32.32 grid
+         * in the fixed point mode.
+         * @param x the x value of the point.
+         * @param y the y value of the point.
+         */
+        public void setCenter(double x, double y) {
+            archetype.doubles(Components.X)[row] = Fixed.snap(x);
+            archetype.doubles(Components.Y)[row] = Fixed.snap(y);
+        }
+
+        /**
+         * Draws the entity as a circle, like the render
+         * system does.
+         * @param surface the draw surface.
+         */
+        public void drawOn(DrawSurface surface) {
+            surface.setColor(getColor());
+            surface.fillCircle((int) getX(), (int) getY(), getSize());
+            surface.setColor(Color.BLACK);
+            surface.drawCircle((int) getX(), (int) getY(), getSize());
+        }
+
+        /**
+         * Does nothing, since the entity is moved by the
+         * systems of its world.
+         */
+        public void timePassed() { }
+
+        /**
+         * Does nothing, since the entity is already in
+         * the world of the game.
+         * @param g the game.
+         */
+        public void addToGame(GameLevel g) { }
+
+        /**
+         * Moves the entity, as a part of a step.
+         * @param mx the horizontal move.
+         * @param my the vertical move.
+         */
+        protected void moveBy(double mx, double my) {
+            archetype.doubles(Components.X)[row] += mx;
+            archetype.doubles(Components.Y)[row] += my;
+        }
+
+        /**
+         * Keeps the velocity the entity bounced with, in
+         * the middle of a step.
+         * @param after the velocity.
+         */
+        protected void keepVelocity(Velocity after) {
+            setVelocity(after);
+            velocity.setDx(after.getDx());
+            velocity.setDy(after.getDy());
+        }
+
+        /**
+         * Checks if the entity wasn't destroyed.
+         * @return true if it's still in the world.
+         */
+        protected boolean isInGame() {
+            return !archetype.isRemoved(row);
+        }
+
+        /**
+         * Destroys the entity of the ball.
+         * @param g the game.
+         */
+        public void removeFromGame(GameLevel g) {
+            world.destroy(archetype.entity(row));
+        }
+    }
+}
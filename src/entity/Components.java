@@ -0,0 +1,98 @@
+package entity;
+
+/**
+ * The components an entity can have, and the fields
+ * they keep. a set of components is a mask of their
+ * bits, and every field belongs to one component:
+ * doubles, ints or references, each kind numbered
+ * from 0. an archetype keeps a column for every field
+ * of its components.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public final class Components {
+
+    // components.
+    public static final int POSITION = 1;
+    public static final int VELOCITY = 1 << 1;
+    public static final int EXTENT = 1 << 2;
+    public static final int RADIUS = 1 << 3;
+    public static final int COLOR = 1 << 4;
+    public static final int POINTS = 1 << 5;
+    public static final int BODY = 1 << 6;
+    public static final int SPRITE = 1 << 7;
+
+    // double fields.
+    public static final int X = 0;
+    public static final int Y = 1;
+    public static final int DX = 2;
+    public static final int DY = 3;
+    public static final int WIDTH = 4;
+    public static final int HEIGHT = 5;
+    public static final int R = 6;
+    public static final int DOUBLE_FIELDS = 7;
+
+    // int fields.
+    public static final int ARGB = 0;
+    public static final int MOVED = 1;
+    public static final int SCORE = 2;
+    public static final int HITS = 3;
+    public static final int INT_FIELDS = 4;
+
+    // reference fields.
+    public static final int COLLIDABLE = 0;
+    public static final int LEGACY = 1;
+    public static final int REF_FIELDS = 2;
+
+    private static final int[] DOUBLE_OWNERS = {POSITION, POSITION, VELOCITY,
+                                                VELOCITY, EXTENT, EXTENT,
+                                                RADIUS};
+    private static final int[] INT_OWNERS = {COLOR, VELOCITY, POINTS, POINTS};
+    private static final int[] REF_OWNERS = {BODY, SPRITE};
+
+    /**
+     * Not used, the class only has constants and
+     * static methods.
+     */
+    private Components() {
+    }
+
+    /**
+     * Returns the component a double field belongs to.
+     * @param field the field.
+     * @return the bit of the component.
+     */
+    public static int ownerOfDouble(int field) {
+        return DOUBLE_OWNERS[field];
+    }
+
+    /**
+     * Returns the component an int field belongs to.
+     * @param field the field.
+     * @return the bit of the component.
+     */
+    public static int ownerOfInt(int field) {
+        return INT_OWNERS[field];
+    }
+
+    /**
+     * Returns the component a reference field belongs to.
+     * @param field the field.
+     * @return the bit of the component.
+     */
+    public static int ownerOfRef(int field) {
+        return REF_OWNERS[field];
+    }
+
+    /**
+     * Checks if a set of components has all the
+     * components of another.
+     * @param mask the set of components.
+     * @param wanted the components it should have.
+     * @return true if it has all of them.
+     */
+    public static boolean hasAll(int mask, int wanted) {
+        return (mask & wanted) == wanted;
+    }
+}
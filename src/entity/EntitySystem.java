@@ -0,0 +1,17 @@
+package entity;
+
+/**
+ * A system that runs on the entities of a world every
+ * frame, going over the archetypes with the components
+ * it needs.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public interface EntitySystem {
+    /**
+     * Runs the system for one frame.
+     * @param world the world of the entities.
+     */
+    void update(World world);
+}
@@ -0,0 +1,188 @@
+package entity;
+
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.Map;
+
+import ball.Ball;
+import ball.Velocity;
+import blocks.Block;
+import game.GameLevel;
+import geometry.Fixed;
+import geometry.Point;
+import geometry.Rectangle;
+import listener.HitListener;
+import sprites.Sprite;
+
+/**
+ * Turns the objects levels are made of (see
+ * LevelInformation) into entities of a world, so
+ * levels load the same way with a world as without
+ * one. blocks become entities with their bounds and
+ * color, and keep their block object as the body the
+ * environment checks collisions with. blocks that are
+ * worth points also have a points component, and the
+ * adapter listens to their hits: a block that was hit
+ * leaves the environment right away, and its hit is
+ * counted for the scoring system. balls given by their
+ * center and velocity become ball entities, and every
+ * other sprite becomes a sprite entity.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class LevelAdapter implements HitListener {
+
+    private static final int BLOCK = Components.POSITION | Components.EXTENT
+                                     | Components.COLOR | Components.BODY;
+    private static final int BALL = Components.POSITION | Components.VELOCITY
+                                    | Components.RADIUS | Components.COLOR;
+
+    private World world;
+    private GameLevel game;
+    private Map<Object, Integer> entities;
+
+    /**
+     * A constructor for an adapter that adds entities to
+     * a world.
+     * @param world the world.
+     * @param game the level the world is in.
+     */
+    public LevelAdapter(World world, GameLevel game) {
+        this.world = world;
+        this.game = game;
+        entities = new HashMap<Object, Integer>();
+    }
+
+    /**
+     * Adds a sprite as an entity: a block with its
+     * bounds and color, and anything else as a sprite
+     * entity.
+     * @param s the sprite.
+     * @return the entity.
+     */
+    public int addSprite(Sprite s) {
+        Integer old = entities.get(s);
+        if (old != null && owns(old, s)) {
+            return old;
+        }
+        int entity;
+        if (s instanceof Block) {
+            entity = addBlock((Block) s, BLOCK);
+        } else {
+            entity = world.create(Components.SPRITE);
+            world.setRef(entity, Components.LEGACY, s);
+        }
+        entities.put(s, entity);
+        return entity;
+    }
+
+    /**
+     * Adds a block that is worth points to the level:
+     * to the environment, and as an entity. it's removed
+     * from the environment when it's hit, and destroyed
+     * by the scoring system.
+     * @param block the block.
+     * @param points the points a hit of it is worth.
+     * @return the entity.
+     */
+    public int addScoredBlock(Block block, int points) {
+        game.addCollidable(block);
+        int entity = addBlock(block, BLOCK | Components.POINTS);
+        world.setInt(entity, Components.SCORE, points);
+        entities.put(block, entity);
+        block.addHitListener(this);
+        return entity;
+    }
+
+    /**
+     * Adds a ball entity.
+     * @param center the center of the ball.
+     * @param r the radius of the ball, 1 if it's not
+     * positive.
+     * @param color the color of the ball.
+     * @param v the velocity of the ball.
+     * @return the entity.
+     */
+    public int addBall(Point center, int r, Color color, Velocity v) {
+        int entity = world.create(BALL);
+        world.set(entity, Components.X, Fixed.snap(center.getX()));
+        world.set(entity, Components.Y, Fixed.snap(center.getY()));
+        world.set(entity, Components.DX, v.getDx());
+        world.set(entity, Components.DY, v.getDy());
+        world.set(entity, Components.R, Math.max(1, r));
+        world.setInt(entity, Components.ARGB, color.getRGB());
+        return entity;
+    }
+
+    /**
+     * Destroys the entity of a sprite.
+     * @param s the sprite.
+     * @return true if it had an entity that was alive.
+     */
+    public boolean removeSprite(Sprite s) {
+        Integer entity = entities.remove(s);
+        if (entity == null || !owns(entity, s)) {
+            return false;
+        }
+        world.destroy(entity);
+        return true;
+    }
+
+    /**
+     * Counts the hit of a block that is worth points,
+     * and takes it out of the environment.
+     * @param beingHit the block that was hit.
+     * @param hitter the ball that hit it.
+     */
+    public void hitEvent(Block beingHit, Ball hitter) {
+        Integer entity = entities.get(beingHit);
+        if (entity == null || !owns(entity, beingHit)) {
+            return;
+        }
+        beingHit.removeHitListener(this);
+        game.removeCollidable(beingHit);
+        world.setInt(entity, Components.HITS,
+                     world.getInt(entity, Components.HITS) + 1);
+    }
+
+    /**
+     * Checks if an entity is alive and was made for an
+     * object, since the number of an entity that was
+     * destroyed can be used again.
+     * @param entity the entity.
+     * @param o the object.
+     * @return true if the entity is the object's.
+     */
+    private boolean owns(int entity, Object o) {
+        if (!world.isAlive(entity)) {
+            return false;
+        }
+        Archetype a = world.archetypeOf(entity);
+        if (a.has(Components.SPRITE)) {
+            return world.getRef(entity, Components.LEGACY) == o;
+        }
+        return a.has(Components.BODY)
+               && world.getRef(entity, Components.COLLIDABLE) == o;
+    }
+
+    /**
+     * Makes the entity of a block.
+     * @param block the block.
+     * @param mask the components of the entity.
+     * @return the entity.
+     */
+    private int addBlock(Block block, int mask) {
+        Rectangle rect = block.getCollisionRectangle();
+        int entity = world.create(mask);
+        world.set(entity, Components.X, rect.getX());
+        world.set(entity, Components.Y, rect.getY());
+        world.set(entity, Components.WIDTH, rect.getWidth());
+        world.set(entity, Components.HEIGHT, rect.getHeight());
+        if (block.getColor() != null) {
+            world.setInt(entity, Components.ARGB, block.getColor().getRGB());
+        }
+        world.setRef(entity, Components.COLLIDABLE, block);
+        return entity;
+    }
+}
@@ -0,0 +1,35 @@
+package entity;
+
+/**
+ * Moves every entity with a position and a velocity
+ * by its velocity, unless another system (like the
+ * collision system) already moved it in this frame.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class MovementSystem implements EntitySystem {
+
+    /**
+     * Moves the entities that weren't moved yet.
+     * @param world the world of the entities.
+     */
+    public void update(World world) {
+        int frame = world.getFrame();
+        for (Archetype a : world.query(Components.POSITION
+                                       | Components.VELOCITY)) {
+            double[] x = a.doubles(Components.X);
+            double[] y = a.doubles(Components.Y);
+            double[] dx = a.doubles(Components.DX);
+            double[] dy = a.doubles(Components.DY);
+            int[] moved = a.ints(Components.MOVED);
+            for (int row = 0; row < a.size(); row++) {
+                if (moved[row] != frame && !a.isRemoved(row)) {
+                    x[row] += dx[row];
+                    y[row] += dy[row];
+                    moved[row] = frame;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package entity;
+
+import java.awt.Color;
+
+import biuoop.DrawSurface;
+import sprites.Sprite;
+
+/**
+ * Draws the entities of a world, an archetype at a
+ * time in the order they were made: sprite entities
+ * draw themselves, entities with a position, an
+ * extent and a color are drawn as rectangles (like
+ * Block.drawOn), and ones with a position, a radius
+ * and a color as circles (like Ball.drawOn), both with
+ * a black border. a color of 0 isn't drawn, and a
+ * color object is only made when the color changes.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class RenderSystem {
+
+    private static final int RECTANGLES = Components.POSITION
+                                          | Components.EXTENT
+                                          | Components.COLOR;
+    private static final int CIRCLES = Components.POSITION
+                                       | Components.RADIUS
+                                       | Components.COLOR;
+
+    private Color color;
+
+    /**
+     * Draws all the entities of a world.
+     * @param world the world.
+     * @param d the draw surface.
+     */
+    public void draw(World world, DrawSurface d) {
+        color = null;
+        for (Archetype a : world.query(0)) {
+            if (a.has(Components.SPRITE)) {
+                drawSprites(a, d);
+            } else if (a.has(RECTANGLES)) {
+                drawRectangles(a, d);
+            } else if (a.has(CIRCLES)) {
+                drawCircles(a, d);
+            }
+        }
+    }
+
+    /**
+     * Lets the sprite entities of an archetype draw
+     * themselves.
+     * @param a the archetype.
+     * @param d the draw surface.
+     */
+    private void drawSprites(Archetype a, DrawSurface d) {
+        Object[] sprites = a.refs(Components.LEGACY);
+        for (int row = 0; row < a.size(); row++) {
+            if (!a.isRemoved(row)) {
+                ((Sprite) sprites[row]).drawOn(d);
+            }
+        }
+    }
+
+    /**
+     * Draws the entities of an archetype as rectangles.
+     * @param a the archetype.
+     * @param d the draw surface.
+     */
+    private void drawRectangles(Archetype a, DrawSurface d) {
+        double[] x = a.doubles(Components.X);
+        double[] y = a.doubles(Components.Y);
+        double[] width = a.doubles(Components.WIDTH);
+        double[] height = a.doubles(Components.HEIGHT);
+        int[] argb = a.ints(Components.ARGB);
+        for (int row = 0; row < a.size(); row++) {
+            if (argb[row] == 0 || a.isRemoved(row)) {
+                continue;
+            }
+            d.setColor(colorOf(argb[row]));
+            d.fillRectangle((int) x[row], (int) y[row], (int) width[row],
+                            (int) height[row]);
+            d.setColor(Color.BLACK);
+            d.drawRectangle((int) x[row], (int) y[row], (int) width[row],
+                            (int) height[row]);
+        }
+    }
+
+    /**
+     * Draws the entities of an archetype as circles.
+     * @param a the archetype.
+     * @param d the draw surface.
+     */
+    private void drawCircles(Archetype a, DrawSurface d) {
+        double[] x = a.doubles(Components.X);
+        double[] y = a.doubles(Components.Y);
+        double[] r = a.doubles(Components.R);
+        int[] argb = a.ints(Components.ARGB);
+        for (int row = 0; row < a.size(); row++) {
+            if (argb[row] == 0 || a.isRemoved(row)) {
+                continue;
+            }
+            d.setColor(colorOf(argb[row]));
+            d.fillCircle((int) x[row], (int) y[row], (int) r[row]);
+            d.setColor(Color.BLACK);
+            d.drawCircle((int) x[row], (int) y[row], (int) r[row]);
+        }
+    }
+
+    /**
+     * Returns a color object for a color, the last one
+     * if it's the same color.
+     * @param argb the color as ARGB.
+     * @return the color object.
+     */
+    private Color colorOf(int argb) {
+        if (color == null || color.getRGB() != argb) {
+            color = new Color(argb, true);
+        }
+        return color;
+    }
+}
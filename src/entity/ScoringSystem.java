@@ -0,0 +1,50 @@
+package entity;
+
+import general.Counter;
+
+/**
+ * Turns the hits of entities that are worth points
+ * (the blocks of a level) into score: every hit adds
+ * the points of the entity, and an entity that was hit
+ * is destroyed and stops counting as a block left,
+ * like BlockRemover and ScoreTrackingListener do for
+ * block objects.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class ScoringSystem implements EntitySystem {
+
+    private Counter score;
+    private Counter remainingBlocks;
+
+    /**
+     * A constructor for the system.
+     * @param score the score of the game.
+     * @param remainingBlocks the number of blocks left.
+     */
+    public ScoringSystem(Counter score, Counter remainingBlocks) {
+        this.score = score;
+        this.remainingBlocks = remainingBlocks;
+    }
+
+    /**
+     * Scores the entities that were hit, and destroys
+     * them.
+     * @param world the world of the entities.
+     */
+    public void update(World world) {
+        for (Archetype a : world.query(Components.POINTS)) {
+            int[] points = a.ints(Components.SCORE);
+            int[] hits = a.ints(Components.HITS);
+            for (int row = 0; row < a.size(); row++) {
+                if (hits[row] == 0 || a.isRemoved(row)) {
+                    continue;
+                }
+                score.increase(hits[row] * points[row]);
+                remainingBlocks.decrease(1);
+                world.destroy(a.entity(row));
+            }
+        }
+    }
+}
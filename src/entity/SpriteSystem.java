@@ -0,0 +1,31 @@
+package entity;
+
+import sprites.Sprite;
+
+/**
+ * Lets the sprites that aren't made of components
+ * (like the paddle, the background and the score)
+ * know that time passed, in the order they were
+ * added. sprites added while it runs wait for the
+ * next frame.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class SpriteSystem implements EntitySystem {
+
+    /**
+     * Calls timePassed of every sprite entity.
+     * @param world the world of the entities.
+     */
+    public void update(World world) {
+        for (Archetype a : world.query(Components.SPRITE)) {
+            int count = a.size();
+            for (int row = 0; row < count; row++) {
+                if (!a.isRemoved(row)) {
+                    ((Sprite) a.refs(Components.LEGACY)[row]).timePassed();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import biuoop.DrawSurface;
+import game.GameLevel;
+import sprites.Sprite;
+
+/**
+ * The entities of a level and the systems that run
+ * on them, as one sprite. an entity is only a number,
+ * and its components are kept in the archetype of its
+ * set of components, so every system goes over the
+ * archetypes it wants (see query) with loops over
+ * their columns, instead of a virtual call for every
+ * object. every frame the systems run in the order
+ * they were added, and then the destroyed entities
+ * are flushed and their numbers can be used again.
+ * the render system draws the entities. levels only
+ * use a world if it was asked for, by running with
+ * -Darkanoid.ecs=true.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class World implements Sprite {
+
+    public static final String ECS_PROPERTY = "arkanoid.ecs";
+
+    private List<Archetype> archetypes;
+    private Map<Integer, Archetype> byMask;
+    private Map<Integer, Archetype[]> queries;
+    private List<EntitySystem> systems;
+    private RenderSystem renderer;
+    private Archetype[] archetypeOf;
+    private int[] rowOf;
+    private int[] freeIds;
+    private int freeCount;
+    private int nextId;
+    private int frame;
+
+    /**
+     * A constructor for a world with no entities or
+     * systems, other than the render system.
+     */
+    public World() {
+        archetypes = new ArrayList<Archetype>();
+        byMask = new HashMap<Integer, Archetype>();
+        queries = new HashMap<Integer, Archetype[]>();
+        systems = new ArrayList<EntitySystem>();
+        renderer = new RenderSystem();
+        archetypeOf = new Archetype[16];
+        rowOf = new int[16];
+        freeIds = new int[16];
+    }
+
+    /**
+     * Checks if levels should keep their entities in a
+     * world, asked for by running with
+     * -Darkanoid.ecs=true.
+     * @return true if a world should be used.
+     */
+    public static boolean isRequested() {
+        return Boolean.getBoolean(ECS_PROPERTY);
+    }
+
+    /**
+     * Adds a system, that runs every frame after the
+     * ones added before it.
+     * @param system the system.
+     */
+    public void addSystem(EntitySystem system) {
+        systems.add(system);
+    }
+
+    /**
+     * Makes an entity with a set of components, all
+     * their fields 0 (or null).
+     * @param mask the components.
+     * @return the entity.
+     */
+    public int create(int mask) {
+        int entity;
+        if (freeCount > 0) {
+            entity = freeIds[--freeCount];
+        } else {
+            entity = nextId++;
+            if (entity == archetypeOf.length) {
+                archetypeOf = Arrays.copyOf(archetypeOf, entity * 2);
+                rowOf = Arrays.copyOf(rowOf, entity * 2);
+            }
+        }
+        Archetype archetype = archetypeFor(mask);
+        archetypeOf[entity] = archetype;
+        rowOf[entity] = archetype.add(entity);
+        return entity;
+    }
+
+    /**
+     * Destroys an entity. it stays in its row, marked,
+     * until the end of the frame, so systems that run
+     * now skip it.
+     * @param entity the entity.
+     */
+    public void destroy(int entity) {
+        if (isAlive(entity)) {
+            archetypeOf[entity].remove(rowOf[entity]);
+        }
+    }
+
+    /**
+     * Checks if an entity exists and wasn't destroyed.
+     * @param entity the entity.
+     * @return true if it's alive.
+     */
+    public boolean isAlive(int entity) {
+        return entity >= 0 && entity < nextId && archetypeOf[entity] != null
+               && !archetypeOf[entity].isRemoved(rowOf[entity]);
+    }
+
+    /**
+     * Returns the archetype of an entity.
+     * @param entity the entity.
+     * @return the archetype.
+     */
+    public Archetype archetypeOf(int entity) {
+        return archetypeOf[entity];
+    }
+
+    /**
+     * Returns the row of an entity in its archetype.
+     * @param entity the entity.
+     * @return the row.
+     */
+    public int rowOf(int entity) {
+        return rowOf[entity];
+    }
+
+    /**
+     * Returns a double field of an entity.
+     * @param entity the entity.
+     * @param field the field.
+     * @return the value.
+     */
+    public double get(int entity, int field) {
+        return archetypeOf[entity].doubles(field)[rowOf[entity]];
+    }
+
+    /**
+     * Sets a double field of an entity.
+     * @param entity the entity.
+     * @param field the field.
+     * @param value the value.
+     */
+    public void set(int entity, int field, double value) {
+        archetypeOf[entity].doubles(field)[rowOf[entity]] = value;
+    }
+
+    /**
+     * Returns an int field of an entity.
+     * @param entity the entity.
+     * @param field the field.
+     * @return the value.
+     */
+    public int getInt(int entity, int field) {
+        return archetypeOf[entity].ints(field)[rowOf[entity]];
+    }
+
+    /**
+     * Sets an int field of an entity.
+     * @param entity the entity.
+     * @param field the field.
+     * @param value the value.
+     */
+    public void setInt(int entity, int field, int value) {
+        archetypeOf[entity].ints(field)[rowOf[entity]] = value;
+    }
+
+    /**
+     * Returns a reference field of an entity.
+     * @param entity the entity.
+     * @param field the field.
+     * @return the value.
+     */
+    public Object getRef(int entity, int field) {
+        return archetypeOf[entity].refs(field)[rowOf[entity]];
+    }
+
+    /**
+     * Sets a reference field of an entity.
+     * @param entity the entity.
+     * @param field the field.
+     * @param value the value.
+     */
+    public void setRef(int entity, int field, Object value) {
+        archetypeOf[entity].refs(field)[rowOf[entity]] = value;
+    }
+
+    /**
+     * Finds the archetypes whose entities have all of a
+     * set of components.
+     * @param mask the components.
+     * @return the archetypes, in the order they were made.
+     */
+    public Archetype[] query(int mask) {
+        Archetype[] found = queries.get(mask);
+        if (found == null) {
+            List<Archetype> matching = new ArrayList<Archetype>();
+            for (Archetype a : archetypes) {
+                if (a.has(mask)) {
+                    matching.add(a);
+                }
+            }
+            found = matching.toArray(new Archetype[0]);
+            queries.put(mask, found);
+        }
+        return found;
+    }
+
+    /**
+     * Returns the number of frames that passed.
+     * @return the frame number.
+     */
+    public int getFrame() {
+        return frame;
+    }
+
+    /**
+     * Returns the number of entities that are alive.
+     * @return the number of entities.
+     */
+    public int size() {
+        int size = nextId - freeCount;
+        for (Archetype a : archetypes) {
+            for (int row = 0; row < a.size(); row++) {
+                if (a.isRemoved(row)) {
+                    size--;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Draws the entities, with the render system.
+     * @param d the draw surface.
+     */
+    public void drawOn(DrawSurface d) {
+        renderer.draw(this, d);
+    }
+
+    /**
+     * Runs the systems, in the order they were added,
+     * and then flushes the destroyed entities.
+     */
+    public void timePassed() {
+        frame++;
+        for (EntitySystem s : systems) {
+            s.update(this);
+        }
+        flush();
+    }
+
+    /**
+     * Adds the world to a game, as one sprite.
+     * @param game the game.
+     */
+    public void addToGame(GameLevel game) {
+        game.addSprite(this);
+    }
+
+    /**
+     * Drops the rows of the entities destroyed since the
+     * last flush.
+     */
+    public void flush() {
+        for (Archetype a : archetypes) {
+            if (a.hasRemoved()) {
+                a.compact(this);
+            }
+        }
+    }
+
+    /**
+     * Lets the world know an entity moved to another
+     * row of its archetype.
+     * @param entity the entity.
+     * @param row the new row.
+     */
+    void moved(int entity, int row) {
+        rowOf[entity] = row;
+    }
+
+    /**
+     * Lets the world know an entity is gone, so its
+     * number can be used again.
+     * @param entity the entity.
+     */
+    void released(int entity) {
+        archetypeOf[entity] = null;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = entity;
+    }
+
+    /**
+     * Returns the archetype of a set of components,
+     * making it if there is none yet.
+     * @param mask the components.
+     * @return the archetype.
+     */
+    private Archetype archetypeFor(int mask) {
+        Archetype archetype = byMask.get(mask);
+        if (archetype == null) {
+            archetype = new Archetype(mask);
+            byMask.put(mask, archetype);
+            archetypes.add(archetype);
+            queries.clear();
+        }
+        return archetype;
+    }
+}
@@ -1,12 +1,17 @@
 
 package game;
 
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import ball.Ball;
+import ball.BallCollider;
 import collision.Collidable;
+import collision.CollisionIndex;
 import collision.CollisionInfo;
+import collision.RayBatch;
+import collision.SpatialHashGrid;
+import general.Registry;
 import geometry.Line;
 import geometry.Point;
 import geometry.Rectangle;
@@ -20,25 +25,138 @@ import geometry.Rectangle;
  */
 public class GameEnvironment {
 
-    public static final double TINY_CONSTANT = 2 * Math.pow(10.0, -10.0);
+    public static final int DEFAULT_MAX_CONTACTS = 8;
+    public static final double NEAREST_START = 32;
+    public static final String THREADS_PROPERTY = "arkanoid.threads";
 
-    private List<Collidable> collidables;
+    private Registry<Collidable> collidables;
+    private CollisionIndex index;
+    private int maxContacts;
+    private int truncatedSteps;
+    private ImpactScheduler scheduler;
+    private BallCollider ballCollider;
+    private TrajectoryPredictor predictor;
+    private ForkJoinPool pool;
+    private RayBatch queryBatch;
+    private Collidable[] scratch;
+    private double[] bounds;
 
     /**
      * a constructor for the environment, creating
-     * a new one by creating a new list of collidables.
+     * a new one by creating a new registry of collidables
+     * and a grid to look them up by location.
      */
     public GameEnvironment() {
-        collidables = new LinkedList<Collidable>();
+        this(new SpatialHashGrid());
+    }
+
+    /**
+     * a constructor for the environment, creating
+     * a new one by creating a new registry of collidables,
+     * and looking them up by location with the given
+     * index.
+     * @param index an empty collision index.
+     */
+    public GameEnvironment(CollisionIndex index) {
+        collidables = new Registry<Collidable>();
+        this.index = index;
+        maxContacts = DEFAULT_MAX_CONTACTS;
+        queryBatch = new RayBatch();
+        scratch = new Collidable[16];
+        bounds = new double[] {Double.POSITIVE_INFINITY,
+                               Double.POSITIVE_INFINITY,
+                               Double.NEGATIVE_INFINITY,
+                               Double.NEGATIVE_INFINITY};
+    }
+
+    /**
+     * A setter for the most collisions a ball can
+     * handle in one step. if it's not a positive
+     * number, sets it to the default value.
+     * @param maxContacts the most collisions in a step.
+     */
+    public void setMaxContacts(int maxContacts) {
+        if (maxContacts > 0) {
+            this.maxContacts = maxContacts;
+        } else {
+            this.maxContacts = DEFAULT_MAX_CONTACTS;
+        }
+    }
+
+    /**
+     * A getter for the most collisions a ball can
+     * handle in one step.
+     * @return the most collisions in a step.
+     */
+    public int getMaxContacts() {
+        return maxContacts;
+    }
+
+    /**
+     * Returns the number of threads collisions should be
+     * looked up with, asked for by running with
+     * -Darkanoid.threads=number.
+     * @return the number of threads, 1 if none were
+     * asked for.
+     */
+    public static int requestedThreads() {
+        return Math.max(1, Integer.getInteger(THREADS_PROPERTY, 1));
+    }
+
+    /**
+     * Sets the number of threads a batch of trajectories
+     * is looked up with (see RayBatch). the collidables
+     * only change between the lookups, and the balls
+     * still move and hit things one at a time in the
+     * same order, so the game goes the same with any
+     * number of threads.
+     * @param threads the number of threads, 1 to look
+     * them up in the thread of the game.
+     */
+    public void setThreads(int threads) {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        if (threads > 1) {
+            pool = new ForkJoinPool(threads);
+        }
+    }
+
+    /**
+     * Counts a step that was cut short since the
+     * ball hit too many collidables in it.
+     */
+    public void addTruncatedStep() {
+        truncatedSteps++;
+    }
+
+    /**
+     * Returns the number of steps that were cut short
+     * since a ball hit too many collidables in them.
+     * @return the number of cut steps.
+     */
+    public int getTruncatedSteps() {
+        return truncatedSteps;
     }
 
 
     /**
      * add the given collidable to the environment.
      * @param c the given collidable.
+     * @return the handle of the collidable.
      */
-    public void addCollidable(Collidable c) {
-        collidables.add(c);
+    public int addCollidable(Collidable c) {
+        int handle = collidables.add(c);
+        index.insert(c);
+        grow(c);
+        if (scheduler != null) {
+            scheduler.collidableAdded(c);
+        }
+        if (predictor != null) {
+            predictor.collidableAdded(c);
+        }
+        return handle;
     }
 
     /**
@@ -46,7 +164,213 @@ public class GameEnvironment {
      * @param c the given collidable.
      */
     public void removeCollidable(Collidable c) {
-        collidables.remove(c);
+        removeCollidable(collidables.handleOf(c));
+    }
+
+    /**
+     * removes the collidable of a handle from the
+     * environment. does nothing if it was already
+     * removed.
+     * @param handle the handle of the collidable.
+     */
+    public void removeCollidable(int handle) {
+        Collidable c = collidables.get(handle);
+        if (c == null) {
+            return;
+        }
+        collidables.remove(handle);
+        index.remove(c);
+        if (scheduler != null) {
+            scheduler.collidableRemoved(c);
+        }
+        if (predictor != null) {
+            predictor.collidableRemoved(c);
+        }
+    }
+
+    /**
+     * Checks if a collidable is in the environment.
+     * @param c the collidable.
+     * @return true if it was added and not removed.
+     */
+    public boolean hasCollidable(Collidable c) {
+        return collidables.handleOf(c) != Registry.NO_HANDLE;
+    }
+
+    /**
+     * lets the environment know the collision rectangle
+     * of the given collidable has changed.
+     * @param c the given collidable.
+     */
+    public void updateCollidable(Collidable c) {
+        index.update(c);
+        grow(c);
+        if (scheduler != null) {
+            scheduler.collidableUpdated(c);
+        }
+        if (predictor != null) {
+            predictor.collidableUpdated(c);
+        }
+    }
+
+    /**
+     * Turns the event driven mode on or off. in this
+     * mode, the next impact of every ball is kept, and
+     * balls only look for collisions when it's due or
+     * something changed near their path.
+     * @param eventDriven true to turn the mode on.
+     */
+    public void setEventDriven(boolean eventDriven) {
+        if (!eventDriven) {
+            scheduler = null;
+            return;
+        }
+        if (scheduler == null) {
+            scheduler = new ImpactScheduler(this);
+            for (int i = 0; i < collidables.size(); i++) {
+                scheduler.collidableAdded(collidables.getAt(i));
+            }
+        }
+    }
+
+    /**
+     * Turns bouncing of balls off each other on or off.
+     * only balls added after it's turned on bounce.
+     * @param ballCollisions true to make balls bounce
+     * off each other.
+     */
+    public void setBallCollisions(boolean ballCollisions) {
+        if (!ballCollisions) {
+            ballCollider = null;
+        } else if (ballCollider == null) {
+            ballCollider = new BallCollider();
+        }
+    }
+
+    /**
+     * Turns predicting the paths of balls on or off.
+     * @param bounces the number of bounces to look
+     * ahead, 0 to turn it off.
+     * @param landingY the height balls land at (the
+     * top of the paddle).
+     */
+    public void setPrediction(int bounces, double landingY) {
+        if (bounces <= 0) {
+            predictor = null;
+        } else {
+            predictor = new TrajectoryPredictor(this, bounces, landingY);
+        }
+    }
+
+    /**
+     * Returns the predictor of the paths of balls.
+     * @return the predictor, or null if predicting
+     * is off.
+     */
+    public TrajectoryPredictor getPredictor() {
+        return predictor;
+    }
+
+    /**
+     * Lets the environment know a new frame started.
+     * if balls bounce off each other, the balls that
+     * would touch in this frame bounce now.
+     */
+    public void nextFrame() {
+        if (scheduler != null) {
+            scheduler.nextFrame();
+        }
+        if (ballCollider != null) {
+            ballCollider.collide();
+        }
+    }
+
+    /**
+     * Checks if a ball needs to look for collisions in
+     * this frame. always true if the event driven mode
+     * is off.
+     * @param ball the ball.
+     * @return true if the ball should look for collisions,
+     * false if it can just move by its velocity.
+     */
+    public boolean isImpactDue(Ball ball) {
+        return scheduler == null || scheduler.isDue(ball);
+    }
+
+    /**
+     * Finds and keeps the next impact of a ball, if the
+     * event driven mode is on.
+     * @param ball the ball.
+     */
+    public void scheduleImpact(Ball ball) {
+        if (scheduler != null) {
+            scheduler.schedule(ball);
+        }
+    }
+
+    /**
+     * Drops the kept impact of a ball, if the event
+     * driven mode is on.
+     * @param ball the ball.
+     */
+    public void cancelImpact(Ball ball) {
+        if (scheduler != null) {
+            scheduler.cancel(ball);
+        }
+    }
+
+    /**
+     * Lets the environment know a ball joined the game,
+     * so its first collision in a frame is looked up
+     * with the other balls, if the event driven mode
+     * is on, and it bounces off other balls, if that
+     * is on.
+     * @param ball the ball.
+     */
+    public void addBall(Ball ball) {
+        if (scheduler != null) {
+            scheduler.track(ball);
+        }
+        if (ballCollider != null) {
+            ballCollider.add(ball);
+        }
+    }
+
+    /**
+     * Lets the environment know a ball left the game,
+     * so nothing is kept for it anymore.
+     * @param ball the ball.
+     */
+    public void removeBall(Ball ball) {
+        if (scheduler != null) {
+            scheduler.forget(ball);
+        }
+        if (ballCollider != null) {
+            ballCollider.remove(ball);
+        }
+        if (predictor != null) {
+            predictor.forget(ball);
+        }
+    }
+
+    /**
+     * Returns the first collision of a ball in this
+     * frame, moving by its whole velocity. if the event
+     * driven mode is on, it was usually looked up
+     * already with the other balls at the start of the
+     * frame.
+     * @param ball the ball.
+     * @return the collision information, or null if the
+     * ball doesn't hit anything.
+     */
+    public CollisionInfo getFirstCollision(Ball ball) {
+        if (scheduler != null && scheduler.hasFirstHit(ball)) {
+            return scheduler.takeFirstHit(ball);
+        }
+        return getClosestCollision(ball.getX(), ball.getY(),
+                                   ball.getVelocity().getDx(),
+                                   ball.getVelocity().getDy(), ball.getSize(),
+                                   1);
     }
 
     /**
@@ -54,139 +378,341 @@ public class GameEnvironment {
      * If this object will not collide with any of the collidables
      * in this collection, return null. Else, return the information
      * about the closest collision that is going to occur.
+     * Only the collidables the index finds near the
+     * trajectory are checked.
      * @param trajectory the trajectory of an object.
      * @return the collision information.
      */
     public CollisionInfo getClosestCollision(Line trajectory) {
-        LinkedList<Double> distances = new LinkedList<Double>();
-        LinkedList<Integer> indexes = new LinkedList<Integer>();
-        for (int i = 0; i < collidables.size(); i++) {
-            Rectangle rect = collidables.get(i).getCollisionRectangle();
-            Point closestPoint = trajectory.closestIntersectStartOfLine(rect);
-            if (closestPoint != null) {
-                distances.add(closestPoint.distance(trajectory.start()));
-                indexes.add(i);
-            }
-        }
-        if (indexes.isEmpty()) {
+        double x = trajectory.start().getX();
+        double y = trajectory.start().getY();
+        return getClosestCollision(x, y, trajectory.end().getX() - x,
+                                   trajectory.end().getY() - y, 0, 0);
+    }
+
+    /**
+     * Same as getClosestCollision(Line), for a circle
+     * (a ball) moving from (x, y) by (dx, dy), without
+     * creating a line for the trajectory. the collision
+     * is when the circle first touches a collidable,
+     * and the collision point is where it touches it.
+     * @param x the x value of the trajectory start.
+     * @param y the y value of the trajectory start.
+     * @param dx the horizontal change of the trajectory.
+     * @param dy the vertical change of the trajectory.
+     * @param radius the radius of the circle, 0 for a point.
+     * @param span the part of the current frame the
+     * trajectory takes, up to the end of the frame, so
+     * kinematic collidables (the paddle) are checked by
+     * how the circle moves relative to them. 0 checks
+     * them as if they were still.
+     * @return the collision information.
+     */
+    public CollisionInfo getClosestCollision(double x, double y, double dx,
+                                             double dy, double radius,
+                                             double span) {
+        return index.closestCollision(x, y, dx, dy, radius, span);
+    }
+
+    /**
+     * Looks up the closest collisions of a batch of
+     * trajectories together. the results are kept in
+     * the batch.
+     * @param batch the batch of trajectories.
+     */
+    public void getClosestCollisions(RayBatch batch) {
+        batch.resolve(index, pool);
+    }
+
+    /**
+     * Casts a ray (a point moving in a straight line)
+     * from (x, y) in a direction, and returns the first
+     * collidable it hits. collidables are checked where
+     * they are now.
+     * @param x the x value of the start.
+     * @param y the y value of the start.
+     * @param dirX the x value of the direction.
+     * @param dirY the y value of the direction.
+     * @param maxDistance how far the ray goes.
+     * @return the collision information (its time is the
+     * part of maxDistance passed), or null if nothing is
+     * hit or the direction is (0, 0).
+     */
+    public CollisionInfo rayCast(double x, double y, double dirX, double dirY,
+                                 double maxDistance) {
+        double length = Math.sqrt(dirX * dirX + dirY * dirY);
+        if (length == 0) {
             return null;
         }
-        Double min = distances.get(0);
-        int index = indexes.get(0);
+        double scale = maxDistance / length;
+        return getClosestCollision(x, y, dirX * scale, dirY * scale, 0, 0);
+    }
 
-        // Finds the closest collision
-        for (int i = 1; i < distances.size(); i++) {
-            if (min > distances.get(i)) {
-                min = distances.get(i);
-                index = indexes.get(i);
-            }
+    /**
+     * Casts a circle along a segment, from (x1, y1) to
+     * (x2, y2), and returns the first collidable it
+     * touches. collidables are checked where they are now.
+     * @param x1 the x value of the start.
+     * @param y1 the y value of the start.
+     * @param x2 the x value of the end.
+     * @param y2 the y value of the end.
+     * @param radius the radius of the circle, 0 for a point.
+     * @return the collision information, or null if
+     * nothing is hit.
+     */
+    public CollisionInfo segmentCast(double x1, double y1, double x2,
+                                     double y2, double radius) {
+        return getClosestCollision(x1, y1, x2 - x1, y2 - y1, radius, 0);
+    }
+
+    /**
+     * Casts many rays together, like rayCast. the rays
+     * are looked up in an order that keeps rays that start
+     * near each other together.
+     * @param x the x values of the starts.
+     * @param y the y values of the starts.
+     * @param dirX the x values of the directions.
+     * @param dirY the y values of the directions.
+     * @param maxDistance how far the rays go.
+     * @param out gets the collision of every ray, or null.
+     * one ray is cast for every place in it.
+     */
+    public void rayCasts(double[] x, double[] y, double[] dirX,
+                         double[] dirY, double maxDistance,
+                         CollisionInfo[] out) {
+        queryBatch.clear();
+        for (int i = 0; i < out.length; i++) {
+            double length = Math.sqrt(dirX[i] * dirX[i] + dirY[i] * dirY[i]);
+            double scale = length == 0 ? 0 : maxDistance / length;
+            queryBatch.add(x[i], y[i], dirX[i] * scale, dirY[i] * scale, 0,
+                           0);
         }
-        Rectangle rect = collidables.get(index).getCollisionRectangle();
-        Point collisionPoint = trajectory.closestIntersectStartOfLine(rect);
-        CollisionInfo cInfo = new CollisionInfo(collisionPoint,
-                                                collidables.get(index));
-        return cInfo;
+        getClosestCollisions(queryBatch);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = queryBatch.result(i);
+        }
+        queryBatch.clear();
     }
 
     /**
-     * Returns the index of a collidable in the list.
-     * @param c the collidable.
-     * @return the index of the collidable.
+     * Casts many circles along segments together, like
+     * segmentCast.
+     * @param x1 the x values of the starts.
+     * @param y1 the y values of the starts.
+     * @param x2 the x values of the ends.
+     * @param y2 the y values of the ends.
+     * @param radius the radius of the circles.
+     * @param out gets the collision of every segment, or
+     * null. one segment is cast for every place in it.
      */
-    public int getIndex(Collidable c) {
-        return collidables.indexOf(c);
+    public void segmentCasts(double[] x1, double[] y1, double[] x2,
+                             double[] y2, double radius, CollisionInfo[] out) {
+        queryBatch.clear();
+        for (int i = 0; i < out.length; i++) {
+            queryBatch.add(x1[i], y1[i], x2[i] - x1[i], y2[i] - y1[i], radius,
+                           0);
+        }
+        getClosestCollisions(queryBatch);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = queryBatch.result(i);
+        }
+        queryBatch.clear();
     }
 
     /**
-     * Checks if a point is on an object. if it
-     * is, returns the object. if not, returns null.
-     * used to find other objects that are hit when
-     * one or 2 are already hit, meaning the hitting object
-     * hits multiple objects at once.
-     * @param collisionPoint the point of the collision.
-     * @param skipIndex1 the index of one of the objects that
-     * were hit, will be skipped when looking for other objects.
-     * @param skipIndex2 the index of another object that was hit,
-     * might be null. will be skipped when lookinf for other
-     * objects.
-     * @return the object the collision is with or null.
-     */
-    public Collidable pointOnObject(Point collisionPoint, int skipIndex1,
-                                    int skipIndex2) {
-        for (int i = 0; i < collidables.size(); i++) {
-            if (i == skipIndex1 || i == skipIndex2) {
-                continue;
+     * Finds the collidables whose collision rectangles
+     * overlap a box (touching counts).
+     * @param minX the left side of the box.
+     * @param minY the top of the box.
+     * @param maxX the right side of the box.
+     * @param maxY the bottom of the box.
+     * @param out gets the collidables, in the order they
+     * were added, as many as it has room for.
+     * @return the number of collidables found, which can
+     * be more than the length of out.
+     */
+    public int overlapping(double minX, double minY, double maxX,
+                           double maxY, Collidable[] out) {
+        return index.overlapping(minX, minY, maxX, maxY, out);
+    }
+
+    /**
+     * Finds the collidables whose collision rectangles
+     * contain a point (on the borders counts).
+     * @param x the x value of the point.
+     * @param y the y value of the point.
+     * @param out gets the collidables, in the order they
+     * were added, as many as it has room for.
+     * @return the number of collidables found, which can
+     * be more than the length of out.
+     */
+    public int containing(double x, double y, Collidable[] out) {
+        return index.overlapping(x, y, x, y, out);
+    }
+
+    /**
+     * Finds the collidables closest to a point, by the
+     * distance to their collision rectangles (0 inside
+     * them). a box around the point is searched, and made
+     * twice as big until enough collidables are found in
+     * the distance it covers, or it covers the whole area
+     * the collidables were ever in. collidables at the same
+     * distance are in the order they were added.
+     * @param x the x value of the point, a finite number.
+     * @param y the y value of the point, a finite number.
+     * @param out gets the closest collidables, closest
+     * first, as many as it has room for.
+     * @param distances gets the distances of the
+     * collidables in out, if it's not null.
+     * @return the number of collidables put in out.
+     */
+    public int nearest(double x, double y, Collidable[] out,
+                       double[] distances) {
+        if (!Double.isFinite(x) || !Double.isFinite(y)) {
+            throw new IllegalArgumentException("no nearest collidables to ("
+                                               + x + ", " + y + ")");
+        }
+        int k = Math.min(out.length, collidables.size());
+        if (k == 0) {
+            return 0;
+        }
+        double farthest = Math.max(Math.max(x - bounds[0], bounds[2] - x),
+                                   Math.max(y - bounds[1], bounds[3] - y));
+        double reach = NEAREST_START;
+        int found;
+        while (true) {
+            found = search(x - reach, y - reach, x + reach, y + reach);
+            if (found >= collidables.size() || !(reach < farthest)) {
+                break;
             }
-            Rectangle cObject = collidables.get(i).getCollisionRectangle();
-            if (cObject.isPointOnBorders(collisionPoint)) {
-                return collidables.get(i);
+            if (found >= k && sortByDistance(x, y, found, k) <= reach) {
+                break;
             }
+            reach *= 2;
         }
-        return null;
+        k = Math.min(k, found);
+        sortByDistance(x, y, found, k);
+        for (int i = 0; i < k; i++) {
+            out[i] = scratch[i];
+            if (distances != null) {
+                distances[i] = distance(scratch[i], x, y);
+            }
+        }
+        return k;
     }
 
     /**
-     * Gets a collision point and an object
-     * and looks for other objects with the same
-     * point on the list. returns null if none found,
-     * or the first object that was found.
-     * @param collisionPoint the collision point
-     * @param c the collidable that was hit.
-     * @return null / an other collidable.
-     */
-    public Collidable getClosestColOtherObj(Point collisionPoint,
-                                            Collidable c) {
-        int index = collidables.indexOf(c);
-        return (pointOnObject(collisionPoint, index, -1));
-    }
-
-    /**
-     * Gets a collision point and an 2 objects
-     * and looks for other objects with the same
-     * point on the list. returns null if none found,
-     * or the first object that was found.
-     * @param collisionPoint the collision point
-     * @param c1 one of the collidables that were hit.
-     * @param c2 the other collidable that was hit.
-     * @return null / an other collidable.
-     */
-    public Collidable getClosestColOtherObj(Point collisionPoint,
-                                            Collidable c1, Collidable c2) {
-        int index1 = collidables.indexOf(c1);
-        int index2 = collidables.indexOf(c2);
-        return (pointOnObject(collisionPoint, index1, index2));
-    }
-
-    /**
-     * Since the paddle can move after the ball,
-     * and the ball is not a collidable, the
-     * paddle could move in the ball, and then
-     * when the ball will want to move, it won't
-     * behave as expected. so in this spesific case,
-     * pushes the ball out of the paddle.
-     * @param ball
-     */
-    public void moveBallOutOfPaddle(Ball ball) {
-        Rectangle rect = collidables.get(0).getCollisionRectangle();
-        double rectCronerX = rect.getUpperLeft().getX();
-        if (ball.getY() > rect.getUpperLeft().getY()) {
-
-            /*
-             * the ball is either close to the right border,
-             * or close to the left border of the paddle.
-             * moves it out of the closest border, enough
-             * so the ball would collide with it for sure
-             * (if needs to).
-             */
-            if (ball.getX() > rectCronerX + TINY_CONSTANT
-                && ball.getX() < rectCronerX + rect.getWidth() / 2) {
-                ball.setCenter(rectCronerX - TINY_CONSTANT, ball.getY());
-            }
-            if (ball.getX() < rectCronerX + rect.getWidth() - TINY_CONSTANT
-                    && ball.getX() > rectCronerX + rect.getWidth() / 2) {
-                    ball.setCenter(rectCronerX + rect.getWidth()
-                    + TINY_CONSTANT, ball.getY());
+     * Grows the area the collidables were ever in to
+     * the collision rectangle of a collidable.
+     * @param c the collidable.
+     */
+    private void grow(Collidable c) {
+        Rectangle rect = c.getCollisionRectangle();
+        bounds[0] = Math.min(bounds[0], rect.getX());
+        bounds[1] = Math.min(bounds[1], rect.getY());
+        bounds[2] = Math.max(bounds[2], rect.getX() + rect.getWidth());
+        bounds[3] = Math.max(bounds[3], rect.getY() + rect.getHeight());
+    }
+
+    /**
+     * Puts the collidables overlapping a box in the
+     * scratch array, making it bigger if needed.
+     * @param minX the left side of the box.
+     * @param minY the top of the box.
+     * @param maxX the right side of the box.
+     * @param maxY the bottom of the box.
+     * @return the number of collidables found.
+     */
+    private int search(double minX, double minY, double maxX, double maxY) {
+        int found = index.overlapping(minX, minY, maxX, maxY, scratch);
+        if (found > scratch.length) {
+            scratch = new Collidable[found * 2];
+            found = index.overlapping(minX, minY, maxX, maxY, scratch);
+        }
+        return found;
+    }
+
+    /**
+     * Moves the k closest collidables of the first ones
+     * in the scratch array to its start, closest first
+     * (by selection, so the ones at the same distance keep
+     * their order).
+     * @param x the x value of the point.
+     * @param y the y value of the point.
+     * @param found the number of collidables in the array.
+     * @param k the number of collidables to move.
+     * @return the distance of the k-th closest one.
+     */
+    private double sortByDistance(double x, double y, int found, int k) {
+        double last = 0;
+        for (int i = 0; i < k; i++) {
+            int best = i;
+            double bestDistance = distance(scratch[i], x, y);
+            for (int j = i + 1; j < found; j++) {
+                double d = distance(scratch[j], x, y);
+                if (d < bestDistance) {
+                    best = j;
+                    bestDistance = d;
+                }
             }
+            Collidable c = scratch[best];
+            System.arraycopy(scratch, i, scratch, i + 1, best - i);
+            scratch[i] = c;
+            last = bestDistance;
         }
+        return last;
+    }
+
+    /**
+     * Returns the distance of a point from the collision
+     * rectangle of a collidable, 0 if it's inside.
+     * @param c the collidable.
+     * @param x the x value of the point.
+     * @param y the y value of the point.
+     * @return the distance.
+     */
+    private static double distance(Collidable c, double x, double y) {
+        Point p = c.getCollisionRectangle().closestPoint(x, y);
+        double dx = p.getX() - x;
+        double dy = p.getY() - y;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Returns the handle of a collidable.
+     * @param c the collidable.
+     * @return the handle of the collidable, or
+     * Registry.NO_HANDLE if it's not in the environment.
+     */
+    public int getHandle(Collidable c) {
+        return collidables.handleOf(c);
+    }
+
+    /**
+     * Returns the collidable of a handle.
+     * @param handle the handle.
+     * @return the collidable, or null if it was removed.
+     */
+    public Collidable getCollidable(int handle) {
+        return collidables.get(handle);
+    }
+
+    /**
+     * Finds the other objects a point is on, when one
+     * object is already hit there, meaning the hitting
+     * object might hit multiple objects at once. only
+     * the collidables the index finds around the point
+     * are checked.
+     * @param collisionPoint the point of the collision.
+     * @param c the collidable that was hit.
+     * @return the other collidables the point is on, in
+     * the order they were added.
+     */
+    public List<Collidable> getOtherObjectsAt(Point collisionPoint,
+                                              Collidable c) {
+        List<Collidable> found = index.collidablesAt(collisionPoint.getX(),
+                                                     collisionPoint.getY());
+        found.remove(c);
+        return found;
     }
 }
@@ -43,6 +43,8 @@ public class GameFlow {
      * Gets a list of levels and starts running them
      * in order, untill the players loses (no more balls)
      * or until he won (no more levels to play).
+     * every level is closed when it's over, so the
+     * memory of its blocks and its threads are freed.
      * @param levels the list of levels to play.
      */
     public void runLevels(List<LevelInformation> levels) {
@@ -54,6 +56,7 @@ public class GameFlow {
           level.initialize(score);
           int remainingBalls;
           remainingBalls = level.run(score);
+          level.close();
           if (remainingBalls == 0) {
              EndScreen loseScreen = new EndScreen(keyboardSensor,
                                                   score.getValue(), false);
@@ -5,10 +5,22 @@ import biuoop.DrawSurface;
 import biuoop.KeyboardSensor;
 import ball.Ball;
 import ball.BallRemover;
+import ball.BallSystem;
 import blocks.Block;
 import blocks.BlockRemover;
+import blocks.BlockArena;
+import blocks.BlockStore;
 import blocks.Paddle;
 import collision.Collidable;
+import collision.CollisionIndex;
+import collision.CompiledIndex;
+import collision.TileMapIndex;
+import entity.CollisionSystem;
+import entity.LevelAdapter;
+import entity.MovementSystem;
+import entity.ScoringSystem;
+import entity.SpriteSystem;
+import entity.World;
 import general.Counter;
 import geometry.Point;
 import geometry.Rectangle;
@@ -36,7 +48,9 @@ import ball.Velocity;
 * for the objects left in the game, a ref to
 * the game environment and a keyboard sensor
 * for input. the level will run all time running
-* is true.
+* is true. if it was asked for, the objects of the
+* level are kept as entities of a world instead,
+* which is the only sprite of the level.
 * @author Uri Knoll
 * @version  %I%, %G%
 * @since 17.0.2
@@ -46,6 +60,9 @@ public class GameLevel implements Animation {
    public static final int GUI_WIDTH = 800;
    public static final int GUI_HEIGHT = 600;
    public static final int BORDER_SIZE = 25;
+   public static final double STORM_TOP = 330;
+   public static final double STORM_HEIGHT = 200;
+   public static final double GOLDEN_ANGLE = 137.5;
    public static final int NUM_OF_ROWS = 6;
    public static final int SCORE_WIDTH = 20;
 
@@ -53,6 +70,11 @@ public class GameLevel implements Animation {
    private boolean running;
    private SpriteCollection sprites;
    private GameEnvironment environment;
+   private StaticGeometry geometry;
+   private BlockStore blockStore;
+   private BlockArena arena;
+   private World world;
+   private LevelAdapter adapter;
    private Counter remainingBlocks;
    private Counter remainingBalls;
    private KeyboardSensor keyboard;
@@ -73,7 +95,25 @@ public class GameLevel implements Animation {
    public GameLevel(LevelInformation level, KeyboardSensor ks,
                     AnimationRunner ar) {
        sprites = new SpriteCollection();
-       environment = new GameEnvironment();
+       CollisionIndex requested = CollisionIndex.requested();
+       CollisionIndex index = requested;
+       if (CompiledIndex.isRequested()) {
+           index = new CompiledIndex(requested);
+       }
+       environment = new GameEnvironment(index);
+       environment.setEventDriven(true);
+       environment.setThreads(GameEnvironment.requestedThreads());
+       environment.setBallCollisions(level.ballCollisions());
+       geometry = new StaticGeometry(environment);
+
+       // the tile map keeps every block in its own tile.
+       geometry.setMerging(!(requested instanceof TileMapIndex));
+       if (BlockArena.isRequested()) {
+           arena = new BlockArena();
+           blockStore = new BlockStore(arena);
+       } else {
+           blockStore = new BlockStore();
+       }
        remainingBlocks = new Counter(0);
        remainingBalls = new Counter(0);
        this.level = level;
@@ -115,7 +155,8 @@ public class GameLevel implements Animation {
     * Adds listeners to each block, one which
     * prints a message for each hit, one which
     * removes blocks which were hit, and one
-    * which updates the score after a hit.
+    * which updates the score after a hit. with a
+    * world, the blocks are scored entities instead.
     * @param br a listener that removes a block
     * for every hitEvent.
     * @param sl a listener that updates the score
@@ -123,8 +164,12 @@ public class GameLevel implements Animation {
     */
     private void setBlocks(HitListener br, HitListener sl) {
         for (Block b : level.blocks()) {
-            b.addToGame(this);
             remainingBlocks.increase(1);
+            if (adapter != null) {
+                adapter.addScoredBlock(b, ScoreTrackingListener.HIT_POINTS);
+                continue;
+            }
+            b.addToGame(this);
             b.addHitListener(br);
             b.addHitListener(sl);
         }
@@ -134,21 +179,49 @@ public class GameLevel implements Animation {
      * Initialize a new game: create the borders,
      * Blocks, ball and Paddle. and adds them to the
      * game. also adds listeners for the blocks and
-     * bottom border (death zone).
+     * bottom border (death zone). if a world was
+     * asked for, it's made first.
      * @param score a counter that keeps track of
      * the score in the game.
      */
     public void initialize(Counter score) {
+        if (World.isRequested()) {
+            createWorld(score);
+        }
         level.getBackground().addToGame(this);
         ScoreIndicator scoreBoard =
                        new ScoreIndicator(score, level.levelName());
         scoreBoard.addToGame(this);
         createPaddle();
         createBall(4, Color.WHITE, level.initialBallVelocities());
+        createStorm(BallSystem.stormSize(), level.initialBallVelocities());
+        if (world == null) {
+            blockStore.addToGame(this);
+        }
         setBorders();
         HitListener blockR = new BlockRemover(this, remainingBlocks);
         HitListener sl = new ScoreTrackingListener(score);
         setBlocks(blockR, sl);
+        geometry.compile();
+    }
+
+    /**
+     * Makes the world the objects of the level are kept
+     * in, with its systems: the sprites that aren't
+     * entities, the balls that hit something, the rest
+     * of the moving entities, and the score. the world
+     * is the only sprite of the level.
+     * @param score a counter that keeps track of
+     * the score in the game.
+     */
+    private void createWorld(Counter score) {
+        world = new World();
+        adapter = new LevelAdapter(world, this);
+        world.addSystem(new SpriteSystem());
+        world.addSystem(new CollisionSystem(environment));
+        world.addSystem(new MovementSystem());
+        world.addSystem(new ScoringSystem(score, remainingBlocks));
+        world.addToGame(this);
     }
 
     /**
@@ -210,9 +283,7 @@ public class GameLevel implements Animation {
     public void createBall(int size, Color color, List<Velocity> v) {
            if (v.size() == 1) {
                Point center = new Point(GUI_WIDTH / 2, 550);
-               Ball ball = new Ball(center, size, color, environment);
-               ball.setVelocity(v.get(0));
-               ball.addToGame(this);
+               addBall(center, size, color, v.get(0));
                remainingBalls.increase(1);
            }
            if (v.size() == 10) {
@@ -221,9 +292,7 @@ public class GameLevel implements Animation {
                    int j = (i + 2) / 2;
                    Point center = new Point(GUI_WIDTH / 2 + j * sign * 40,
                                             300 + 3 * Math.pow(j, 2));
-                   Ball ball = new Ball(center, size, color, environment);
-                   ball.setVelocity(v.get(i));
-                   ball.addToGame(this);
+                   addBall(center, size, color, v.get(i));
                    remainingBalls.increase(1);
                    sign *= -1;
                    }
@@ -231,21 +300,15 @@ public class GameLevel implements Animation {
            if (v.size() == 2 || v.size() == 3) {
                Point center1 = new Point(GUI_WIDTH / 2 + 80,
                                          GUI_HEIGHT * ((float) 4 / 5));
-               Ball ball1 = new Ball(center1, size, color, environment);
-               ball1.setVelocity(v.get(0));
-               ball1.addToGame(this);
+               addBall(center1, size, color, v.get(0));
                Point center2 = new Point(GUI_WIDTH / 2 - 80,
                                GUI_HEIGHT * ((float) 4 / 5));
-               Ball ball2 = new Ball(center2, size, color, environment);
-               ball2.setVelocity(v.get(1));
-               ball2.addToGame(this);
+               addBall(center2, size, color, v.get(1));
                remainingBalls.increase(2);
                if (v.size() == 3) {
                    Point center3 = new Point(GUI_WIDTH / 2,
                                    GUI_HEIGHT * ((float) 3 / 4));
-                   Ball ball3 = new Ball(center3, size, color, environment);
-                   ball3.setVelocity(v.get(2));
-                   ball3.addToGame(this);
+                   addBall(center3, size, color, v.get(2));
                    remainingBalls.increase(1);
                }
            }
@@ -253,21 +316,100 @@ public class GameLevel implements Animation {
 
            }
 
+    /**
+     * Adds a ball to the game. with a world, and if the
+     * balls of the level don't bounce off each other,
+     * it's a ball entity, otherwise a ball object.
+     * @param center the center of the ball.
+     * @param size the radius of the ball.
+     * @param color the color of the ball.
+     * @param v the velocity of the ball.
+     */
+    private void addBall(Point center, int size, Color color, Velocity v) {
+        if (adapter != null && !level.ballCollisions()) {
+            adapter.addBall(center, size, color, v);
+            return;
+        }
+        Ball ball = new Ball(center, size, color, environment);
+        ball.setVelocity(v);
+        ball.addToGame(this);
+    }
+
+    /**
+     * Creates extra balls for testing the game with a lot
+     * of balls, kept together in one ball system. they
+     * start spread between the blocks and the paddle, in
+     * directions all around, with the speed of the first
+     * ball. with a world, they are ball entities.
+     * @param count the number of balls, 0 for none.
+     * @param v the velocities of the balls of the level.
+     */
+    private void createStorm(int count, List<Velocity> v) {
+        if (count == 0 || v.isEmpty()) {
+            return;
+        }
+        BallSystem storm = null;
+        if (adapter == null) {
+            storm = new BallSystem(Color.YELLOW, environment);
+        }
+        double speed = v.get(0).angledSpeed();
+        int columns = (int) Math.ceil(Math.sqrt(count * 3.6));
+        int rows = (count + columns - 1) / columns;
+        double width = GUI_WIDTH - 4 * BORDER_SIZE;
+        for (int i = 0; i < count; i++) {
+            double x = 2 * BORDER_SIZE + width * (i % columns + 0.5) / columns;
+            double y = STORM_TOP + STORM_HEIGHT * (i / columns + 0.5) / rows;
+            Point center = new Point(x, y);
+            Velocity sv = Velocity.fromAngleAndSpeed(i * GOLDEN_ANGLE, speed);
+            if (storm == null) {
+                adapter.addBall(center, 2, Color.YELLOW, sv);
+            } else {
+                storm.add(center, 2, sv);
+            }
+        }
+        if (storm != null) {
+            storm.addToGame(this);
+        }
+        remainingBalls.increase(count);
+    }
 
     /**
      * adds a collidable to the game's collection.
+     * blocks are merged with the blocks next to them
+     * (see StaticGeometry) when the level is initialized.
      * @param c the collidable to be added.
      */
     public void addCollidable(Collidable c) {
-       environment.addCollidable(c);
+       if (c instanceof Block) {
+           geometry.add((Block) c);
+       } else {
+           environment.addCollidable(c);
+       }
     }
 
     /**
      * adds a a sprite to the game's collection.
+     * blocks are kept in the block store, which is
+     * drawn as one sprite. with a world, the sprite
+     * is added to it as an entity.
      * @param s the sprite to be added.
      */
    public void addSprite(Sprite s) {
-       sprites.addSprite(s);
+       if (adapter != null && s != world) {
+           adapter.addSprite(s);
+       } else if (s instanceof Block) {
+           blockStore.add((Block) s);
+       } else {
+           sprites.addSprite(s);
+       }
+   }
+
+   /**
+    * Lets the enviroment know a collidable moved.
+    * @param c the collidable that moved.
+    */
+   public void updateCollidable(Collidable c) {
+       environment.updateCollidable(c);
    }
 
    /**
@@ -275,15 +417,26 @@ public class GameLevel implements Animation {
     * @param c the collidable to remove.
     */
    public void removeCollidable(Collidable c) {
-       environment.removeCollidable(c);
+       if (!geometry.remove(c)) {
+           environment.removeCollidable(c);
+       }
    }
 
    /**
-    * Removes a sprite from the sprites list.
+    * Removes a sprite from the sprites list. a
+    * block is only marked as removed in the block
+    * store, and with a world the entity of the
+    * sprite is destroyed.
     * @param s the sprite to remove.
     */
    public void removeSprite(Sprite s) {
-       sprites.removeSprite(s);
+       if (adapter != null) {
+           adapter.removeSprite(s);
+       } else if (s instanceof Block) {
+           blockStore.remove((Block) s);
+       } else {
+           sprites.removeSprite(s);
+       }
    }
 
 
@@ -301,6 +454,19 @@ public class GameLevel implements Animation {
        return remainingBalls.getValue();
    }
 
+   /**
+    * Frees the memory of the blocks of the level in
+    * one call, if they are kept in an arena, and stops
+    * the threads collisions were looked up with. the
+    * level can't be drawn after that.
+    */
+   public void close() {
+       if (arena != null) {
+           arena.close();
+       }
+       environment.setThreads(1);
+   }
+
    /**
     * Draws one frame of the game. pauses it if
     * the player presses p. if there are no more
@@ -310,6 +476,7 @@ public class GameLevel implements Animation {
     */
    public void doOneFrame(DrawSurface d) {
        this.sprites.drawAllOn(d);
+       this.environment.nextFrame();
        this.sprites.notifyAllTimePassed();
        if (this.keyboard.isPressed("p")) {
            PauseScreen ps = new PauseScreen(keyboard);
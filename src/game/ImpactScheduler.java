@@ -0,0 +1,605 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.PriorityQueue;
+
+import ball.Ball;
+import collision.Collidable;
+import collision.CollisionInfo;
+import collision.Kinematic;
+import collision.RayBatch;
+import geometry.Rectangle;
+
+/**
+ * Keeps the next impact of every ball, so a ball
+ * that flies freely doesn't look for collisions
+ * every frame. the path of a ball is checked once
+ * for a number of frames ahead, and the frame it
+ * will hit something in is kept in a priority queue.
+ * until that frame, the ball just moves by its
+ * velocity. the impact is dropped earlier if a
+ * collidable is added, removed or moved near the
+ * path of the ball (like the block it was about to
+ * hit being removed, or the paddle moving in its way).
+ * the impacts are kept by the collidable they hit,
+ * since removing any other collidable can't change
+ * them, and every moving collidable keeps the impacts
+ * whose paths are near the area around it, so when it
+ * moves only those are checked.
+ * when the first ball of a frame moves (after the
+ * paddle did), the first collisions of all the balls
+ * that are due are looked up together in one batch,
+ * and kept until each ball moves (with the same rules
+ * for dropping them).
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class ImpactScheduler {
+
+    public static final int DEFAULT_HORIZON = 120;
+    public static final double REACH = 100.0;
+    private static final double MARGIN = Math.pow(10.0, -6.0);
+    private static final int PRUNE_SIZE = 8;
+
+    private GameEnvironment environment;
+    private int horizon;
+    private int frame;
+    private PriorityQueue<Impact> queue;
+    private Map<Ball, Impact> impacts;
+    private Map<Collidable, Area> moving;
+    private Map<Collidable, List<Impact>> byTarget;
+    private Set<Ball> balls;
+    private Map<Ball, Impact> firstHits;
+    private RayBatch batch;
+    private boolean batchDone;
+
+    /**
+     * A constructor for a scheduler that looks the
+     * default number of frames ahead.
+     * @param environment the environment of the balls.
+     */
+    public ImpactScheduler(GameEnvironment environment) {
+        this(environment, DEFAULT_HORIZON);
+    }
+
+    /**
+     * A constructor for a scheduler that looks a given
+     * number of frames ahead. if it's not a positive
+     * number, uses the default.
+     * @param environment the environment of the balls.
+     * @param horizon the number of frames to look ahead.
+     */
+    public ImpactScheduler(GameEnvironment environment, int horizon) {
+        this.environment = environment;
+        if (horizon > 0) {
+            this.horizon = horizon;
+        } else {
+            this.horizon = DEFAULT_HORIZON;
+        }
+        queue = new PriorityQueue<Impact>();
+        impacts = new HashMap<Ball, Impact>();
+        moving = new HashMap<Collidable, Area>();
+        byTarget = new HashMap<Collidable, List<Impact>>();
+        balls = new LinkedHashSet<Ball>();
+        firstHits = new HashMap<Ball, Impact>();
+        batch = new RayBatch();
+    }
+
+    /**
+     * Moves to the next frame. impacts that are due in
+     * it are dropped, so their balls will look for
+     * collisions again.
+     */
+    public void nextFrame() {
+        frame++;
+        while (!queue.isEmpty() && queue.peek().frame <= frame) {
+            Impact impact = queue.poll();
+            if (impacts.get(impact.ball) == impact) {
+                impacts.remove(impact.ball);
+            }
+        }
+        firstHits.clear();
+        batchDone = false;
+    }
+
+    /**
+     * Looks up the first collisions of all the balls
+     * that are due in this frame, in one batch.
+     */
+    private void lookUpFirstHits() {
+        batchDone = true;
+        batch.clear();
+        for (Ball ball : balls) {
+            if (!impacts.containsKey(ball)) {
+                batch.add(ball.getX(), ball.getY(), ball.getVelocity().getDx(),
+                          ball.getVelocity().getDy(), ball.getSize(), 1);
+            }
+        }
+        if (batch.size() == 0) {
+            return;
+        }
+        environment.getClosestCollisions(batch);
+        int i = 0;
+        for (Ball ball : balls) {
+            if (!impacts.containsKey(ball)) {
+                Impact first = new Impact(ball, frame);
+                first.hit = batch.result(i++);
+                first.setPath(ball.getX(), ball.getY(),
+                              ball.getVelocity().getDx(),
+                              ball.getVelocity().getDy(),
+                              ball.getSize() + MARGIN);
+                firstHits.put(ball, first);
+                index(first);
+            }
+        }
+    }
+
+    /**
+     * Checks if the first collision of a ball in this
+     * frame was looked up in the batch and is still
+     * right.
+     * @param ball the ball.
+     * @return true if it was looked up.
+     */
+    public boolean hasFirstHit(Ball ball) {
+        checkMoving();
+        if (!batchDone) {
+            lookUpFirstHits();
+        }
+        return firstHits.containsKey(ball);
+    }
+
+    /**
+     * Returns the first collision of a ball in this
+     * frame that was looked up in the batch, and drops
+     * it, since the ball is about to move.
+     * @param ball the ball.
+     * @return the collision information, or null if the
+     * ball doesn't hit anything this frame.
+     */
+    public CollisionInfo takeFirstHit(Ball ball) {
+        return firstHits.remove(ball).hit;
+    }
+
+    /**
+     * Checks if a ball needs to look for collisions
+     * in this frame, meaning it has no impact kept,
+     * or its impact is due or was dropped.
+     * @param ball the ball.
+     * @return true if the ball should look for
+     * collisions, false if it can just move.
+     */
+    public boolean isDue(Ball ball) {
+        checkMoving();
+        return !impacts.containsKey(ball);
+    }
+
+    /**
+     * Finds the next impact of a ball, looking ahead
+     * the number of frames of the scheduler, and keeps
+     * it. the ball will be due a frame early, so an
+     * impact right on the end of a frame isn't missed.
+     * @param ball the ball.
+     */
+    public void schedule(Ball ball) {
+        double x = ball.getX();
+        double y = ball.getY();
+        double dx = ball.getVelocity().getDx() * horizon;
+        double dy = ball.getVelocity().getDy() * horizon;
+        CollisionInfo ci = environment.getClosestCollision(x, y, dx, dy,
+                                                           ball.getSize(), 0);
+        double time = 1;
+        if (ci != null) {
+            time = ci.time();
+        }
+        Impact impact = new Impact(ball, frame
+                                   + Math.max(1, (int) (time * horizon)));
+        impact.hit = ci;
+        impact.setPath(x, y, dx * time, dy * time, ball.getSize() + MARGIN);
+        impacts.put(ball, impact);
+        queue.add(impact);
+        index(impact);
+    }
+
+    /**
+     * Drops the impact of a ball, so it will look for
+     * collisions in its next move.
+     * @param ball the ball.
+     */
+    public void cancel(Ball ball) {
+        impacts.remove(ball);
+        firstHits.remove(ball);
+    }
+
+    /**
+     * Starts looking up the first collisions of a ball
+     * in the batch of every frame.
+     * @param ball the ball.
+     */
+    public void track(Ball ball) {
+        balls.add(ball);
+    }
+
+    /**
+     * Drops everything kept for a ball that left
+     * the game.
+     * @param ball the ball.
+     */
+    public void forget(Ball ball) {
+        cancel(ball);
+        balls.remove(ball);
+    }
+
+    /**
+     * Lets the scheduler know a collidable was added.
+     * collidables that are not blocks (the paddle) can
+     * move, so they get an area whose impacts they keep,
+     * and their bounds are checked for moving on every
+     * frame.
+     * @param c the collidable.
+     */
+    public void collidableAdded(Collidable c) {
+        Rectangle rect = c.getCollisionRectangle();
+        double left = rect.getX();
+        double top = rect.getY();
+        double right = left + rect.getWidth();
+        double bottom = top + rect.getHeight();
+        invalidate(impacts, left, top, right, bottom);
+        invalidate(firstHits, left, top, right, bottom);
+        if (c.getCollisionBlock() == null) {
+            Area area = new Area(rect);
+            moving.put(c, area);
+            area.surround(left, top, right, bottom);
+            gather(area);
+        }
+    }
+
+    /**
+     * Lets the scheduler know a collidable was removed.
+     * only the impacts with it are dropped, since without
+     * it the balls can't hit anything sooner.
+     * @param c the collidable.
+     */
+    public void collidableRemoved(Collidable c) {
+        moving.remove(c);
+        dropTargetsOf(c);
+    }
+
+    /**
+     * Lets the scheduler know the collision rectangle
+     * of a collidable has changed. for a kinematic
+     * collidable, the whole area it swept in this frame
+     * is checked. the impacts with it are dropped too,
+     * since it might have moved out of their way.
+     * @param c the collidable.
+     */
+    public void collidableUpdated(Collidable c) {
+        Rectangle rect = c.getCollisionRectangle();
+        double left = rect.getX();
+        double top = rect.getY();
+        double right = left + rect.getWidth();
+        double bottom = top + rect.getHeight();
+        if (c instanceof Kinematic) {
+            Kinematic k = (Kinematic) c;
+            left = Math.min(left, left - k.getDx());
+            top = Math.min(top, top - k.getDy());
+            right = Math.max(right, right - k.getDx());
+            bottom = Math.max(bottom, bottom - k.getDy());
+        }
+        dropTargetsOf(c);
+        Area area = moving.get(c);
+        if (area == null) {
+            invalidate(impacts, left, top, right, bottom);
+            invalidate(firstHits, left, top, right, bottom);
+            return;
+        }
+        area.remember(rect);
+        if (!area.holds(left, top, right, bottom)) {
+            area.surround(left, top, right, bottom);
+            invalidate(impacts, left, top, right, bottom);
+            invalidate(firstHits, left, top, right, bottom);
+            gather(area);
+            return;
+        }
+        int kept = 0;
+        List<Impact> near = area.near;
+        for (int i = 0; i < near.size(); i++) {
+            Impact impact = near.get(i);
+            if (!isKept(impact)) {
+                continue;
+            }
+            if (impact.overlaps(left, top, right, bottom)) {
+                drop(impact);
+            } else {
+                near.set(kept++, impact);
+            }
+        }
+        near.subList(kept, near.size()).clear();
+    }
+
+    /**
+     * Checks the bounds of the moving collidables, and
+     * handles the ones that moved since the last check
+     * without letting the scheduler know.
+     */
+    private void checkMoving() {
+        if (moving.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<Collidable, Area> e : moving.entrySet()) {
+            if (e.getValue().moved(e.getKey().getCollisionRectangle())) {
+                collidableUpdated(e.getKey());
+            }
+        }
+    }
+
+    /**
+     * Keeps an impact by the collidable it hits, and in
+     * the areas of the moving collidables its path goes
+     * near.
+     * @param impact the impact.
+     */
+    private void index(Impact impact) {
+        if (impact.hit != null) {
+            Collidable target = impact.hit.collisionObject();
+            List<Impact> list = byTarget.get(target);
+            if (list == null) {
+                list = new ArrayList<Impact>();
+                byTarget.put(target, list);
+            }
+            add(list, impact);
+        }
+        for (Area area : moving.values()) {
+            if (impact.overlaps(area.minX, area.minY, area.maxX, area.maxY)) {
+                add(area.near, impact);
+            }
+        }
+    }
+
+    /**
+     * Adds an impact to a list of them. the impacts that
+     * were dropped are taken out of the list first when
+     * it gets long, so lists don't grow for ever.
+     * @param list the list.
+     * @param impact the impact.
+     */
+    private void add(List<Impact> list, Impact impact) {
+        if (list.size() >= PRUNE_SIZE && Integer.bitCount(list.size()) == 1) {
+            list.removeIf(i -> !isKept(i));
+        }
+        list.add(impact);
+    }
+
+    /**
+     * Fills the impacts of the area of a moving collidable
+     * again, out of all the kept impacts.
+     * @param area the area.
+     */
+    private void gather(Area area) {
+        area.near.clear();
+        for (Impact impact : impacts.values()) {
+            if (impact.overlaps(area.minX, area.minY, area.maxX, area.maxY)) {
+                area.near.add(impact);
+            }
+        }
+        for (Impact impact : firstHits.values()) {
+            if (impact.overlaps(area.minX, area.minY, area.maxX, area.maxY)) {
+                area.near.add(impact);
+            }
+        }
+    }
+
+    /**
+     * Drops the impacts and first collisions with a
+     * collidable.
+     * @param c the collidable.
+     */
+    private void dropTargetsOf(Collidable c) {
+        List<Impact> list = byTarget.remove(c);
+        if (list == null) {
+            return;
+        }
+        for (Impact impact : list) {
+            if (isKept(impact)) {
+                drop(impact);
+            }
+        }
+    }
+
+    /**
+     * Checks if an impact is still the one kept for its
+     * ball, as an impact or as a first collision.
+     * @param impact the impact.
+     * @return true if it's kept.
+     */
+    private boolean isKept(Impact impact) {
+        return impacts.get(impact.ball) == impact
+               || firstHits.get(impact.ball) == impact;
+    }
+
+    /**
+     * Drops an impact that is kept.
+     * @param impact the impact.
+     */
+    private void drop(Impact impact) {
+        if (impacts.get(impact.ball) == impact) {
+            impacts.remove(impact.ball);
+        } else {
+            firstHits.remove(impact.ball);
+        }
+    }
+
+    /**
+     * Drops the impacts in a map whose path goes near
+     * a box.
+     * @param kept the map of impacts.
+     * @param left the left side of the box.
+     * @param top the top side of the box.
+     * @param right the right side of the box.
+     * @param bottom the bottom side of the box.
+     */
+    private static void invalidate(Map<Ball, Impact> kept, double left,
+                                   double top, double right, double bottom) {
+        if (kept.isEmpty()) {
+            return;
+        }
+        Iterator<Impact> it = kept.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().overlaps(left, top, right, bottom)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * The area around a moving collidable, and the
+     * impacts whose paths go near it. while the
+     * collidable moves inside the area only they are
+     * checked, and when it leaves the area, the area is
+     * moved around it and its impacts are found again.
+     * the bounds the collidable had when it was last
+     * checked are kept too, to see if it moved.
+     */
+    private static class Area {
+        private double minX;
+        private double minY;
+        private double maxX;
+        private double maxY;
+        private double[] bounds;
+        private List<Impact> near;
+
+        /**
+         * A constructor.
+         * @param rect the collision rectangle of the
+         * collidable.
+         */
+        Area(Rectangle rect) {
+            bounds = new double[4];
+            near = new ArrayList<Impact>();
+            remember(rect);
+        }
+
+        /**
+         * Keeps the bounds of the collidable.
+         * @param rect the collision rectangle.
+         */
+        void remember(Rectangle rect) {
+            bounds[0] = rect.getX();
+            bounds[1] = rect.getY();
+            bounds[2] = rect.getWidth();
+            bounds[3] = rect.getHeight();
+        }
+
+        /**
+         * Checks if the collidable moved since its
+         * bounds were kept.
+         * @param rect the collision rectangle now.
+         * @return true if its bounds changed.
+         */
+        boolean moved(Rectangle rect) {
+            return bounds[0] != rect.getX() || bounds[1] != rect.getY()
+                   || bounds[2] != rect.getWidth()
+                   || bounds[3] != rect.getHeight();
+        }
+
+        /**
+         * Checks if a box is inside the area.
+         * @param left the left side of the box.
+         * @param top the top side of the box.
+         * @param right the right side of the box.
+         * @param bottom the bottom side of the box.
+         * @return true if it's inside.
+         */
+        boolean holds(double left, double top, double right, double bottom) {
+            return left >= minX && top >= minY && right <= maxX
+                   && bottom <= maxY;
+        }
+
+        /**
+         * Sets the area to a box grown by the reach.
+         * @param left the left side of the box.
+         * @param top the top side of the box.
+         * @param right the right side of the box.
+         * @param bottom the bottom side of the box.
+         */
+        void surround(double left, double top, double right, double bottom) {
+            minX = left - REACH;
+            minY = top - REACH;
+            maxX = right + REACH;
+            maxY = bottom + REACH;
+        }
+    }
+
+    /**
+     * The next impact of a ball: the frame it's due
+     * in, the box around the path of the ball until
+     * then, and the collision that was found (null if
+     * it doesn't hit anything). impacts are ordered by
+     * their frame.
+     */
+    private static class Impact implements Comparable<Impact> {
+        private Ball ball;
+        private int frame;
+        private CollisionInfo hit;
+        private double minX;
+        private double minY;
+        private double maxX;
+        private double maxY;
+
+        /**
+         * A constructor.
+         * @param ball the ball.
+         * @param frame the frame the impact is due in.
+         */
+        Impact(Ball ball, int frame) {
+            this.ball = ball;
+            this.frame = frame;
+        }
+
+        /**
+         * Sets the box around the path of the ball.
+         * @param x the x value of the path start.
+         * @param y the y value of the path start.
+         * @param dx the horizontal change of the path.
+         * @param dy the vertical change of the path.
+         * @param pad how much to grow the box by.
+         */
+        void setPath(double x, double y, double dx, double dy, double pad) {
+            minX = Math.min(x, x + dx) - pad;
+            maxX = Math.max(x, x + dx) + pad;
+            minY = Math.min(y, y + dy) - pad;
+            maxY = Math.max(y, y + dy) + pad;
+        }
+
+        /**
+         * Checks if the box around the path overlaps
+         * another box.
+         * @param left the left side of the other box.
+         * @param top the top side of the other box.
+         * @param right the right side of the other box.
+         * @param bottom the bottom side of the other box.
+         * @return true if they overlap.
+         */
+        boolean overlaps(double left, double top, double right,
+                         double bottom) {
+            return minX <= right && maxX >= left && minY <= bottom
+                   && maxY >= top;
+        }
+
+        /**
+         * Compares the frames of two impacts.
+         * @param other the other impact.
+         * @return negative if this impact is due first.
+         */
+        public int compareTo(Impact other) {
+            return Integer.compare(frame, other.frame);
+        }
+    }
+}
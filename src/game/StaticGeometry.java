@@ -0,0 +1,285 @@
+package game;
+
+import blocks.Block;
+import blocks.BlockSpan;
+import collision.Collidable;
+import geometry.Point;
+import geometry.Rectangle;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the blocks of a level that don't move into
+ * bigger spans before the level starts, so the balls
+ * have fewer collidables to check, and don't hit the
+ * edges blocks share as corners. blocks with the same
+ * top and height that touch side by side are merged
+ * into rows, and rows with the same sides that touch
+ * one on top of the other are merged too. a block
+ * that isn't merged with any other is added as it is.
+ * a span has at most MAX_SPAN_BLOCKS blocks, so when a
+ * block of a span is removed, merging that span again
+ * from the blocks it has left doesn't take long.
+ * merging can be turned off, for an index that wants
+ * the blocks as they are (see TileMapIndex).
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class StaticGeometry {
+
+    public static final int MAX_SPAN_BLOCKS = 64;
+
+    private GameEnvironment environment;
+    private List<Block> pending;
+    private Map<Block, Collidable> owners;
+    private boolean compiled;
+    private boolean merging;
+
+    /**
+     * A constructor for the static geometry of an
+     * environment, with no blocks yet.
+     * @param environment the environment the blocks
+     * and spans are added to.
+     */
+    public StaticGeometry(GameEnvironment environment) {
+        this.environment = environment;
+        pending = new ArrayList<Block>();
+        owners = new HashMap<Block, Collidable>();
+        merging = true;
+    }
+
+    /**
+     * Turns merging blocks into spans on or off. when
+     * it's off, every block is added as it is, in the
+     * order it was added here.
+     * @param merging true to merge the blocks.
+     */
+    public void setMerging(boolean merging) {
+        this.merging = merging;
+    }
+
+    /**
+     * Adds a block. before compile it's only remembered,
+     * afterwards it's added to the environment as it is.
+     * @param block the block.
+     */
+    public void add(Block block) {
+        if (compiled) {
+            addAll(List.of(block));
+        } else {
+            pending.add(block);
+        }
+    }
+
+    /**
+     * Merges the blocks added so far and adds the spans
+     * to the environment.
+     */
+    public void compile() {
+        compiled = true;
+        addAll(pending);
+        pending.clear();
+    }
+
+    /**
+     * Removes a block. if it's part of a span, the span
+     * is taken out of the environment and the rest of
+     * its blocks are merged again.
+     * @param c the collidable to remove.
+     * @return true if it was one of the blocks here.
+     */
+    public boolean remove(Collidable c) {
+        if (!compiled) {
+            return pending.remove(c);
+        }
+        Collidable owner = owners.remove(c);
+        if (owner == null) {
+            return false;
+        }
+        environment.removeCollidable(owner);
+        if (owner instanceof BlockSpan) {
+            List<Block> rest = new ArrayList<Block>();
+            for (Block b : ((BlockSpan) owner).getBlocks()) {
+                if (b != c) {
+                    rest.add(b);
+                }
+            }
+            addAll(rest);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of collidables the blocks
+     * are kept as in the environment.
+     * @return the number of spans and single blocks.
+     */
+    public int size() {
+        return new HashSet<Collidable>(owners.values()).size();
+    }
+
+    /**
+     * Merges blocks and adds the spans to the environment.
+     * @param blocks the blocks.
+     */
+    private void addAll(List<Block> blocks) {
+        if (!merging) {
+            for (Block b : blocks) {
+                environment.addCollidable(b);
+                owners.put(b, b);
+            }
+            return;
+        }
+        for (Row group : merge(blocks)) {
+            Collidable owner = group.blocks.get(0);
+            if (group.blocks.size() > 1) {
+                owner = new BlockSpan(group.bounds(), group.blocks);
+            }
+            environment.addCollidable(owner);
+            for (Block b : group.blocks) {
+                owners.put(b, owner);
+            }
+        }
+    }
+
+    /**
+     * Splits blocks into groups that cover a rectangle
+     * together: first into rows of blocks side by side,
+     * and then rows that cover the same columns and touch
+     * are put together, as long as the groups don't get
+     * bigger than MAX_SPAN_BLOCKS.
+     * @param blocks the blocks.
+     * @return the groups.
+     */
+    private static List<Row> merge(List<Block> blocks) {
+        List<Block> sorted = new ArrayList<Block>(blocks);
+        sorted.sort(Comparator.comparingDouble((Block b) -> rect(b).getY())
+                              .thenComparingDouble(b -> rect(b).getHeight())
+                              .thenComparingDouble(b -> rect(b).getX()));
+        List<Row> rows = new ArrayList<Row>();
+        Row row = null;
+        for (Block b : sorted) {
+            if (row != null && row.blocks.size() < MAX_SPAN_BLOCKS
+                && sideBySide(row.blocks.get(row.blocks.size() - 1), b)) {
+                row.add(b);
+            } else {
+                row = new Row(b);
+                rows.add(row);
+            }
+        }
+        rows.sort(Comparator.comparingDouble((Row r) -> r.left)
+                            .thenComparingDouble(r -> r.right)
+                            .thenComparingDouble(r -> r.top));
+        List<Row> groups = new ArrayList<Row>();
+        Row group = null;
+        for (Row r : rows) {
+            if (group != null && group.canTake(r)) {
+                group.take(r);
+            } else {
+                group = r;
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Checks if a block starts where another one ends,
+     * with the same top and height.
+     * @param a the block on the left.
+     * @param b the block on the right.
+     * @return true if they are side by side.
+     */
+    private static boolean sideBySide(Block a, Block b) {
+        Rectangle ra = rect(a);
+        Rectangle rb = rect(b);
+        return Point.cmpDoubles(ra.getY(), rb.getY())
+               && Point.cmpDoubles(ra.getHeight(), rb.getHeight())
+               && Point.cmpDoubles(ra.getX() + ra.getWidth(), rb.getX());
+    }
+
+    /**
+     * Returns the collision rectangle of a block.
+     * @param b the block.
+     * @return the rectangle.
+     */
+    private static Rectangle rect(Block b) {
+        return b.getCollisionRectangle();
+    }
+
+    /**
+     * Blocks that cover a rectangle together (a row of
+     * blocks side by side, or rows on top of each other),
+     * with the sides of the rectangle, kept as blocks are
+     * added so they are not found again on every compare.
+     */
+    private static class Row {
+        private List<Block> blocks;
+        private double left;
+        private double right;
+        private double top;
+        private double bottom;
+
+        /**
+         * A constructor for a row of one block.
+         * @param first the block.
+         */
+        Row(Block first) {
+            blocks = new ArrayList<Block>();
+            Rectangle r = rect(first);
+            left = r.getX();
+            right = r.getX() + r.getWidth();
+            top = r.getY();
+            bottom = r.getY() + r.getHeight();
+            blocks.add(first);
+        }
+
+        /**
+         * Adds a block on the right of the row.
+         * @param b the block.
+         */
+        void add(Block b) {
+            Rectangle r = rect(b);
+            right = Math.max(right, r.getX() + r.getWidth());
+            blocks.add(b);
+        }
+
+        /**
+         * Checks if a row covers the same columns and
+         * starts where this one ends, and the two together
+         * aren't too big for a span.
+         * @param other the row under this one.
+         * @return true if it can be added.
+         */
+        boolean canTake(Row other) {
+            return blocks.size() + other.blocks.size() <= MAX_SPAN_BLOCKS
+                   && Point.cmpDoubles(left, other.left)
+                   && Point.cmpDoubles(right, other.right)
+                   && Point.cmpDoubles(bottom, other.top);
+        }
+
+        /**
+         * Adds the blocks of the row under this one.
+         * @param other the row.
+         */
+        void take(Row other) {
+            blocks.addAll(other.blocks);
+            bottom = Math.max(bottom, other.bottom);
+        }
+
+        /**
+         * Returns the rectangle the blocks cover.
+         * @return the rectangle.
+         */
+        Rectangle bounds() {
+            return new Rectangle(new Point(left, top), right - left,
+                                 bottom - top);
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ball.Ball;
+import ball.Velocity;
+import collision.Collidable;
+import collision.CollisionInfo;
+import geometry.Point;
+import geometry.Rectangle;
+
+/**
+ * Predicts the paths of balls a number of bounces
+ * ahead, with the same rules balls bounce by (see
+ * Collidable.predictHit), for things like a paddle
+ * that moves by itself or a line that shows where a
+ * ball is going. the path of every ball is kept as a
+ * list of points, where it hits something, and is
+ * only looked up again from where it stops being
+ * right: while the ball flies along it, only the part
+ * it passed is dropped and bounces are added at the
+ * end, and when a collidable is added, removed or
+ * moved, the path is cut before the first segment
+ * it could change. a path ends when it gets to the
+ * landing height (the top of the paddle) going down,
+ * and that point is kept, so asking where a ball
+ * lands doesn't look anything up if the path is
+ * still right.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class TrajectoryPredictor {
+
+    public static final double REACH = 4096;
+    private static final double TOLERANCE = Math.pow(10.0, -6.0);
+
+    private GameEnvironment environment;
+    private int bounces;
+    private double landingY;
+    private Map<Ball, Path> paths;
+    private int casts;
+
+    /**
+     * A constructor for a predictor with no paths yet.
+     * @param environment the environment of the balls.
+     * @param bounces the number of bounces to look ahead.
+     * @param landingY the height balls land at.
+     */
+    public TrajectoryPredictor(GameEnvironment environment, int bounces,
+                               double landingY) {
+        this.environment = environment;
+        this.bounces = Math.max(1, bounces);
+        this.landingY = landingY;
+        paths = new LinkedHashMap<Ball, Path>();
+    }
+
+    /**
+     * Returns the predicted path of a ball, from where
+     * it is now: the places of its center where it hits
+     * something, and where it lands if it does in the
+     * bounces looked ahead.
+     * @param ball the ball.
+     * @return the points of the path, the first one is
+     * where the ball is.
+     */
+    public List<Point> getPath(Ball ball) {
+        Path path = refresh(ball);
+        List<Point> points = new ArrayList<Point>(path.count);
+        for (int i = 0; i < path.count; i++) {
+            points.add(new Point(path.x[i], path.y[i]));
+        }
+        return points;
+    }
+
+    /**
+     * Returns where a ball lands, meaning where its
+     * center is when it gets to the landing height.
+     * @param ball the ball.
+     * @return the landing point, or null if the ball
+     * doesn't land in the bounces looked ahead.
+     */
+    public Point getLanding(Ball ball) {
+        Path path = paths.get(ball);
+
+        // a whole path that the ball still flies the first
+        // segment of is right, and so is where it ends.
+        if (path == null || path.open || !path.on(0, ball)) {
+            path = refresh(ball);
+        }
+        if (!path.landed) {
+            return null;
+        }
+        return new Point(path.x[path.count - 1], path.y[path.count - 1]);
+    }
+
+    /**
+     * Returns the number of segments looked up since
+     * the predictor was made.
+     * @return the number of casts.
+     */
+    public int getCasts() {
+        return casts;
+    }
+
+    /**
+     * Drops the path of a ball that left the game.
+     * @param ball the ball.
+     */
+    public void forget(Ball ball) {
+        paths.remove(ball);
+    }
+
+    /**
+     * Lets the predictor know a collidable was added.
+     * @param c the collidable.
+     */
+    public void collidableAdded(Collidable c) {
+        invalidate(c);
+    }
+
+    /**
+     * Lets the predictor know a collidable was removed.
+     * @param c the collidable.
+     */
+    public void collidableRemoved(Collidable c) {
+        invalidate(c);
+    }
+
+    /**
+     * Lets the predictor know the collision rectangle
+     * of a collidable has changed. segments that hit it
+     * where it was, or that would hit it where it is
+     * now, are looked up again.
+     * @param c the collidable.
+     */
+    public void collidableUpdated(Collidable c) {
+        invalidate(c);
+    }
+
+    /**
+     * Cuts the paths before the first segment that hits
+     * a collidable, or would hit it where it is now.
+     * @param c the collidable.
+     */
+    private void invalidate(Collidable c) {
+        Rectangle rect = c.getCollisionRectangle();
+        for (Path path : paths.values()) {
+            for (int i = 0; i + 1 < path.count; i++) {
+                if (path.hits[i + 1] == c || crosses(path, i, rect)) {
+                    path.cut(i);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if the ball would touch a rectangle on a
+     * segment of a path. a segment that ends with a hit
+     * counts touching at its end, since the rectangle
+     * could make it a corner, and the landing segment
+     * doesn't.
+     * @param path the path.
+     * @param i the place of the segment.
+     * @param rect the rectangle.
+     * @return true if the segment could change.
+     */
+    private static boolean crosses(Path path, int i, Rectangle rect) {
+        double dx = path.x[i + 1] - path.x[i];
+        double dy = path.y[i + 1] - path.y[i];
+        if (path.hits[i + 1] != null) {
+            double t = rect.collisionTime(path.x[i], path.y[i],
+                                          dx * (1 + TOLERANCE),
+                                          dy * (1 + TOLERANCE), path.radius);
+            return t != Rectangle.NO_INTERSECTION;
+        }
+        double t = rect.collisionTime(path.x[i], path.y[i], dx, dy,
+                                      path.radius);
+        return t != Rectangle.NO_INTERSECTION && t < 1 - TOLERANCE;
+    }
+
+    /**
+     * Brings the path of a ball up to date: the part
+     * the ball passed is dropped, or the path starts
+     * over if the ball left it, and bounces are looked
+     * up until it has enough of them or lands.
+     * @param ball the ball.
+     * @return the path.
+     */
+    private Path refresh(Ball ball) {
+        Path path = paths.get(ball);
+        if (path == null) {
+            path = new Path(ball.getSize());
+            paths.put(ball, path);
+        }
+        int at = path.find(ball);
+        if (at < 0) {
+            path.restart(ball);
+        } else {
+            path.drop(at);
+            path.x[0] = ball.getX();
+            path.y[0] = ball.getY();
+        }
+        while (path.open && path.count - 1 < bounces) {
+            extend(path);
+        }
+        return path;
+    }
+
+    /**
+     * Looks up the next segment of a path, from its
+     * last point: where the ball hits something, and
+     * how it bounces, or where it lands.
+     * @param path the path.
+     */
+    private void extend(Path path) {
+        int last = path.count - 1;
+        double x = path.x[last];
+        double y = path.y[last];
+        double vx = path.vx[last];
+        double vy = path.vy[last];
+        double speed = Math.sqrt(vx * vx + vy * vy);
+        if (speed == 0) {
+            path.open = false;
+            return;
+        }
+        double dx = vx * REACH / speed;
+        double dy = vy * REACH / speed;
+        casts++;
+        CollisionInfo ci = environment.getClosestCollision(x, y, dx, dy,
+                                                           path.radius, 0);
+        double land = Rectangle.NO_INTERSECTION;
+        double floor = landingY - path.radius;
+        if (dy > 0 && y < floor) {
+            land = (floor - y) / dy;
+        }
+        if (land != Rectangle.NO_INTERSECTION && land <= 1
+            && (ci == null || ci.time() >= land)) {
+            path.add(x + dx * land, floor, vx, vy, null);
+            path.landed = true;
+            path.open = false;
+            return;
+        }
+        if (ci == null) {
+            path.open = false;
+            return;
+        }
+        Collidable c = ci.collisionObject();
+        Velocity v = c.predictHit(environment, ci, new Velocity(vx, vy));
+        path.add(x + dx * ci.time(), y + dy * ci.time(), v.getDx(),
+                 v.getDy(), c);
+    }
+
+    /**
+     * The predicted path of a ball: the points where
+     * its center hits something, the velocity it leaves
+     * every point with, and what it hit there.
+     */
+    private static class Path {
+
+        private double radius;
+        private double[] x;
+        private double[] y;
+        private double[] vx;
+        private double[] vy;
+        private Collidable[] hits;
+        private int count;
+        private boolean open;
+        private boolean landed;
+
+        /**
+         * A constructor for an empty path.
+         * @param radius the radius of the ball.
+         */
+        Path(double radius) {
+            this.radius = radius;
+            x = new double[8];
+            y = new double[8];
+            vx = new double[8];
+            vy = new double[8];
+            hits = new Collidable[8];
+        }
+
+        /**
+         * Starts the path over from where a ball is now.
+         * @param ball the ball.
+         */
+        void restart(Ball ball) {
+            Arrays.fill(hits, null);
+            count = 0;
+            add(ball.getX(), ball.getY(), ball.getVelocity().getDx(),
+                ball.getVelocity().getDy(), null);
+            open = true;
+            landed = false;
+        }
+
+        /**
+         * Adds a point to the end of the path.
+         * @param px the x value of the point.
+         * @param py the y value of the point.
+         * @param pvx the horizontal velocity leaving it.
+         * @param pvy the vertical velocity leaving it.
+         * @param hit what was hit there, or null.
+         */
+        void add(double px, double py, double pvx, double pvy,
+                 Collidable hit) {
+            if (count == x.length) {
+                x = Arrays.copyOf(x, count * 2);
+                y = Arrays.copyOf(y, count * 2);
+                vx = Arrays.copyOf(vx, count * 2);
+                vy = Arrays.copyOf(vy, count * 2);
+                hits = Arrays.copyOf(hits, count * 2);
+            }
+            x[count] = px;
+            y[count] = py;
+            vx[count] = pvx;
+            vy[count] = pvy;
+            hits[count] = hit;
+            count++;
+        }
+
+        /**
+         * Finds the segment a ball is flying along: it
+         * has the velocity of the segment, and its center
+         * is on it (or on the line going on from the last
+         * point, which has no segment yet, unless it's
+         * where the ball lands).
+         * @param ball the ball.
+         * @return the place of the segment, or -1 if the
+         * ball left the path.
+         */
+        int find(Ball ball) {
+            int ends = count;
+            if (landed) {
+                ends--;
+            }
+            for (int i = 0; i < ends; i++) {
+                if (on(i, ball)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Checks if a ball is flying along a segment: it
+         * has the velocity of the segment, and its center
+         * is on it (or on the line going on from the last
+         * point, if the segment is the last one).
+         * @param i the place of the segment.
+         * @param ball the ball.
+         * @return true if the ball is on the segment.
+         */
+        boolean on(int i, Ball ball) {
+            Velocity v = ball.getVelocity();
+            if (i >= count || !Point.cmpDoubles(vx[i], v.getDx())
+                || !Point.cmpDoubles(vy[i], v.getDy())) {
+                return false;
+            }
+            double bx = ball.getX();
+            double by = ball.getY();
+            double dx = vx[i];
+            double dy = vy[i];
+            if (i + 1 < count) {
+                dx = x[i + 1] - x[i];
+                dy = y[i + 1] - y[i];
+            }
+            double lengthSq = dx * dx + dy * dy;
+            if (lengthSq == 0) {
+                return Point.cmpDoubles(bx, x[i])
+                       && Point.cmpDoubles(by, y[i]);
+            }
+            double s = ((bx - x[i]) * dx + (by - y[i]) * dy) / lengthSq;
+            double off = ((bx - x[i]) * dy - (by - y[i]) * dx)
+                         / Math.sqrt(lengthSq);
+            boolean inside = s >= -TOLERANCE
+                             && (i + 1 == count || s <= 1 + TOLERANCE);
+            return inside && Math.abs(off) <= TOLERANCE;
+        }
+
+        /**
+         * Drops the points before a segment.
+         * @param first the place of the segment.
+         */
+        void drop(int first) {
+            if (first == 0) {
+                return;
+            }
+            count -= first;
+            System.arraycopy(x, first, x, 0, count);
+            System.arraycopy(y, first, y, 0, count);
+            System.arraycopy(vx, first, vx, 0, count);
+            System.arraycopy(vy, first, vy, 0, count);
+            System.arraycopy(hits, first, hits, 0, count);
+            Arrays.fill(hits, count, count + first, null);
+        }
+
+        /**
+         * Cuts the path after the start of a segment, so
+         * it's looked up again from there.
+         * @param last the place of the segment.
+         */
+        void cut(int last) {
+            Arrays.fill(hits, last + 1, count, null);
+            count = last + 1;
+            open = true;
+            landed = false;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package general;
+
+import blocks.Block;
+import blocks.BlockArena;
+import blocks.BlockStore;
+import geometry.Point;
+import geometry.Rectangle;
+
+import java.awt.Color;
+
+/**
+ * Measures how much heap a block takes, by making a
+ * lot of blocks on a grid (like a generated stress
+ * level) and checking the used memory before and
+ * after. prints the bytes per rectangle and the bytes
+ * per block (the rectangle included), the bytes per
+ * block object added to a block store (the way levels
+ * add their blocks), and the bytes per block kept
+ * only in the columns of a block store, on the heap
+ * and in a block arena (off the
+ * heap if the jvm was run with --add-modules
+ * jdk.incubator.foreign). the number of
+ * blocks can be given as the first argument.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class FootprintReport {
+
+    public static final int DEFAULT_COUNT = 1000000;
+    private static final int COLUMNS = 1000;
+    private static final double BLOCK_WIDTH = 50;
+    private static final double BLOCK_HEIGHT = 20;
+
+    /**
+     * Runs the measurement and prints the results.
+     * @param args the number of blocks to make, optional.
+     */
+    public static void main(String[] args) {
+        int count = DEFAULT_COUNT;
+        if (args.length > 0) {
+            count = Integer.parseInt(args[0]);
+        }
+        Rectangle[] rects = new Rectangle[count];
+        long before = usedMemory();
+        for (int i = 0; i < count; i++) {
+            rects[i] = newRectangle(i);
+        }
+        long rectBytes = usedMemory() - before;
+        rects = null;
+        Block[] blocks = new Block[count];
+        before = usedMemory();
+        for (int i = 0; i < count; i++) {
+            blocks[i] = new Block(newRectangle(i), Color.RED);
+        }
+        long blockBytes = usedMemory() - before;
+        blocks = null;
+        BlockStore kept = new BlockStore();
+        before = usedMemory();
+        for (int i = 0; i < count; i++) {
+            kept.add(new Block(newRectangle(i), Color.RED));
+        }
+        long keptBytes = usedMemory() - before;
+        int size = kept.size();
+        kept = null;
+        BlockStore store = new BlockStore();
+        before = usedMemory();
+        for (int i = 0; i < count; i++) {
+            store.add(newRectangle(i), Color.RED);
+        }
+        long storeBytes = usedMemory() - before;
+        size += store.size();
+        store = null;
+        BlockArena arena = new BlockArena();
+        BlockStore offHeap = new BlockStore(arena);
+        before = usedMemory();
+        for (int i = 0; i < count; i++) {
+            offHeap.add(newRectangle(i), Color.RED);
+        }
+        long arenaBytes = usedMemory() - before;
+        size += offHeap.size();
+        long closeStart = System.nanoTime();
+        arena.close();
+        long closeTime = System.nanoTime() - closeStart;
+        System.out.println(count + " blocks");
+        System.out.println("bytes per rectangle: " + rectBytes / count);
+        System.out.println("bytes per block: " + blockBytes / count);
+        System.out.println("bytes per block object in a store: "
+                           + keptBytes / count);
+        System.out.println("bytes per block in a store: "
+                           + storeBytes / count);
+        System.out.println("heap bytes per block in an arena: "
+                           + arenaBytes / count + " (off the heap: "
+                           + BlockArena.isOffHeap() + ")");
+        System.out.println("total block heap: " + blockBytes / (1 << 20)
+                           + " MB, block object store heap: "
+                           + keptBytes / (1 << 20)
+                           + " MB, store heap: " + storeBytes / (1 << 20)
+                           + " MB, arena heap: " + arenaBytes / (1 << 20)
+                           + " MB, " + size + " kept");
+        System.out.println("arena closed in " + closeTime / 1000 + " us");
+    }
+
+    /**
+     * Makes the rectangle of a block in the grid.
+     * @param i the number of the block.
+     * @return the rectangle.
+     */
+    private static Rectangle newRectangle(int i) {
+        Point corner = new Point((i % COLUMNS) * BLOCK_WIDTH,
+                                 (i / COLUMNS) * BLOCK_HEIGHT);
+        return new Rectangle(corner, BLOCK_WIDTH, BLOCK_HEIGHT);
+    }
+
+    /**
+     * Returns the used heap memory, after asking for
+     * a garbage collection a few times so the result
+     * doesn't count garbage.
+     * @return the used memory in bytes.
+     */
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
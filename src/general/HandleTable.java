@@ -0,0 +1,141 @@
+package general;
+
+/**
+ * A hash table from items to their handles, kept in
+ * two arrays (one for the items and one for the
+ * handles), so looking up a handle doesn't make an
+ * Integer. collisions go to the next place in the
+ * table, and when an item is removed the items after
+ * it are moved back, so there are no deleted markers.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+class HandleTable {
+
+    private Object[] keys;
+    private int[] values;
+    private int size;
+
+    /**
+     * A constructor for an empty table.
+     */
+    HandleTable() {
+        keys = new Object[32];
+        values = new int[32];
+    }
+
+    /**
+     * Returns the handle of an item.
+     * @param key the item.
+     * @return the handle, or Registry.NO_HANDLE if the
+     * item is not in the table.
+     */
+    int get(Object key) {
+        int i = indexOf(key);
+        if (keys[i] == null) {
+            return Registry.NO_HANDLE;
+        }
+        return values[i];
+    }
+
+    /**
+     * Puts the handle of an item in the table, over the
+     * one it had if it was there.
+     * @param key the item.
+     * @param value the handle.
+     */
+    void put(Object key, int value) {
+        if (2 * (size + 1) > keys.length) {
+            resize(keys.length * 2);
+        }
+        int i = indexOf(key);
+        if (keys[i] == null) {
+            keys[i] = key;
+            size++;
+        }
+        values[i] = value;
+    }
+
+    /**
+     * Removes an item from the table, and moves back
+     * the items after it that couldn't get their own
+     * place because of it.
+     * @param key the item.
+     */
+    void remove(Object key) {
+        int hole = indexOf(key);
+        if (keys[hole] == null) {
+            return;
+        }
+        keys[hole] = null;
+        size--;
+        int mask = keys.length - 1;
+        int i = (hole + 1) & mask;
+        while (keys[i] != null) {
+            int home = home(keys[i]);
+
+            // the item can move back only if its home isn't
+            // between the hole and where it is now.
+            boolean stays;
+            if (hole <= i) {
+                stays = hole < home && home <= i;
+            } else {
+                stays = hole < home || home <= i;
+            }
+            if (!stays) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                keys[i] = null;
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Finds the place of an item, or the empty place
+     * it would go in.
+     * @param key the item.
+     * @return the place.
+     */
+    private int indexOf(Object key) {
+        int mask = keys.length - 1;
+        int i = home(key);
+        while (keys[i] != null && !keys[i].equals(key)) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the place an item goes in if it's free,
+     * with the bits of its hash code mixed so items
+     * with close hash codes are spread out.
+     * @param key the item.
+     * @return the place.
+     */
+    private int home(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (keys.length - 1);
+    }
+
+    /**
+     * Moves all the items to a bigger table.
+     * @param capacity the size of the new table, a
+     * power of 2.
+     */
+    private void resize(int capacity) {
+        Object[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new Object[capacity];
+        values = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int at = indexOf(oldKeys[i]);
+                keys[at] = oldKeys[i];
+                values[at] = oldValues[i];
+            }
+        }
+    }
+}
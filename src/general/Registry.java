@@ -0,0 +1,236 @@
+package general;
+
+import java.util.Arrays;
+
+/**
+ * A Registry gives every item added to it an integer
+ * handle, which can be used to get or remove the item
+ * in constant time. the items are kept in an array in
+ * the order they were added. a removed item leaves an
+ * empty place behind, and the empty places are closed
+ * (keeping the order) the next time the items are gone
+ * over by their places, so removing is still constant
+ * time and things like the order sprites are drawn and
+ * moved in don't change. a handle is made of a slot and a generation. the
+ * generation of a slot changes when its item is
+ * removed, so an old handle to a removed item is
+ * detected and not confused with a new item that got
+ * the same slot (until the generation wraps around,
+ * after 2^GENERATION_BITS reuses of the slot).
+ * @param <T> the type of the items.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class Registry<T> {
+
+    public static final int NO_HANDLE = -1;
+    public static final int SLOT_BITS = 22;
+    public static final int GENERATION_BITS = 31 - SLOT_BITS;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << GENERATION_BITS) - 1;
+    private static final int FREE = -1;
+
+    private Object[] items;
+    private int[] itemSlots;
+    private int[] slotItems;
+    private int[] generations;
+    private int[] freeSlots;
+    private int freeCount;
+    private int slotCount;
+    private int size;
+    private int used;
+    private HandleTable handles;
+
+    /**
+     * A constructor for an empty registry.
+     */
+    public Registry() {
+        items = new Object[16];
+        itemSlots = new int[16];
+        slotItems = new int[16];
+        generations = new int[16];
+        freeSlots = new int[16];
+        handles = new HandleTable();
+    }
+
+    /**
+     * Adds an item and gives it a handle. if the item
+     * is already in the registry, returns its handle.
+     * @param item the item to add.
+     * @return the handle of the item.
+     */
+    public int add(T item) {
+        int handle = handles.get(item);
+        if (handle != NO_HANDLE) {
+            return handle;
+        }
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (slotCount > SLOT_MASK) {
+                throw new IllegalStateException("registry is full");
+            }
+            if (slotCount == slotItems.length) {
+                slotItems = Arrays.copyOf(slotItems, slotCount * 2);
+                generations = Arrays.copyOf(generations, slotCount * 2);
+                freeSlots = Arrays.copyOf(freeSlots, slotCount * 2);
+            }
+            slot = slotCount++;
+        }
+        if (used == items.length) {
+            compact();
+            if (used == items.length) {
+                items = Arrays.copyOf(items, used * 2);
+                itemSlots = Arrays.copyOf(itemSlots, used * 2);
+            }
+        }
+        items[used] = item;
+        itemSlots[used] = slot;
+        slotItems[slot] = used;
+        used++;
+        size++;
+        int newHandle = (generations[slot] << SLOT_BITS) | slot;
+        handles.put(item, newHandle);
+        return newHandle;
+    }
+
+    /**
+     * Returns the item of a handle.
+     * @param handle the handle.
+     * @return the item, or null if the handle is not
+     * of an item in the registry.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int handle) {
+        if (!isValid(handle)) {
+            return null;
+        }
+        return (T) items[slotItems[handle & SLOT_MASK]];
+    }
+
+    /**
+     * Checks if a handle is of an item in the registry.
+     * @param handle the handle.
+     * @return true if the item wasn't removed.
+     */
+    public boolean isValid(int handle) {
+        if (handle < 0) {
+            return false;
+        }
+        int slot = handle & SLOT_MASK;
+        return slot < slotCount && slotItems[slot] != FREE
+               && generations[slot] == handle >>> SLOT_BITS;
+    }
+
+    /**
+     * Returns the handle of an item.
+     * @param item the item.
+     * @return the handle, or NO_HANDLE if the item is
+     * not in the registry.
+     */
+    public int handleOf(T item) {
+        return handles.get(item);
+    }
+
+    /**
+     * Removes the item of a handle. its place in the
+     * array is left empty until the array is compacted.
+     * @param handle the handle.
+     * @return true if an item was removed, false if the
+     * handle was stale.
+     */
+    public boolean remove(int handle) {
+        if (!isValid(handle)) {
+            return false;
+        }
+        int slot = handle & SLOT_MASK;
+        int index = slotItems[slot];
+        handles.remove(items[index]);
+        size--;
+        items[index] = null;
+        if (index == used - 1) {
+            used--;
+        }
+        slotItems[slot] = FREE;
+        generations[slot] = (generations[slot] + 1) & GENERATION_MASK;
+        freeSlots[freeCount++] = slot;
+        return true;
+    }
+
+    /**
+     * Removes an item.
+     * @param item the item.
+     * @return true if the item was in the registry.
+     */
+    public boolean remove(T item) {
+        return remove(handleOf(item));
+    }
+
+    /**
+     * Returns the number of items.
+     * @return the number of items.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the item in a place in the array, in the
+     * order the items were added. places change when
+     * items are removed.
+     * @param index the place, from 0 to size() - 1.
+     * @return the item.
+     */
+    @SuppressWarnings("unchecked")
+    public T getAt(int index) {
+        if (used != size) {
+            compact();
+        }
+        return (T) items[index];
+    }
+
+    /**
+     * Copies the handles of all the items, in their
+     * order in the array, so they can be gone over
+     * while items are added and removed.
+     * @param array an array to copy to, a bigger one is
+     * made if it's too small.
+     * @return the array with the handles.
+     */
+    public int[] handles(int[] array) {
+        if (used != size) {
+            compact();
+        }
+        if (array.length < size) {
+            array = new int[items.length];
+        }
+        for (int i = 0; i < size; i++) {
+            int slot = itemSlots[i];
+            array[i] = (generations[slot] << SLOT_BITS) | slot;
+        }
+        return array;
+    }
+
+    /**
+     * Closes the empty places left by removed items,
+     * moving the items after them back in their order.
+     */
+    private void compact() {
+        int n = 0;
+        for (int i = 0; i < used; i++) {
+            if (items[i] == null) {
+                continue;
+            }
+            if (n != i) {
+                items[n] = items[i];
+                itemSlots[n] = itemSlots[i];
+                slotItems[itemSlots[n]] = n;
+                items[i] = null;
+            }
+            n++;
+        }
+        used = n;
+    }
+}
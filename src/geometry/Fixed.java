@@ -0,0 +1,166 @@
+package geometry;
+
+/**
+ * Fixed point numbers with 32 bits for the whole part
+ * and 32 bits for the fraction (32.32), kept in longs,
+ * and the switch for the fixed point physics mode. when
+ * it's on (with setEnabled, or by running with
+ * -Darkanoid.fixed=true), the balls move and look for
+ * collisions with whole numbers only, and every
+ * position and velocity is kept on the 32.32 grid, so a
+ * game plays the same on every machine and every run.
+ * a 32.32 number with a whole part under 2^20 is also
+ * an exact double, so the values are still handed
+ * around as doubles, and turned into longs (without
+ * losing anything) when they are used. the mode is
+ * for playing the same everywhere, not for speed: the
+ * physics take about twice as long as with doubles.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public final class Fixed {
+
+    public static final String FIXED_PROPERTY = "arkanoid.fixed";
+    public static final int FRACTION_BITS = 32;
+    public static final long ONE = 1L << FRACTION_BITS;
+    public static final long MAX = Long.MAX_VALUE;
+
+    // a little more than the rounding of a step, for contact checks.
+    public static final long EPSILON = 1L << 8;
+
+    private static final double SCALE = ONE;
+    private static final int HALF_BITS = FRACTION_BITS / 2;
+
+    private static boolean enabled = Boolean.getBoolean(FIXED_PROPERTY);
+
+    /**
+     * Not used, the class only has static methods.
+     */
+    private Fixed() {
+    }
+
+    /**
+     * Turns the fixed point mode on or off. it should be
+     * changed before a level starts, not in the middle.
+     * @param on true to use fixed point physics.
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * Checks if the fixed point mode is on.
+     * @return true if it's on.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the closest 32.32 number to a double.
+     * @param d the double.
+     * @return the 32.32 number.
+     */
+    public static long of(double d) {
+        return Math.round(d * SCALE);
+    }
+
+    /**
+     * Returns the value of a 32.32 number as a double.
+     * it's exact while the whole part is under 2^20.
+     * @param f the 32.32 number.
+     * @return the double.
+     */
+    public static double toDouble(long f) {
+        return f / SCALE;
+    }
+
+    /**
+     * Rounds a double to the closest 32.32 number, if
+     * the fixed point mode is on.
+     * @param d the double.
+     * @return the rounded double, or d if the mode is off.
+     */
+    public static double snap(double d) {
+        return enabled ? toDouble(of(d)) : d;
+    }
+
+    /**
+     * Multiplies two 32.32 numbers, rounding towards
+     * negative infinity.
+     * @param a the first number.
+     * @param b the second number.
+     * @return a * b.
+     */
+    public static long mul(long a, long b) {
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        return (high << FRACTION_BITS) | (low >>> FRACTION_BITS);
+    }
+
+    /**
+     * Divides two 32.32 numbers, rounding towards zero.
+     * the divisor should have a whole part under 2^15.
+     * a quotient too big for 32.32 (from a divisor close
+     * to 0) is saturated to the biggest number with its
+     * sign, which is past any time a collision is looked
+     * for in.
+     * @param a the dividend.
+     * @param b the divisor, not 0.
+     * @return a / b, or MAX (or -MAX) if it's too big.
+     */
+    public static long div(long a, long b) {
+        boolean negative = (a < 0) != (b < 0);
+        long n = Math.abs(a);
+        long d = Math.abs(b);
+
+        // long division, half of the fraction bits at a time.
+        long q = n / d;
+        if (q > Integer.MAX_VALUE) {
+            return negative ? -MAX : MAX;
+        }
+        long r = n % d;
+        long high = (r << HALF_BITS) / d;
+        r = (r << HALF_BITS) % d;
+        long low = (r << HALF_BITS) / d;
+        long result = (q << FRACTION_BITS) | (high << HALF_BITS) | low;
+        return negative ? -result : result;
+    }
+
+    /**
+     * Finds the square root of a 32.32 number, rounded
+     * up, so a time found with it is never too early.
+     * @param a the number, not negative.
+     * @return the square root.
+     */
+    public static long sqrt(long a) {
+        if (a <= 0) {
+            return 0;
+        }
+
+        // the root of a * 2^32 is needed. a is shifted by an
+        // even number of bits so it fits, and the rest of the
+        // shift is done on the root.
+        int shift = Math.min(FRACTION_BITS, Long.numberOfLeadingZeros(a) - 2);
+        shift -= shift % 2;
+        long root = ceilSqrt(a << shift);
+        return root << ((FRACTION_BITS - shift) / 2);
+    }
+
+    /**
+     * Finds the square root of a whole number, rounded up.
+     * @param n the number, not negative and under 2^62.
+     * @return the square root.
+     */
+    private static long ceilSqrt(long n) {
+        long root = (long) Math.sqrt((double) n);
+        while (root * root > n) {
+            root--;
+        }
+        while (root * root < n) {
+            root++;
+        }
+        return root;
+    }
+}
@@ -5,15 +5,17 @@ import java.awt.Color;
 import java.util.ArrayList;
 import java.util.List;
 
-import ball.Ball;
 import biuoop.DrawSurface;
 import game.GameLevel;
 import sprites.Sprite;
 
 /**
- * A Rectangle has 4 corners represented
- * by point. 4 lines represented by borders.
- * width and height.
+ * A Rectangle is kept as its upperLeft corner,
+ * width and height, as four doubles. the other
+ * corners are worked out from them, and the border
+ * lines are only made if someone asks for them, so
+ * a level with a lot of blocks doesn't keep a dozen
+ * objects for each one.
  * @author Uri Knoll
  * @version  %I%, %G%
  * @since 17.0.2
@@ -25,12 +27,10 @@ public class Rectangle implements Sprite {
     public static final int RIGHT = 1;
     public static final int BOTTOM = 2;
     public static final int LEFT = 3;
-    public static final double TINY_CONSTANT = 2 * Math.pow(10.0, -10.0);
+    public static final double NO_INTERSECTION = -1;
 
-    private Point upperLeft;
-    private Point upperRight;
-    private Point bottomRight;
-    private Point bottomLeft;
+    private double x;
+    private double y;
     private double width;
     private double height;
     private Line[] borders;
@@ -47,8 +47,8 @@ public class Rectangle implements Sprite {
     public Rectangle(Point upperLeft, double width, double height) {
         setWidth(width);
         setHeight(height);
-        setCorners(upperLeft);
-        setBorders();
+        x = upperLeft.getX();
+        y = upperLeft.getY();
     }
 
     /**
@@ -111,45 +111,62 @@ public class Rectangle implements Sprite {
     }
 
     /**
-     * A getter for the upperLeft corner of the
-     * Rectnagle.
-     * @return the upperLeft corner.
+     * A getter for the x value of the upperLeft corner.
+     * @return the x value of the upperLeft corner.
      */
-    public Point getUpperLeft() {
-        return upperLeft;
+    public double getX() {
+        return x;
     }
 
     /**
-     * A getter for the borders of the Rectangle.
-     * @return the borders of the Rectangle.
+     * A getter for the y value of the upperLeft corner.
+     * @return the y value of the upperLeft corner.
      */
-    public Line[] getBorders() {
-        return borders;
+    public double getY() {
+        return y;
     }
 
     /**
-     * Sets the corners of the rectangle using
-     * it's upperLeft corner, width and height.
-     * @param upperLeft the upperLeft Corner.
+     * Moves the rectangle in place, so its upperLeft
+     * corner is at (x, y). keeps the width and height.
+     * @param newX the new x value of the upperLeft corner.
+     * @param newY the new y value of the upperLeft corner.
      */
-    private void setCorners(Point upperLeft) {
-        this.upperLeft = upperLeft;
-        upperRight = new Point(upperLeft.getX() + width, upperLeft.getY());
-        bottomRight = new Point(upperRight.getX(), upperLeft.getY() + height);
-        bottomLeft = new Point(upperLeft.getX(), upperLeft.getY() + height);
+    public void moveTo(double newX, double newY) {
+        x = newX;
+        y = newY;
+        borders = null;
+    }
+
+    /**
+     * A getter for the upperLeft corner of the
+     * Rectnagle. a new point is made on every call.
+     * @return the upperLeft corner.
+     */
+    public Point getUpperLeft() {
+        return new Point(x, y);
     }
 
     /**
-     * Sets the borders of the rectangle
-     * to lines starting in one corner and
-     * ending in an adjacent one.
+     * A getter for the borders of the Rectangle:
+     * lines starting in one corner and ending in
+     * an adjacent one. they are made on the first
+     * call and kept.
+     * @return the borders of the Rectangle.
      */
-    private void setBorders() {
-        borders = new Line[4];
-        borders[TOP] = new Line(upperLeft, upperRight);
-        borders[RIGHT] = new Line(upperRight, bottomRight);
-        borders[BOTTOM] = new Line(bottomRight, bottomLeft);
-        borders[LEFT] = new Line(bottomLeft, upperLeft);
+    public Line[] getBorders() {
+        if (borders == null) {
+            Point upperLeft = new Point(x, y);
+            Point upperRight = new Point(x + width, y);
+            Point bottomRight = new Point(x + width, y + height);
+            Point bottomLeft = new Point(x, y + height);
+            borders = new Line[4];
+            borders[TOP] = new Line(upperLeft, upperRight);
+            borders[RIGHT] = new Line(upperRight, bottomRight);
+            borders[BOTTOM] = new Line(bottomRight, bottomLeft);
+            borders[LEFT] = new Line(bottomLeft, upperLeft);
+        }
+        return borders;
     }
 
     /**
@@ -160,14 +177,316 @@ public class Rectangle implements Sprite {
      */
    public List<Point> intersectionPoints(Line line) {
        List<Point> intersections = new ArrayList<Point>();
-       for (int i = 0; i < borders.length; i++) {
-           if (line.intersectionWith(borders[i]) != null) {
-               intersections.add(line.intersectionWith(borders[i]));
+       Line[] lines = getBorders();
+       for (int i = 0; i < lines.length; i++) {
+           if (line.intersectionWith(lines[i]) != null) {
+               intersections.add(line.intersectionWith(lines[i]));
            }
        }
        return intersections;
    }
 
+   /**
+    * Finds when a circle moving from (x, y) by (dx, dy)
+    * first touches the rectangle. this is the same as
+    * finding where the center hits the rectangle grown
+    * by the radius with rounded corners: the slab method
+    * is used on the grown box, and if the center gets to
+    * it next to a corner, the circle around that corner
+    * is checked instead. a circle that already touches
+    * the rectangle hits it at time 0 if it moves into
+    * it, and not at all if it moves away, so an object
+    * resting on a border can leave it. nothing is
+    * allocated.
+    * @param x the x value of the center at the start.
+    * @param y the y value of the center at the start.
+    * @param dx the horizontal change of the center.
+    * @param dy the vertical change of the center.
+    * @param radius the radius of the circle, 0 for a point.
+    * @return the part of the movement (0 to 1) passed
+    * before the circle touches the rectangle, or
+    * NO_INTERSECTION.
+    */
+   public double collisionTime(double x, double y, double dx, double dy,
+                               double radius) {
+       if (dx == 0 && dy == 0) {
+           return NO_INTERSECTION;
+       }
+       double left = this.x;
+       double top = this.y;
+       double right = left + width;
+       double bottom = top + height;
+
+       // checks if the circle touches the rectangle already.
+       double offX = x - Math.max(left, Math.min(right, x));
+       double offY = y - Math.max(top, Math.min(bottom, y));
+       double touch = radius + Point.TINY_CONSTANT;
+       if (offX * offX + offY * offY <= touch * touch) {
+           if (offX == 0 && offY == 0) {
+
+               // the center is inside, so the closest border counts.
+               int border = Integer.numberOfTrailingZeros(bordersAt(x, y));
+               offX = border == LEFT ? -1 : (border == RIGHT ? 1 : 0);
+               offY = border == TOP ? -1 : (border == BOTTOM ? 1 : 0);
+           }
+           return dx * offX + dy * offY < 0 ? 0 : NO_INTERSECTION;
+       }
+       double tEnter = Double.NEGATIVE_INFINITY;
+       double tExit = Double.POSITIVE_INFINITY;
+       if (dx == 0) {
+           if (x < left - radius || x > right + radius) {
+               return NO_INTERSECTION;
+           }
+       } else {
+           double t1 = (left - radius - x) / dx;
+           double t2 = (right + radius - x) / dx;
+           tEnter = Math.min(t1, t2);
+           tExit = Math.max(t1, t2);
+       }
+       if (dy == 0) {
+           if (y < top - radius || y > bottom + radius) {
+               return NO_INTERSECTION;
+           }
+       } else {
+           double t1 = (top - radius - y) / dy;
+           double t2 = (bottom + radius - y) / dy;
+           tEnter = Math.max(tEnter, Math.min(t1, t2));
+           tExit = Math.min(tExit, Math.max(t1, t2));
+       }
+       if (tEnter > tExit || tEnter > 1 || tExit < 0) {
+           return NO_INTERSECTION;
+       }
+       double t = Math.max(tEnter, 0);
+       double hitX = x + dx * t;
+       double hitY = y + dy * t;
+       if ((hitX < left || hitX > right) && (hitY < top || hitY > bottom)) {
+           double cornerX = hitX < left ? left : right;
+           double cornerY = hitY < top ? top : bottom;
+           t = circleTime(x - cornerX, y - cornerY, dx, dy, radius);
+       }
+       if (t < 0 || t > 1) {
+           return NO_INTERSECTION;
+       }
+       return t;
+   }
+
+   /**
+    * Finds when a point moving by (dx, dy) gets to a
+    * circle around (0, 0), if it starts outside of it.
+    * @param x the x value of the start, from the center.
+    * @param y the y value of the start, from the center.
+    * @param dx the horizontal change of the point.
+    * @param dy the vertical change of the point.
+    * @param radius the radius of the circle.
+    * @return when the point gets to the circle, or
+    * NO_INTERSECTION.
+    */
+   private static double circleTime(double x, double y, double dx, double dy,
+                                    double radius) {
+       double a = dx * dx + dy * dy;
+       double b = x * dx + y * dy;
+       double c = x * x + y * y - radius * radius;
+       double discriminant = b * b - a * c;
+       if (b >= 0 || discriminant < 0) {
+           return NO_INTERSECTION;
+       }
+       return (-b - Math.sqrt(discriminant)) / a;
+   }
+
+   /**
+    * Same as collisionTime, in 32.32 fixed point (see
+    * Fixed). the rectangle is rounded to the 32.32 grid.
+    * the time is rounded so the circle stops before the
+    * rectangle, and a circle that is closer than
+    * Fixed.EPSILON counts as touching it.
+    * @param x the x value of the center at the start.
+    * @param y the y value of the center at the start.
+    * @param dx the horizontal change of the center.
+    * @param dy the vertical change of the center.
+    * @param radius the radius of the circle, 0 for a point.
+    * @return the part of the movement (0 to Fixed.ONE)
+    * passed before the circle touches the rectangle, or -1.
+    */
+   public long fixedCollisionTime(long x, long y, long dx, long dy,
+                                  long radius) {
+       if (dx == 0 && dy == 0) {
+           return -1;
+       }
+       long left = Fixed.of(this.x);
+       long top = Fixed.of(this.y);
+       long right = left + Fixed.of(width);
+       long bottom = top + Fixed.of(height);
+
+       // checks if the circle touches the rectangle already.
+       long offX = x - Math.max(left, Math.min(right, x));
+       long offY = y - Math.max(top, Math.min(bottom, y));
+       long touch = radius + Fixed.EPSILON;
+       if (Fixed.mul(offX, offX) + Fixed.mul(offY, offY)
+           <= Fixed.mul(touch, touch)) {
+           if (offX == 0 && offY == 0) {
+               int border = fixedBorderAt(x, y, left, top, right, bottom);
+               offX = border == LEFT ? -1 : (border == RIGHT ? 1 : 0);
+               offY = border == TOP ? -1 : (border == BOTTOM ? 1 : 0);
+           }
+           return dx * Long.signum(offX) + dy * Long.signum(offY) < 0 ? 0 : -1;
+       }
+       long tEnter = Long.MIN_VALUE;
+       long tExit = Long.MAX_VALUE;
+       if (dx == 0) {
+           if (x < left - radius || x > right + radius) {
+               return -1;
+           }
+       } else {
+           long t1 = Fixed.div(left - radius - x, dx);
+           long t2 = Fixed.div(right + radius - x, dx);
+           tEnter = Math.min(t1, t2);
+           tExit = Math.max(t1, t2);
+       }
+       if (dy == 0) {
+           if (y < top - radius || y > bottom + radius) {
+               return -1;
+           }
+       } else {
+           long t1 = Fixed.div(top - radius - y, dy);
+           long t2 = Fixed.div(bottom + radius - y, dy);
+           tEnter = Math.max(tEnter, Math.min(t1, t2));
+           tExit = Math.min(tExit, Math.max(t1, t2));
+       }
+       if (tEnter > tExit || tEnter > Fixed.ONE || tExit < 0) {
+           return -1;
+       }
+       long t = Math.max(tEnter, 0);
+       long hitX = x + Fixed.mul(dx, t);
+       long hitY = y + Fixed.mul(dy, t);
+       if ((hitX < left || hitX > right) && (hitY < top || hitY > bottom)) {
+           long cornerX = hitX < left ? left : right;
+           long cornerY = hitY < top ? top : bottom;
+           t = fixedCircleTime(x - cornerX, y - cornerY, dx, dy, radius);
+       }
+       if (t < 0 || t > Fixed.ONE) {
+           return -1;
+       }
+       return t;
+   }
+
+   /**
+    * Same as bordersAt, in 32.32 fixed point, for a point
+    * inside the rectangle, giving only the first border
+    * (in the order of the bits) the point is on, or the
+    * closest border if it's on none. Point.TINY_CONSTANT
+    * is less than the 32.32 grid, so on a border means
+    * right on it.
+    * @param x the x value of the point.
+    * @param y the y value of the point.
+    * @param left the left side of the rectangle.
+    * @param top the top of the rectangle.
+    * @param right the right side of the rectangle.
+    * @param bottom the bottom of the rectangle.
+    * @return the border, TOP, RIGHT, BOTTOM or LEFT.
+    */
+   private static int fixedBorderAt(long x, long y, long left, long top,
+                                    long right, long bottom) {
+       if (y == top) {
+           return TOP;
+       }
+       if (x == right) {
+           return RIGHT;
+       }
+       if (y == bottom) {
+           return BOTTOM;
+       }
+       if (x == left) {
+           return LEFT;
+       }
+       long toTop = y - top;
+       long toBottom = bottom - y;
+       long toSide = Math.min(x - left, right - x);
+       if (Math.min(toTop, toBottom) <= toSide) {
+           return toTop <= toBottom ? TOP : BOTTOM;
+       }
+       return x - left <= right - x ? LEFT : RIGHT;
+   }
+
+   /**
+    * Same as circleTime, in 32.32 fixed point.
+    * @param x the x value of the start, from the center.
+    * @param y the y value of the start, from the center.
+    * @param dx the horizontal change of the point.
+    * @param dy the vertical change of the point.
+    * @param radius the radius of the circle.
+    * @return when the point gets to the circle, or -1.
+    */
+   private static long fixedCircleTime(long x, long y, long dx, long dy,
+                                       long radius) {
+       long a = Fixed.mul(dx, dx) + Fixed.mul(dy, dy);
+       long b = Fixed.mul(x, dx) + Fixed.mul(y, dy);
+       long c = Fixed.mul(x, x) + Fixed.mul(y, y) - Fixed.mul(radius, radius);
+       long discriminant = Fixed.mul(b, b) - Fixed.mul(a, c);
+       if (b >= 0 || discriminant < 0 || a == 0) {
+           return -1;
+       }
+       return Fixed.div(-b - Fixed.sqrt(discriminant), a);
+   }
+
+   /**
+    * Returns the closest point to (x, y) on the rectangle.
+    * for a point outside of it, that's where a circle
+    * around the point touches it.
+    * @param x the x value of the point.
+    * @param y the y value of the point.
+    * @return the closest point.
+    */
+   public Point closestPoint(double x, double y) {
+       double left = this.x;
+       double top = this.y;
+       return new Point(Math.max(left, Math.min(left + width, x)),
+                        Math.max(top, Math.min(top + height, y)));
+   }
+
+   /**
+    * Returns the borders of the rectangle a point is on,
+    * as bits: bit TOP is set if the point is on the top
+    * border, and so on. a corner is on two borders. if
+    * the point is not on any border, returns the closest
+    * one, so a collision point that is a tiny bit off
+    * still has a side.
+    * @param x the x value of the point.
+    * @param y the y value of the point.
+    * @return the borders the point is on.
+    */
+   public int bordersAt(double x, double y) {
+       double left = this.x;
+       double top = this.y;
+       boolean inX = x >= left - Point.TINY_CONSTANT
+                     && x <= left + width + Point.TINY_CONSTANT;
+       boolean inY = y >= top - Point.TINY_CONSTANT
+                     && y <= top + height + Point.TINY_CONSTANT;
+       int borders = 0;
+       if (inX && Point.cmpDoubles(y, top)) {
+           borders |= 1 << TOP;
+       }
+       if (inY && Point.cmpDoubles(x, left + width)) {
+           borders |= 1 << RIGHT;
+       }
+       if (inX && Point.cmpDoubles(y, top + height)) {
+           borders |= 1 << BOTTOM;
+       }
+       if (inY && Point.cmpDoubles(x, left)) {
+           borders |= 1 << LEFT;
+       }
+       if (borders != 0) {
+           return borders;
+       }
+       double toTop = Math.abs(y - top);
+       double toBottom = Math.abs(y - top - height);
+       double toSide = Math.min(Math.abs(x - left), Math.abs(x - left - width));
+       if (Math.min(toTop, toBottom) <= toSide) {
+           return 1 << (toTop <= toBottom ? TOP : BOTTOM);
+       }
+       return 1 << (Math.abs(x - left) <= Math.abs(x - left - width)
+                    ? LEFT : RIGHT);
+   }
+
    /**
     * Checks if the point is on the borders.
     * if it is, returns true. if not - false.
@@ -176,12 +495,30 @@ public class Rectangle implements Sprite {
     * false if not.
     */
    public boolean isPointOnBorders(Point p) {
-       if (borders[TOP].isPointOnLine(p) || borders[RIGHT].isPointOnLine(p)
-            ||  borders[BOTTOM].isPointOnLine(p)
-            || borders[LEFT].isPointOnLine(p)) {
-           return true;
+       return isPointOnBorders(p.getX(), p.getY());
+   }
+
+   /**
+    * Same as isPointOnBorders(Point), for a point
+    * given by its x and y values, without checking
+    * it against the border lines.
+    * @param x the x value of the point.
+    * @param y the y value of the point.
+    * @return true if the point is on the border,
+    * false if not.
+    */
+   public boolean isPointOnBorders(double x, double y) {
+       double left = this.x;
+       double top = this.y;
+       if (x < left - Point.TINY_CONSTANT
+           || x > left + width + Point.TINY_CONSTANT
+           || y < top - Point.TINY_CONSTANT
+           || y > top + height + Point.TINY_CONSTANT) {
+           return false;
        }
-       return false;
+       return Point.cmpDoubles(y, top) || Point.cmpDoubles(y, top + height)
+              || Point.cmpDoubles(x, left)
+              || Point.cmpDoubles(x, left + width);
    }
 
    /**
@@ -195,52 +532,25 @@ public class Rectangle implements Sprite {
     * @return the number of the corner.
     */
    public int pointCornerNum(Point p) {
-       if (p.equals(upperLeft)) {
+       boolean left = Point.cmpDoubles(p.getX(), x);
+       boolean right = Point.cmpDoubles(p.getX(), x + width);
+       boolean top = Point.cmpDoubles(p.getY(), y);
+       boolean bottom = Point.cmpDoubles(p.getY(), y + height);
+       if (left && top) {
            return 0;
        }
-       if (p.equals(upperRight)) {
+       if (right && top) {
            return 1;
        }
-       if (p.equals(bottomLeft)) {
+       if (left && bottom) {
            return 2;
        }
-       if (p.equals(bottomRight)) {
+       if (right && bottom) {
            return 3;
        }
        return -1;
    }
 
-   /**
-    * Since when checking if the ball is
-    * colliding it checks for intersection
-    * points, the point might be a tiny bit
-    * in an object, and when it want's to move
-    * away, it might trigger the same collision
-    * point twice. in order for it to not happen,
-    * if the ball very close to the rectangle's
-    * borders, put's it away slightly.
-    * @param ball the ball hitting the rect.
-    */
-   public void pushBallOut(Ball ball) {
-       double ballX = ball.getX();
-       double ballY = ball.getY();
-       Point center = new Point(ballX, ballY);
-       if (borders[RIGHT].isPointOnLine(center)) {
-           ball.setCenter(upperRight.getX() + TINY_CONSTANT, ballY);
-       } else {
-           if (borders[LEFT].isPointOnLine(center)) {
-               ball.setCenter(bottomLeft.getX() - TINY_CONSTANT, ballY);
-           }
-       }
-       if (borders[TOP].isPointOnLine(center)) {
-           ball.setCenter(ballX, (upperRight.getY() - TINY_CONSTANT));
-       } else {
-           if (borders[BOTTOM].isPointOnLine(center)) {
-               ball.setCenter(ballX, bottomRight.getY() + TINY_CONSTANT);
-           }
-       }
-   }
-
    /**
     * Draws the rectangle on a drawing surface.
     * doesn't draw null colors.
@@ -249,12 +559,12 @@ public class Rectangle implements Sprite {
     public void drawOn(DrawSurface d) {
         if (bodyC != null) {
             d.setColor(bodyC);
-            d.fillRectangle((int) upperLeft.getX(), (int) upperRight.getY(),
+            d.fillRectangle((int) x, (int) y,
                             (int) width, (int) height);
         }
         if (borderC != null) {
             d.setColor(borderC);
-            d.drawRectangle((int) upperLeft.getX(), (int) upperRight.getY(),
+            d.drawRectangle((int) x, (int) y,
                             (int) width, (int) height);
         }
     }
@@ -194,4 +194,13 @@ public class FinalFour implements LevelInformation {
     public int numberOfBlocksToRemove() {
         return 15 * 7;
     }
+
+    /**
+     * Returns true, the balls in this level bounce
+     * off each other.
+     * @return true.
+     */
+    public boolean ballCollisions() {
+        return true;
+    }
 }
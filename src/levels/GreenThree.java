@@ -116,8 +116,8 @@ private static final int BLOCK_HEIGHT = 25;
         double betweenWindows = 0.08 * building.getWidth();
         double windowWidth = 0.104 * building.getWidth();
         double windowHeight = 0.12 * building.getHeight();
-        double cornerX = building.getUpperLeft().getX() + betweenWindows;
-        double cornerY = building.getUpperLeft().getY() + betweenWindows;
+        double cornerX = building.getX() + betweenWindows;
+        double cornerY = building.getY() + betweenWindows;
         for (int i = 0; i < 5; i++) {
             double rowCornerX = cornerX;
             for (int j = 0; j < 5; j++) {
@@ -141,8 +141,8 @@ private static final int BLOCK_HEIGHT = 25;
      */
     private Rectangle addAntenna(Background bg, Rectangle building) {
         double bWidth =  building.getWidth();
-        Point p1 = new Point(building.getUpperLeft().getX() + bWidth * 0.35,
-                             building.getUpperLeft().getY() - height
+        Point p1 = new Point(building.getX() + bWidth * 0.35,
+                             building.getY() - height
                              * ((float) 1 / 10));
         Color color1 = Color.getHSBColor((float) 1, (float) 0, (float) 0.2);
         Rectangle antennaBase = new Rectangle(p1, (float) bWidth * 0.3,
@@ -166,9 +166,8 @@ private static final int BLOCK_HEIGHT = 25;
      * antenna.
      */
     private void addLight(Background bg, Rectangle antenna) {
-        Point p = new Point(antenna.getUpperLeft().getX()
-                            + antenna.getWidth() / 2,
-                            antenna.getUpperLeft().getY());
+        Point p = new Point(antenna.getX() + antenna.getWidth() / 2,
+                            antenna.getY());
         Color[] colors = {Color.getHSBColor((float) 56 / 360, (float) 0.4,
                                             (float) 1),
                           Color.getHSBColor((float) 11 / 360, (float) 0.85,
@@ -64,4 +64,15 @@ public interface LevelInformation {
      * be removed in the level.
      */
     int numberOfBlocksToRemove();
+
+    /**
+     * Returns true if the balls in the level bounce
+     * off each other. by default they pass through
+     * each other.
+     * @return true if the balls bounce off each other,
+     * false if they pass through each other.
+     */
+    default boolean ballCollisions() {
+        return false;
+    }
  }
@@ -160,6 +160,15 @@ public class WideEasyLevel implements LevelInformation {
         return 17;
     }
 
+    /**
+     * Returns true, the 10 balls in this level bounce
+     * off each other.
+     * @return true.
+     */
+    public boolean ballCollisions() {
+        return true;
+    }
+
     /**
      * Returns the color pattern of the blocks.
      * @return the color pattern of the blocks.
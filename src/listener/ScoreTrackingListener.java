@@ -14,6 +14,8 @@ import general.Counter;
  */
 public class ScoreTrackingListener implements HitListener {
 
+    public static final int HIT_POINTS = 5;
+
     private Counter currentScore;
 
     /**
@@ -31,6 +33,6 @@ public class ScoreTrackingListener implements HitListener {
      * @param hitter the ball that hit the ball.
      */
     public void hitEvent(Block beingHit, Ball hitter) {
-        currentScore.increase(5);
+        currentScore.increase(HIT_POINTS);
     }
  }
@@ -1,15 +1,12 @@
-
 package sprites;
 
-import java.util.LinkedList;
-import java.util.List;
-
 import biuoop.DrawSurface;
+import general.Registry;
 
 /**
  * A Collection of Sprites in a
- * Linked List. can perform actions
- * on all of the sprites at once.
+ * registry, every sprite has a handle. can
+ * perform actions on all of the sprites at once.
  * @author Uri Knoll
  * @version  %I%, %G%
  * @since 17.0.2
@@ -17,22 +14,25 @@ import biuoop.DrawSurface;
 public class SpriteCollection {
 
 
-   private List<Sprite> sprites;
+   private Registry<Sprite> sprites;
+   private int[] handles;
 
    /**
-    * A constructor for the list of Sprites.
-    * Creates an empty linked list.
+    * A constructor for the collection of Sprites.
+    * Creates an empty registry.
     */
    public SpriteCollection() {
-       sprites = new LinkedList<Sprite>();
+       sprites = new Registry<Sprite>();
+       handles = new int[16];
    }
 
    /**
     * Adds a Sprite to the Collection.
     * @param s the specified Sprite.
+    * @return the handle of the Sprite.
     */
-   public void addSprite(Sprite s) {
-       sprites.add(s);
+   public int addSprite(Sprite s) {
+       return sprites.add(s);
    }
 
    /**
@@ -44,12 +44,35 @@ public class SpriteCollection {
    }
 
    /**
-    *  call timePassed() on all sprites.
+    * Removes the Sprite of a handle from the Collection.
+    * @param handle the handle of the Sprite.
+    */
+   public void removeSprite(int handle) {
+       sprites.remove(handle);
+   }
+
+   /**
+    * Returns the Sprite of a handle.
+    * @param handle the handle.
+    * @return the Sprite, or null if it was removed.
+    */
+   public Sprite getSprite(int handle) {
+       return sprites.get(handle);
+   }
+
+   /**
+    *  call timePassed() on all sprites. sprites
+    *  added on the way wait for the next time,
+    *  and sprites removed on the way are skipped.
     */
    public void notifyAllTimePassed() {
-       List<Sprite> sprites = new LinkedList<Sprite>(this.sprites);
-       for (int i = 0; i < sprites.size(); i++) {
-           sprites.get(i).timePassed();
+       int count = sprites.size();
+       handles = sprites.handles(handles);
+       for (int i = 0; i < count; i++) {
+           Sprite s = sprites.get(handles[i]);
+           if (s != null) {
+               s.timePassed();
+           }
        }
    }
 
@@ -60,7 +83,7 @@ public class SpriteCollection {
     */
    public void drawAllOn(DrawSurface d) {
        for (int i = 0; i < sprites.size(); i++) {
-           sprites.get(i).drawOn(d);
+           sprites.getAt(i).drawOn(d);
        }
    }
-}
\ No newline at end of file
+}
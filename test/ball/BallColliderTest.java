@@ -0,0 +1,180 @@
+package ball;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import collision.DynamicAabbTree;
+import game.GameEnvironment;
+import geometry.Point;
+
+/**
+ * Checks that the sort and sweep of the ball collider
+ * checks exactly the pairs of balls whose boxes for the
+ * next frame overlap, found by checking every pair,
+ * while balls move, join and leave, and that bouncing
+ * keeps the total momentum and energy. runs with
+ * `ant test`, and fails with an AssertionError.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class BallColliderTest {
+
+    private static final int FRAMES = 500;
+    private static final double SIDE = 400;
+    private static final double EPSILON = Math.pow(10.0, -6.0);
+
+    /**
+     * Runs the checks.
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        GameEnvironment environment = new GameEnvironment(
+            new DynamicAabbTree());
+        BallCollider collider = new BallCollider();
+        List<Ball> balls = new ArrayList<Ball>();
+        Random random = new Random(7);
+        for (int i = 0; i < 300; i++) {
+            Ball ball = newBall(random, environment);
+            balls.add(ball);
+            collider.add(ball);
+        }
+        int checked = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            int pairs = overlappingPairs(balls);
+            double[] before = momentumAndEnergy(balls);
+            collider.collide();
+            double[] after = momentumAndEnergy(balls);
+            check(collider.getPairsChecked() == pairs, "checked "
+                  + collider.getPairsChecked() + " of " + pairs
+                  + " pairs at frame " + frame);
+            for (int i = 0; i < before.length; i++) {
+                check(Math.abs(before[i] - after[i])
+                      <= EPSILON * Math.max(1, Math.abs(before[i])),
+                      "momentum or energy changed at frame " + frame);
+            }
+            checked += pairs;
+            for (Ball ball : balls) {
+                move(ball);
+            }
+            if (random.nextInt(4) == 0) {
+                Ball ball = balls.remove(random.nextInt(balls.size()));
+                collider.remove(ball);
+            }
+            if (random.nextInt(4) == 0) {
+                Ball ball = newBall(random, environment);
+                balls.add(ball);
+                collider.add(ball);
+            }
+            check(collider.size() == balls.size(), "lost a ball");
+        }
+        check(checked > FRAMES, "only " + checked + " pairs checked");
+        System.out.println("BallColliderTest passed");
+    }
+
+    /**
+     * Counts the pairs of balls whose boxes around their
+     * move in the next frame overlap, by checking every
+     * pair.
+     * @param balls the balls.
+     * @return the number of pairs.
+     */
+    private static int overlappingPairs(List<Ball> balls) {
+        int pairs = 0;
+        for (int i = 0; i < balls.size(); i++) {
+            double[] a = box(balls.get(i));
+            for (int j = i + 1; j < balls.size(); j++) {
+                double[] b = box(balls.get(j));
+                if (a[0] <= b[2] && b[0] <= a[2] && a[1] <= b[3]
+                    && b[1] <= a[3]) {
+                    pairs++;
+                }
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Returns the box around where a ball is and where it
+     * will be after the next frame.
+     * @param ball the ball.
+     * @return the min x, min y, max x and max y of the box.
+     */
+    private static double[] box(Ball ball) {
+        double x = ball.getX();
+        double y = ball.getY();
+        double dx = ball.getVelocity().getDx();
+        double dy = ball.getVelocity().getDy();
+        return new double[] {Math.min(x, x + dx) - ball.getSize(),
+                             Math.min(y, y + dy) - ball.getSize(),
+                             Math.max(x, x + dx) + ball.getSize(),
+                             Math.max(y, y + dy) + ball.getSize()};
+    }
+
+    /**
+     * Returns the total momentum of the balls, and their
+     * total energy, with a mass by their area.
+     * @param balls the balls.
+     * @return the x momentum, y momentum and energy.
+     */
+    private static double[] momentumAndEnergy(List<Ball> balls) {
+        double[] total = new double[3];
+        for (Ball ball : balls) {
+            double mass = ball.getSize() * ball.getSize();
+            double dx = ball.getVelocity().getDx();
+            double dy = ball.getVelocity().getDy();
+            total[0] += mass * dx;
+            total[1] += mass * dy;
+            total[2] += mass * (dx * dx + dy * dy);
+        }
+        return total;
+    }
+
+    /**
+     * Moves a ball by its velocity, turning it back at
+     * the sides of the area so the balls stay close.
+     * @param ball the ball.
+     */
+    private static void move(Ball ball) {
+        double x = ball.getX() + ball.getVelocity().getDx();
+        double y = ball.getY() + ball.getVelocity().getDy();
+        ball.setCenter(x, y);
+        double dx = ball.getVelocity().getDx();
+        double dy = ball.getVelocity().getDy();
+        if (x < 0 || x > SIDE) {
+            dx = -dx;
+        }
+        if (y < 0 || y > SIDE) {
+            dy = -dy;
+        }
+        ball.setVelocity(dx, dy);
+    }
+
+    /**
+     * Makes a ball somewhere in the area.
+     * @param random the random numbers.
+     * @param environment the environment of the ball.
+     * @return the ball.
+     */
+    private static Ball newBall(Random random, GameEnvironment environment) {
+        Ball ball = new Ball(new Point(random.nextDouble() * SIDE,
+                                       random.nextDouble() * SIDE),
+                             2 + random.nextInt(5), Color.WHITE, environment);
+        ball.setVelocity(random.nextDouble() * 8 - 4,
+                         random.nextDouble() * 8 - 4);
+        return ball;
+    }
+
+    /**
+     * Fails if a condition doesn't hold.
+     * @param condition the condition.
+     * @param what what was checked.
+     */
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+}
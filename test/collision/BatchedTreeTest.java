@@ -0,0 +1,82 @@
+package collision;
+
+import java.util.Random;
+
+import blocks.Block;
+import geometry.Point;
+import geometry.Rectangle;
+
+/**
+ * Checks that a tree query over a dense layout gives
+ * the vector kernel batches of more than a few
+ * collidables, and finds the same collisions as the
+ * scalar kernel. runs with `ant test` (with the
+ * jdk.incubator.vector module), and fails with an
+ * AssertionError.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class BatchedTreeTest {
+
+    private static final int QUERIES = 500;
+    private static final double MIN_BATCH = 4;
+
+    /**
+     * Runs the checks.
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        DynamicAabbTree tree = new DynamicAabbTree();
+        for (int row = 0; row < 80; row++) {
+            for (int col = 0; col < 100; col++) {
+                tree.insert(new Block(new Rectangle(
+                    new Point(10 * col, 10 * row), 8, 8)));
+            }
+        }
+        check(BoundsKernel.setVectorized(true), "no vector module");
+        Random random = new Random(12);
+        double batches = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 800;
+            double dx = random.nextDouble() * 60 - 30;
+            double dy = random.nextDouble() * 60 - 30;
+            BoundsKernel.setVectorized(true);
+            CollisionInfo vector = tree.closestCollision(x, y, dx, dy, 6, 0);
+            batches += tree.lastHit().averageBatch();
+            BoundsKernel.setVectorized(false);
+            CollisionInfo scalar = tree.closestCollision(x, y, dx, dy, 6, 0);
+            check(same(vector, scalar), "query " + i + " found another hit");
+        }
+        double average = batches / QUERIES;
+        check(average >= MIN_BATCH, "average batch " + average);
+        System.out.println("BatchedTreeTest passed");
+    }
+
+    /**
+     * Checks if two collisions are the same.
+     * @param a the first collision, or null.
+     * @param b the second collision, or null.
+     * @return true if both are null, or hit the same
+     * collidable at the same time.
+     */
+    private static boolean same(CollisionInfo a, CollisionInfo b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.collisionObject() == b.collisionObject()
+               && a.time() == b.time();
+    }
+
+    /**
+     * Fails if a condition doesn't hold.
+     * @param condition the condition.
+     * @param what what was checked.
+     */
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+}
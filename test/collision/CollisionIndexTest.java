@@ -0,0 +1,216 @@
+package collision;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import blocks.Block;
+import blocks.Paddle;
+import geometry.Point;
+import geometry.Rectangle;
+
+/**
+ * Checks that every index (the tree, the grid, the tile
+ * map and a compiled index over a tree) finds the same
+ * closest collision as checking all the collidables one
+ * by one, over random sequences of adding, moving and
+ * removing blocks and paddles. the blocks are mostly on
+ * a grid, so the tile map keeps them in tiles, and some
+ * are not. paddles move a little (inside their fat box
+ * in the tree) and a lot, and so many blocks are removed
+ * that the tree is rebuilt. runs with `ant test`, and
+ * fails with an AssertionError.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class CollisionIndexTest {
+
+    private static final int STEPS = 3000;
+    private static final int QUERIES = 20;
+    private static final double TILE_WIDTH = 40;
+    private static final double TILE_HEIGHT = 20;
+
+    /**
+     * Runs the checks.
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        DynamicAabbTree tree = new DynamicAabbTree();
+        TileMapIndex tiles = new TileMapIndex();
+        CollisionIndex[] indexes = {tree, new SpatialHashGrid(), tiles,
+                                    new CompiledIndex(new DynamicAabbTree())};
+        List<Collidable> live = new ArrayList<Collidable>();
+        Random random = new Random(2);
+        for (int i = 0; i < 300; i++) {
+            add(newBlock(random), indexes, live);
+        }
+        for (int i = 0; i < 3; i++) {
+            add(newPaddle(random), indexes, live);
+        }
+        compare(indexes, live, random);
+        int removed = 0;
+        for (int step = 0; step < STEPS; step++) {
+            int what = random.nextInt(10);
+            if (what < 3 && !live.isEmpty()) {
+                Collidable c = live.remove(random.nextInt(live.size()));
+                for (CollisionIndex index : indexes) {
+                    index.remove(c);
+                }
+                removed++;
+            } else if (what < 6) {
+                add(newBlock(random), indexes, live);
+            } else if (what < 7) {
+                add(newPaddle(random), indexes, live);
+            } else if (!live.isEmpty()) {
+                move(live.get(random.nextInt(live.size())), indexes, random);
+            }
+            compare(indexes, live, random);
+            int most = 3 * (32 - Integer.numberOfLeadingZeros(live.size()));
+            check(tree.height() <= most, "tree height " + tree.height()
+                  + " with " + live.size() + " leaves");
+        }
+        check(removed > 600, "removed only " + removed);
+        check(tiles.tiledCount() > 100,
+              "only " + tiles.tiledCount() + " blocks in tiles");
+        System.out.println("CollisionIndexTest passed");
+    }
+
+    /**
+     * Adds a collidable to all the indexes.
+     * @param c the collidable.
+     * @param indexes the indexes.
+     * @param live the collidables in the indexes, in the
+     * order they were added.
+     */
+    private static void add(Collidable c, CollisionIndex[] indexes,
+                            List<Collidable> live) {
+        for (CollisionIndex index : indexes) {
+            index.insert(c);
+        }
+        live.add(c);
+    }
+
+    /**
+     * Moves a collidable, by a few pixels or to another
+     * place (a block to another tile, most of the time),
+     * and lets the indexes know.
+     * @param c the collidable.
+     * @param indexes the indexes.
+     * @param random the random numbers.
+     */
+    private static void move(Collidable c, CollisionIndex[] indexes,
+                             Random random) {
+        Rectangle rect = c.getCollisionRectangle();
+        if (random.nextBoolean()) {
+            rect.moveTo(rect.getX() + random.nextInt(9) - 4,
+                        rect.getY() + random.nextInt(9) - 4);
+        } else if (c.getCollisionBlock() != null && random.nextInt(4) > 0) {
+            rect.moveTo(TILE_WIDTH * random.nextInt(20),
+                        TILE_HEIGHT * random.nextInt(30));
+        } else {
+            rect.moveTo(random.nextDouble() * 760,
+                        random.nextDouble() * 580);
+        }
+        for (CollisionIndex index : indexes) {
+            index.update(c);
+        }
+    }
+
+    /**
+     * Checks that all the indexes find the closest collision
+     * of checking every collidable, for random circles
+     * moving a little or across the whole area.
+     * @param indexes the indexes.
+     * @param live the collidables in the indexes, in the
+     * order they were added.
+     * @param random the random numbers.
+     */
+    private static void compare(CollisionIndex[] indexes,
+                                List<Collidable> live, Random random) {
+        for (int i = 0; i < QUERIES; i++) {
+            double x = random.nextDouble() * 800;
+            double y = random.nextDouble() * 600;
+            double reach = random.nextBoolean() ? 20 : 800;
+            double dx = (random.nextDouble() - 0.5) * reach;
+            double dy = (random.nextDouble() - 0.5) * reach;
+            double radius = random.nextInt(3) * 4;
+            Collidable expected = null;
+            double time = -1;
+            for (Collidable c : live) {
+                double t = c.getCollisionRectangle().collisionTime(
+                    x, y, dx, dy, radius);
+                if (t >= 0 && (expected == null || t < time)) {
+                    expected = c;
+                    time = t;
+                }
+            }
+            for (CollisionIndex index : indexes) {
+                String what = index.getClass().getSimpleName() + " at ("
+                              + x + ", " + y + ") by (" + dx + ", " + dy
+                              + ") radius " + radius;
+                CollisionInfo ci = index.closestCollision(x, y, dx, dy,
+                                                          radius, 0);
+                if (expected == null) {
+                    check(ci == null, what + " found a hit");
+                    continue;
+                }
+                check(ci != null, what + " missed a hit");
+                check(ci.collisionObject() == expected && ci.time() == time,
+                      what + " found another hit");
+            }
+        }
+    }
+
+    /**
+     * Makes a block, on the grid of tiles most of the time.
+     * @param random the random numbers.
+     * @return the block.
+     */
+    private static Block newBlock(Random random) {
+        if (random.nextInt(5) > 0) {
+            return new Block(rect(TILE_WIDTH * random.nextInt(20),
+                                  TILE_HEIGHT * random.nextInt(30),
+                                  TILE_WIDTH, TILE_HEIGHT));
+        }
+        return new Block(rect(random.nextDouble() * 760,
+                              random.nextDouble() * 580,
+                              5 + random.nextInt(60), 5 + random.nextInt(30)));
+    }
+
+    /**
+     * Makes a paddle somewhere in the area.
+     * @param random the random numbers.
+     * @return the paddle.
+     */
+    private static Paddle newPaddle(Random random) {
+        return new Paddle(rect(random.nextDouble() * 700,
+                               random.nextDouble() * 580, 80, 10),
+                          5, Color.YELLOW, null, 0, 800);
+    }
+
+    /**
+     * Makes a rectangle.
+     * @param x the left side.
+     * @param y the top.
+     * @param width the width.
+     * @param height the height.
+     * @return the rectangle.
+     */
+    private static Rectangle rect(double x, double y, double width,
+                                  double height) {
+        return new Rectangle(new Point(x, y), width, height);
+    }
+
+    /**
+     * Fails if a condition doesn't hold.
+     * @param condition the condition.
+     * @param what what was checked.
+     */
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package collision;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import blocks.Block;
+import blocks.BlockSpan;
+import geometry.Point;
+import geometry.Rectangle;
+
+/**
+ * Checks that the generated code of a compiled index
+ * is used from the first query after the level is set
+ * up, that splitting a span (like when one of its
+ * blocks is hit) keeps it, and that it finds the same
+ * collisions as a tree, also for long trajectories.
+ * runs with `ant test`, and fails with an
+ * AssertionError.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class CompiledIndexTest {
+
+    private static final int QUERIES = 2000;
+
+    /**
+     * Runs the checks.
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        CompiledIndex compiled = new CompiledIndex(new DynamicAabbTree());
+        DynamicAabbTree tree = new DynamicAabbTree();
+        List<Block> row = new ArrayList<Block>();
+        for (int i = 0; i < 8; i++) {
+            row.add(new Block(rect(100 + 50 * i, 100, 50, 20)));
+        }
+        BlockSpan span = new BlockSpan(rect(100, 100, 400, 20), row);
+        Block single = new Block(rect(300, 300, 50, 20));
+        for (Collidable c : new Collidable[] {span, single}) {
+            compiled.insert(c);
+            tree.insert(c);
+        }
+        Random random = new Random(18);
+        compare(compiled, tree, random);
+        check(compiled.isCompiled(), "not compiled after set up");
+
+        // the block in the middle is hit, and the span is split.
+        compiled.remove(span);
+        tree.remove(span);
+        BlockSpan left = new BlockSpan(rect(100, 100, 150, 20),
+                                       row.subList(0, 3));
+        BlockSpan right = new BlockSpan(rect(300, 100, 200, 20),
+                                        row.subList(4, 8));
+        for (Collidable c : new Collidable[] {left, right}) {
+            compiled.insert(c);
+            tree.insert(c);
+        }
+        check(compiled.isCompiled(), "split span dropped the code");
+        compare(compiled, tree, random);
+        check(compiled.getCompilations() == 1, "compiled again");
+
+        // a new block isn't in the code, the tree is used.
+        Block added = new Block(rect(600, 200, 50, 20));
+        compiled.insert(added);
+        tree.insert(added);
+        check(!compiled.isCompiled(), "new block kept the code");
+        compare(compiled, tree, random);
+        System.out.println("CompiledIndexTest passed");
+    }
+
+    /**
+     * Checks that both indexes find the same collisions
+     * for random trajectories, up to 120 frames long.
+     * @param compiled the compiled index.
+     * @param tree the tree.
+     * @param random the random numbers.
+     */
+    private static void compare(CollisionIndex compiled, CollisionIndex tree,
+                                Random random) {
+        for (int i = 0; i < QUERIES; i++) {
+            double x = random.nextDouble() * 800;
+            double y = random.nextDouble() * 600;
+            double frames = 1 + random.nextInt(120);
+            double dx = (random.nextDouble() - 0.5) * 16 * frames;
+            double dy = (random.nextDouble() - 0.5) * 16 * frames;
+            CollisionInfo a = compiled.closestCollision(x, y, dx, dy, 5, 0);
+            CollisionInfo b = tree.closestCollision(x, y, dx, dy, 5, 0);
+            if (a == null || b == null) {
+                check(a == b, "only one hit at query " + i);
+                continue;
+            }
+            check(a.collisionObject() == b.collisionObject()
+                  && a.time() == b.time(), "different hit at query " + i);
+        }
+    }
+
+    /**
+     * Makes a rectangle.
+     * @param x the left side.
+     * @param y the top.
+     * @param width the width.
+     * @param height the height.
+     * @return the rectangle.
+     */
+    private static Rectangle rect(double x, double y, double width,
+                                  double height) {
+        return new Rectangle(new Point(x, y), width, height);
+    }
+
+    /**
+     * Fails if a condition doesn't hold.
+     * @param condition the condition.
+     * @param what what was checked.
+     */
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package game;
+
+import blocks.Block;
+import collision.Collidable;
+import collision.DynamicAabbTree;
+import geometry.Point;
+import geometry.Rectangle;
+
+/**
+ * Checks that looking for the collidables nearest to a
+ * point settles: with room for more collidables than
+ * there are, with a point far away from all of them,
+ * and that a point that isn't finite is rejected. runs
+ * with `ant test`, and fails with an AssertionError.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class GameEnvironmentTest {
+
+    /**
+     * Runs the checks.
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        GameEnvironment environment = new GameEnvironment(
+            new DynamicAabbTree());
+        Block[] blocks = new Block[3];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = new Block(new Rectangle(new Point(100 * i, 0), 50,
+                                                20));
+            environment.addCollidable(blocks[i]);
+        }
+        Collidable[] out = new Collidable[10];
+        double[] distances = new double[10];
+        int n = environment.nearest(120, 10, out, distances);
+        check(n == 3, "found " + n + " of 3");
+        check(out[0] == blocks[1] && distances[0] == 0, "closest");
+        check(out[1] == blocks[0] && out[2] == blocks[2], "order");
+        n = environment.nearest(1e300, -1e300, out, null);
+        check(n == 3, "far away found " + n + " of 3");
+        for (double bad : new double[] {Double.NaN,
+                                        Double.POSITIVE_INFINITY}) {
+            boolean rejected = false;
+            try {
+                environment.nearest(bad, 0, out, null);
+            } catch (IllegalArgumentException e) {
+                rejected = true;
+            }
+            check(rejected, bad + " was not rejected");
+        }
+        System.out.println("GameEnvironmentTest passed");
+    }
+
+    /**
+     * Fails if a condition doesn't hold.
+     * @param condition the condition.
+     * @param what what was checked.
+     */
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package game;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ball.Ball;
+import biuoop.KeyboardSensor;
+import blocks.Block;
+import blocks.Paddle;
+import collision.DynamicAabbTree;
+import geometry.Point;
+import geometry.Rectangle;
+
+/**
+ * Checks that balls move the same with the impact
+ * scheduler as when they look for collisions every
+ * frame: the same level is played twice, once event
+ * driven, with the paddle moving and blocks removed
+ * and added on the way, and every ball has to be at
+ * the same place with the same velocity after every
+ * frame. also checks that the scheduler saved most
+ * of the lookups. runs with `ant test`, and fails with
+ * an AssertionError.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class ImpactSchedulerTest {
+
+    private static final int FRAMES = 2000;
+    private static final int BALLS = 40;
+
+    /**
+     * Runs the checks.
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        String[] key = {""};
+        KeyboardSensor keyboard = pressed -> pressed.equals(key[0]);
+        Level driven = new Level(keyboard, true);
+        Level plain = new Level(keyboard, false);
+        Random random = new Random(5);
+        int skipped = 0;
+        int moves = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            if (random.nextInt(30) == 0) {
+                String[] keys = {"", KeyboardSensor.LEFT_KEY,
+                                 KeyboardSensor.RIGHT_KEY};
+                key[0] = keys[random.nextInt(keys.length)];
+            }
+            if (random.nextInt(20) == 0 && !plain.blocks.isEmpty()) {
+                int i = random.nextInt(plain.blocks.size());
+                driven.removeBlock(i);
+                plain.removeBlock(i);
+            }
+            if (random.nextInt(40) == 0) {
+                double x = 40 + random.nextInt(18) * 40;
+                double y = 60 + random.nextInt(6) * 20;
+                driven.addBlock(x, y);
+                plain.addBlock(x, y);
+            }
+            driven.startFrame();
+            plain.startFrame();
+            for (int i = 0; i < BALLS; i++) {
+                Ball a = driven.balls.get(i);
+                Ball b = plain.balls.get(i);
+                if (!driven.environment.isImpactDue(a)) {
+                    skipped++;
+                }
+                moves++;
+                a.timePassed();
+                b.timePassed();
+                check(a.getX() == b.getX() && a.getY() == b.getY()
+                      && a.getVelocity().getDx() == b.getVelocity().getDx()
+                      && a.getVelocity().getDy() == b.getVelocity().getDy(),
+                      "ball " + i + " moved differently at frame " + frame);
+            }
+        }
+        check(skipped > moves / 2, "skipped " + skipped + " of " + moves);
+        System.out.println("ImpactSchedulerTest passed");
+    }
+
+    /**
+     * Fails if a condition doesn't hold.
+     * @param condition the condition.
+     * @param what what was checked.
+     */
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+
+    /**
+     * A closed level with rows of blocks, a paddle and
+     * balls, kept in its own environment.
+     */
+    private static class Level {
+        private GameEnvironment environment;
+        private Paddle paddle;
+        private List<Block> blocks;
+        private List<Ball> balls;
+
+        /**
+         * A constructor. the balls start at the same
+         * places with the same velocities in every level.
+         * @param keyboard the keys that move the paddle.
+         * @param eventDriven true to use the scheduler.
+         */
+        Level(KeyboardSensor keyboard, boolean eventDriven) {
+            environment = new GameEnvironment(new DynamicAabbTree());
+            environment.setEventDriven(eventDriven);
+            environment.addCollidable(new Block(rect(0, 0, 800, 20)));
+            environment.addCollidable(new Block(rect(0, 580, 800, 20)));
+            environment.addCollidable(new Block(rect(0, 20, 20, 560)));
+            environment.addCollidable(new Block(rect(780, 20, 20, 560)));
+            blocks = new ArrayList<Block>();
+            for (int row = 0; row < 6; row++) {
+                for (int col = 0; col < 18; col++) {
+                    addBlock(40 + 40 * col, 60 + 20 * row);
+                }
+            }
+            paddle = new Paddle(rect(360, 540, 80, 10), 6, Color.YELLOW,
+                                keyboard, 20, 780);
+            environment.addCollidable(paddle);
+            balls = new ArrayList<Ball>();
+            Random random = new Random(9);
+            for (int i = 0; i < BALLS; i++) {
+                Ball ball = new Ball(new Point(30 + random.nextInt(740),
+                                               220 + random.nextInt(300)),
+                                     4, Color.WHITE, environment);
+                ball.setVelocity(random.nextDouble() * 10 - 5,
+                                 random.nextDouble() * 10 - 5);
+                environment.addBall(ball);
+                balls.add(ball);
+            }
+        }
+
+        /**
+         * Adds a block.
+         * @param x the left side of the block.
+         * @param y the top of the block.
+         */
+        void addBlock(double x, double y) {
+            Block block = new Block(rect(x, y, 40, 20), Color.RED);
+            environment.addCollidable(block);
+            blocks.add(block);
+        }
+
+        /**
+         * Removes a block.
+         * @param i the number of the block.
+         */
+        void removeBlock(int i) {
+            environment.removeCollidable(blocks.remove(i));
+        }
+
+        /**
+         * Starts a frame like the level does: lets the
+         * environment know, and moves the paddle by the
+         * keys before the balls.
+         */
+        void startFrame() {
+            environment.nextFrame();
+            paddle.timePassed();
+            if (paddle.getDx() != 0) {
+                environment.updateCollidable(paddle);
+            }
+        }
+
+        /**
+         * Makes a rectangle.
+         * @param x the left side.
+         * @param y the top.
+         * @param width the width.
+         * @param height the height.
+         * @return the rectangle.
+         */
+        private static Rectangle rect(double x, double y, double width,
+                                      double height) {
+            return new Rectangle(new Point(x, y), width, height);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package game;
+
+import java.awt.Color;
+
+import ball.Ball;
+import blocks.Block;
+import blocks.Paddle;
+import collision.DynamicAabbTree;
+import geometry.Point;
+import geometry.Rectangle;
+
+/**
+ * Checks that predicted paths are cut when a block is
+ * added or removed on them or the paddle moves into
+ * them, and looked up again from there, and that the
+ * landing of a path that is still right is given
+ * without looking anything up. runs with `ant test`,
+ * and fails with an AssertionError.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class TrajectoryPredictorTest {
+
+    /**
+     * Runs the checks.
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        GameEnvironment environment = new GameEnvironment(
+            new DynamicAabbTree());
+        environment.setPrediction(3, 500);
+        TrajectoryPredictor predictor = environment.getPredictor();
+        Ball ball = new Ball(new Point(200, 100), 5, Color.WHITE, environment);
+        ball.setVelocity(0, 5);
+
+        Point landing = predictor.getLanding(ball);
+        check(landing != null && landing.equals(new Point(200, 495)),
+              "lands at " + landing);
+        int casts = predictor.getCasts();
+        predictor.getLanding(ball);
+        ball.setCenter(200, 150);
+        landing = predictor.getLanding(ball);
+        check(predictor.getCasts() == casts, "looked up a path that is right");
+        check(landing.equals(new Point(200, 495)), "moved landing " + landing);
+
+        Block block = new Block(new Rectangle(new Point(180, 300), 40, 20));
+        environment.addCollidable(block);
+        check(predictor.getLanding(ball) == null, "lands through a block");
+        check(predictor.getPath(ball).get(1).equals(new Point(200, 295)),
+              "doesn't hit the block");
+        environment.removeCollidable(block);
+        landing = predictor.getLanding(ball);
+        check(landing != null && landing.equals(new Point(200, 495)),
+              "lands at " + landing + " after the block left");
+
+        Paddle paddle = new Paddle(new Rectangle(new Point(400, 300), 80, 10),
+                                   5, Color.YELLOW, null, 0, 800);
+        environment.addCollidable(paddle);
+        check(predictor.getLanding(ball) != null, "a far paddle cut it");
+        casts = predictor.getCasts();
+        paddle.getCollisionRectangle().moveTo(160, 300);
+        environment.updateCollidable(paddle);
+        check(predictor.getLanding(ball) == null, "lands through the paddle");
+        check(predictor.getCasts() > casts, "moved paddle not looked up");
+        paddle.getCollisionRectangle().moveTo(400, 300);
+        environment.updateCollidable(paddle);
+        landing = predictor.getLanding(ball);
+        check(landing != null && landing.equals(new Point(200, 495)),
+              "lands at " + landing + " after the paddle left");
+        System.out.println("TrajectoryPredictorTest passed");
+    }
+
+    /**
+     * Fails if a condition doesn't hold.
+     * @param condition the condition.
+     * @param what what was checked.
+     */
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package general;
+
+/**
+ * Checks the registry: items keep the order they were
+ * added in when others are removed, and old handles
+ * of removed items are not confused with new items.
+ * runs with `ant test`, and fails with an
+ * AssertionError.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class RegistryTest {
+
+    /**
+     * Runs the checks.
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        keepsOrder();
+        detectsStaleHandles();
+        findsManyHandles();
+        System.out.println("RegistryTest passed");
+    }
+
+    /**
+     * Removing items keeps the order of the rest, in
+     * their places and in their handles.
+     */
+    private static void keepsOrder() {
+        Registry<String> r = new Registry<String>();
+        for (String s : new String[] {"a", "b", "c", "d", "e"}) {
+            r.add(s);
+        }
+        r.remove("a");
+        r.remove("c");
+        r.add("f");
+        check(r.size() == 4, "size after removing");
+        String[] expected = {"b", "d", "e", "f"};
+        int[] handles = r.handles(new int[1]);
+        for (int i = 0; i < expected.length; i++) {
+            check(expected[i].equals(r.getAt(i)), "place " + i);
+            check(expected[i].equals(r.get(handles[i])), "handle " + i);
+        }
+    }
+
+    /**
+     * A handle of a removed item doesn't give the item
+     * that got its slot.
+     */
+    private static void detectsStaleHandles() {
+        Registry<String> r = new Registry<String>();
+        int old = r.add("a");
+        r.remove(old);
+        int reused = r.add("b");
+        check(!r.isValid(old), "stale handle is valid");
+        check(r.get(old) == null, "stale handle gives an item");
+        check("b".equals(r.get(reused)), "new handle");
+        check(!r.remove(old), "stale handle removed an item");
+        check(r.handleOf("a") == Registry.NO_HANDLE, "removed item");
+    }
+
+    /**
+     * Handles are found for many items, while some of
+     * them are removed.
+     */
+    private static void findsManyHandles() {
+        Registry<Integer> r = new Registry<Integer>();
+        int[] handles = new int[10000];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = r.add(i);
+        }
+        for (int i = 0; i < handles.length; i += 3) {
+            r.remove(Integer.valueOf(i));
+        }
+        for (int i = 0; i < handles.length; i++) {
+            if (i % 3 == 0) {
+                check(r.handleOf(i) == Registry.NO_HANDLE, "removed " + i);
+            } else {
+                check(r.handleOf(i) == handles[i], "handle of " + i);
+            }
+        }
+        int last = -1;
+        for (int i = 0; i < r.size(); i++) {
+            check(r.getAt(i) > last, "order at " + i);
+            last = r.getAt(i);
+        }
+    }
+
+    /**
+     * Fails if a condition doesn't hold.
+     * @param condition the condition.
+     * @param what what was checked.
+     */
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+}
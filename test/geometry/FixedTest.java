@@ -0,0 +1,83 @@
+package geometry;
+
+/**
+ * Checks the 32.32 fixed point division, and that
+ * collision times found with a velocity that is
+ * almost 0 on one axis are still right. runs with
+ * `ant test`, and fails with an AssertionError.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class FixedTest {
+
+    /**
+     * Runs the checks.
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        dividesExactly();
+        saturatesNearZeroDivisor();
+        findsTimeWithTinyVelocity();
+        System.out.println("FixedTest passed");
+    }
+
+    /**
+     * Quotients that fit are exact on the 32.32 grid.
+     */
+    private static void dividesExactly() {
+        check(Fixed.div(Fixed.of(6), Fixed.of(2)) == Fixed.of(3), "6 / 2");
+        check(Fixed.div(Fixed.of(-6), Fixed.of(4)) == Fixed.of(-1.5),
+              "-6 / 4");
+        check(Fixed.div(Fixed.of(1), Fixed.of(-0.25)) == Fixed.of(-4),
+              "1 / -0.25");
+        long third = Fixed.div(Fixed.ONE, Fixed.of(3));
+        check(third == Fixed.ONE / 3, "1 / 3 rounds towards 0");
+    }
+
+    /**
+     * A divisor of one step of the grid makes a quotient
+     * that is too big, which keeps its sign instead of
+     * wrapping around.
+     */
+    private static void saturatesNearZeroDivisor() {
+        check(Fixed.div(Fixed.of(100), 1) == Fixed.MAX, "100 / tiny");
+        check(Fixed.div(Fixed.of(100), -1) == -Fixed.MAX, "100 / -tiny");
+        check(Fixed.div(Fixed.of(-100), 1) == -Fixed.MAX, "-100 / tiny");
+        check(Fixed.div(Fixed.of(-100), -1) == Fixed.MAX, "-100 / -tiny");
+        check(Fixed.div(Fixed.of(0.5), 1) > 0, "0.5 / tiny");
+    }
+
+    /**
+     * A ball falling straight down, with one step of the
+     * grid of horizontal velocity, still hits the block
+     * under it at the same time as with no horizontal
+     * velocity, and misses a block that is off to the side.
+     */
+    private static void findsTimeWithTinyVelocity() {
+        Rectangle below = new Rectangle(new Point(100, 200), 50, 20);
+        long x = Fixed.of(120);
+        long y = Fixed.of(100);
+        long dy = Fixed.of(200);
+        long r = Fixed.of(5);
+        long straight = below.fixedCollisionTime(x, y, 0, dy, r);
+        check(straight > 0, "straight hit");
+        check(below.fixedCollisionTime(x, y, 1, dy, r) == straight,
+              "tiny right");
+        check(below.fixedCollisionTime(x, y, -1, dy, r) == straight,
+              "tiny left");
+        Rectangle aside = new Rectangle(new Point(300, 200), 50, 20);
+        check(aside.fixedCollisionTime(x, y, 1, dy, r) == -1, "aside");
+    }
+
+    /**
+     * Fails if a condition doesn't hold.
+     * @param condition the condition.
+     * @param what what was checked.
+     */
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+}
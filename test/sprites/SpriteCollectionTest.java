@@ -0,0 +1,81 @@
+package sprites;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import biuoop.DrawSurface;
+import game.GameLevel;
+
+/**
+ * Checks that sprites are told time passed in the
+ * order they were added, even after sprites before
+ * them were removed, so the paddle still moves before
+ * the balls. runs with `ant test`, and fails with an
+ * AssertionError.
+ * @author Uri Knoll
+ * @version  %I%, %G%
+ * @since 17.0.2
+ */
+public class SpriteCollectionTest {
+
+    /**
+     * Runs the checks.
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        List<String> ticks = new ArrayList<String>();
+        SpriteCollection sprites = new SpriteCollection();
+        Sprite block = new Named("block", ticks);
+        sprites.addSprite(block);
+        sprites.addSprite(new Named("paddle", ticks));
+        sprites.addSprite(new Named("ball 1", ticks));
+        sprites.addSprite(new Named("ball 2", ticks));
+        sprites.removeSprite(block);
+        sprites.notifyAllTimePassed();
+        List<String> expected = List.of("paddle", "ball 1", "ball 2");
+        if (!ticks.equals(expected)) {
+            throw new AssertionError("order was " + ticks);
+        }
+        System.out.println("SpriteCollectionTest passed");
+    }
+
+    /**
+     * A sprite that writes its name down when time
+     * passes.
+     */
+    private static class Named implements Sprite {
+        private String name;
+        private List<String> ticks;
+
+        /**
+         * A constructor.
+         * @param name the name of the sprite.
+         * @param ticks the list to write the name to.
+         */
+        Named(String name, List<String> ticks) {
+            this.name = name;
+            this.ticks = ticks;
+        }
+
+        /**
+         * Draws nothing.
+         * @param d the draw surface.
+         */
+        public void drawOn(DrawSurface d) {
+        }
+
+        /**
+         * Writes the name down.
+         */
+        public void timePassed() {
+            ticks.add(name);
+        }
+
+        /**
+         * Isn't added to games.
+         * @param game the game.
+         */
+        public void addToGame(GameLevel game) {
+        }
+    }
+}